@@ -0,0 +1,137 @@
+package com.example.benchmark;
+
+import com.example.codec.MessageCodec;
+import com.example.codec.MessageCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息编解码的基准测试，对比原来的 SimpleMessageConverter（Java 序列化）与 json、binary 编解码器：
+ * <ul>
+ *     <li>{@link #encode()}：把订单对象编码为 Message</li>
+ *     <li>{@link #decode()}：把消息体解码回订单对象</li>
+ * </ul>
+ * 各格式的编码大小在 Setup 中输出。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CodecBenchmark {
+
+    @Param({"java", "json", "binary"})
+    private String codec;
+
+    /**
+     * 订单明细条数
+     */
+    @Param({"1", "20"})
+    private int items;
+
+    private Order order;
+
+    private SimpleMessageConverter javaConverter;
+
+    private MessageCodec messageCodec;
+
+    private Message encoded;
+
+    @Setup
+    public void setup() {
+        order = Order.sample(items);
+        javaConverter = new SimpleMessageConverter();
+        javaConverter.setWhiteListPatterns(Arrays.asList("com.example.benchmark.*", "java.util.*", "java.lang.*"));
+        messageCodec = "java".equals(codec) ? null : MessageCodecs.forName(codec);
+        encoded = encode();
+        System.out.printf("%n%s, %d items: encoded size %d bytes%n", codec, items, encoded.getBody().length);
+    }
+
+    @Benchmark
+    public Message encode() {
+        if (messageCodec == null) {
+            return javaConverter.toMessage(order, new MessageProperties());
+        }
+        byte[] body = messageCodec.encode(order);
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(messageCodec.getContentType());
+        return new Message(body, properties);
+    }
+
+    @Benchmark
+    public Object decode() {
+        if (messageCodec == null) {
+            return javaConverter.fromMessage(encoded);
+        }
+        return messageCodec.decode(encoded.getBody(), Order.class);
+    }
+
+    /**
+     * 典型的订单消息：几个标量字段加若干明细。
+     */
+    public static class Order implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        public long id;
+
+        public String customer;
+
+        public String status;
+
+        public double amount;
+
+        public long createdAt;
+
+        public List<Item> items = new ArrayList<>();
+
+        static Order sample(int itemCount) {
+            Random random = new Random(20240601L);
+            Order order = new Order();
+            order.id = 1_000_000L + random.nextInt(1000);
+            order.customer = "customer-" + random.nextInt(100_000);
+            order.status = "PAID";
+            order.createdAt = 1_717_200_000_000L;
+            for (int i = 0; i < itemCount; i++) {
+                Item item = new Item();
+                item.sku = "SKU-" + random.nextInt(1_000_000);
+                item.quantity = 1 + random.nextInt(5);
+                item.price = Math.round(random.nextDouble() * 10_000) / 100.0;
+                order.items.add(item);
+                order.amount += item.quantity * item.price;
+            }
+            return order;
+        }
+    }
+
+    public static class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        public String sku;
+
+        public int quantity;
+
+        public double price;
+    }
+}
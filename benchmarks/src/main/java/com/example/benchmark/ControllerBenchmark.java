@@ -0,0 +1,88 @@
+package com.example.benchmark;
+
+import com.example.codec.PayloadCompressor;
+import com.example.controller.RabbitMQController;
+import com.example.metrics.MessagingMetrics;
+import com.example.spool.PublishSpool;
+import com.example.util.RabbitMQUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 控制器请求处理的基准测试：通过 MockMvc 驱动 RabbitMQController → RabbitMQUtil → RabbitTemplate，
+ * 通道为内存桩，测得的是 HTTP 层以下每条消息的应用开销。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ControllerBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private MockMvc mockMvc;
+
+    private String message;
+
+    private byte[] batchBody;
+
+    @Setup
+    public void setup() {
+        RabbitMQUtil rabbitMQUtil = new RabbitMQUtil();
+        Stubs.inject(rabbitMQUtil, "rabbitTemplate", new RabbitTemplate(Stubs.connectionFactory(Stubs.channel(new LongAdder()))));
+        Stubs.inject(rabbitMQUtil, "messageConverter", Stubs.messageConverter());
+        Stubs.inject(rabbitMQUtil, "payloadCompressor", new PayloadCompressor());
+        Stubs.inject(rabbitMQUtil, "metrics", new MessagingMetrics());
+        Stubs.inject(rabbitMQUtil, "publishSpool", new PublishSpool());
+        RabbitMQController controller = new RabbitMQController();
+        Stubs.inject(controller, "rabbitMQUtil", rabbitMQUtil);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        message = Payloads.text(256);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            ndjson.append("{\"id\":").append(i).append(",\"body\":\"").append(message).append("\"}\n");
+        }
+        batchBody = ndjson.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public MvcResult send() throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.post("/rabbitmq/send")
+                        .param("exchange", "directExchange")
+                        .param("routingKey", "routingKey1")
+                        .param("message", message))
+                .andReturn();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public MvcResult sendBatch() throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.post("/rabbitmq/sendBatch")
+                        .param("exchange", "directExchange")
+                        .param("routingKey", "routingKey1")
+                        .contentType("application/x-ndjson")
+                        .content(batchBody))
+                .andReturn();
+    }
+}
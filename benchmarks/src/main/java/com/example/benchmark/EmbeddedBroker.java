@@ -0,0 +1,52 @@
+package com.example.benchmark;
+
+import org.apache.qpid.server.SystemLauncher;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 进程内的 Qpid Broker-J，使用内存存储，对外提供 AMQP 0-9-1 端口，用户 guest/guest。
+ * 只用于压测，Broker 与被测应用在同一个 JVM 中，测得的延迟不包含真实网络开销。
+ */
+final class EmbeddedBroker implements AutoCloseable {
+
+    private static final String INITIAL_CONFIGURATION = "embedded-broker.json";
+
+    private final SystemLauncher launcher = new SystemLauncher();
+
+    private final int port;
+
+    EmbeddedBroker(int port) {
+        this.port = port;
+    }
+
+    /**
+     * 启动 Broker，返回时 AMQP 端口已可连接。
+     */
+    void start() throws Exception {
+        URL configuration = EmbeddedBroker.class.getClassLoader().getResource(INITIAL_CONFIGURATION);
+        if (configuration == null) {
+            throw new IllegalStateException("找不到 Broker 初始配置: " + INITIAL_CONFIGURATION);
+        }
+        Map<String, String> context = new HashMap<>();
+        context.put("qpid.amqp_port", String.valueOf(port));
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("type", "Memory");
+        attributes.put("initialConfigurationLocation", configuration.toExternalForm());
+        attributes.put("startupLoggedToSystemOut", false);
+        attributes.put("context", context);
+        launcher.startup(attributes);
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.benchmark;
+
+import com.example.consumer.AdaptivePrefetchController;
+import com.example.consumer.DeduplicationCache;
+import com.example.consumer.KeyOrderedExecutor;
+import com.example.consumer.MessageView;
+import com.example.consumer.QueueHandler;
+import com.example.consumer.QueueHandlerRegistry;
+import com.example.consumer.QueueMessageListener;
+import com.example.consumer.VirtualThreadExecutor;
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.Channel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueueMessageListener 分发与确认的基准测试，处理器为空操作，通道为内存桩，
+ * 测得的是监听器本身（查找处理器、计时、ack）的开销。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ListenerDispatchBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"64", "1024"})
+    private int payloadSize;
+
+    /**
+     * 是否开启去重，开启时每条消息使用新的 message_id，测得的是未命中（需要记录）的开销
+     */
+    @Param({"false", "true"})
+    private boolean dedup;
+
+    private long sequence;
+
+    private QueueMessageListener listener;
+
+    private Channel channel;
+
+    private Message message;
+
+    private List<Message> batch;
+
+    @Setup
+    public void setup() {
+        Blackhole blackhole = new Blackhole("Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.");
+        QueueHandler handler = new QueueHandler() {
+            @Override
+            public String getQueueName() {
+                return "queue1";
+            }
+
+            @Override
+            public void handle(MessageView message) {
+                blackhole.consume(message);
+            }
+        };
+        QueueHandlerRegistry registry = new QueueHandlerRegistry();
+        Stubs.inject(registry, "handlerBeans", Collections.singletonList(handler));
+        registry.init();
+
+        listener = new QueueMessageListener();
+        Stubs.inject(listener, "queueHandlerRegistry", registry);
+        Stubs.inject(listener, "metrics", new MessagingMetrics());
+        Stubs.inject(listener, "prefetchController", new AdaptivePrefetchController());
+        DeduplicationCache deduplicationCache = new DeduplicationCache();
+        Stubs.inject(deduplicationCache, "enabled", dedup);
+        Stubs.inject(deduplicationCache, "header", "");
+        Stubs.inject(deduplicationCache, "windowMs", 60000L);
+        Stubs.inject(deduplicationCache, "maxEntries", 200000);
+        Stubs.inject(deduplicationCache, "bloomFilter", false);
+        deduplicationCache.init();
+        Stubs.inject(listener, "deduplicationCache", deduplicationCache);
+        Stubs.inject(listener, "keyOrderedExecutor", new KeyOrderedExecutor());
+        Stubs.inject(listener, "virtualThreadExecutor", new VirtualThreadExecutor());
+        channel = Stubs.channel(new LongAdder());
+
+        byte[] body = Payloads.text(payloadSize).getBytes(StandardCharsets.UTF_8);
+        message = message(body, 1);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= BATCH_SIZE; i++) {
+            batch.add(message(body, i));
+        }
+    }
+
+    @Benchmark
+    public void onMessage() throws Exception {
+        if (dedup) {
+            message.getMessageProperties().setMessageId(Long.toString(++sequence));
+        }
+        listener.onMessage(message, channel);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void onMessageBatch() {
+        if (dedup) {
+            for (Message message : batch) {
+                message.getMessageProperties().setMessageId(Long.toString(++sequence));
+            }
+        }
+        listener.onMessageBatch(batch, channel);
+    }
+
+    private static Message message(byte[] body, long deliveryTag) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue("queue1");
+        properties.setDeliveryTag(deliveryTag);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+        properties.setContentEncoding("UTF-8");
+        return new Message(body, properties);
+    }
+}
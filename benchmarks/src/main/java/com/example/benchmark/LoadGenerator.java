@@ -0,0 +1,257 @@
+package com.example.benchmark;
+
+import com.example.ApplicationStart;
+import com.example.consumer.MessageView;
+import com.example.consumer.QueueHandler;
+import com.example.consumer.QueueHandlerRegistry;
+import com.example.metrics.LatencyHistogram;
+import com.example.producer.ConfirmResult;
+import com.example.producer.MessageProducer;
+import com.example.shard.ShardedQueues;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 端到端压测：在进程内启动 Broker 和完整的应用上下文，以固定速率通过 {@link MessageProducer#sendAsync}
+ * 向 directExchange 发送消息（routingKey1/routingKey2 交替，分别进入 queue1/queue2），
+ * 由 QueueMessageListener 分发给计时处理器，统计吞吐和端到端延迟。
+ * <p>
+ * 每条消息的前 8 个字节是计划发送时刻（System.nanoTime），延迟从计划时刻算起，
+ * 发送方被背压拖慢时排队时间也会计入，不会因为协调遗漏而低估尾延迟。
+ * <p>
+ * 参数（均可省略）：
+ * <pre>
+ * --rate=10000      目标发送速率（条/秒），0 表示不限速
+ * --size=256        消息大小（字节），最少 8
+ * --duration=30     测量时长（秒）
+ * --warmup=5        预热时长（秒），预热期间的数据不计入结果
+ * --producers=2     发送线程数
+ * --port=5673       内嵌 Broker 的端口
+ * --keys=0          大于 0 时按 key-0 ~ key-(keys-1) 轮流作为消息键，经 sendAsyncWithKey 发送（配合分片队列使用）
+ * </pre>
+ * 其余 {@code --key=value} 参数原样传给应用，例如 {@code --rabbitmq.consumer.container-type=direct}。
+ */
+public final class LoadGenerator {
+
+    private static final String EXCHANGE = "directExchange";
+
+    private static final String[] ROUTING_KEYS = {"routingKey1", "routingKey2"};
+
+    private static final String[] QUEUES = {"queue1", "queue2"};
+
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+
+    static {
+        DEFAULTS.put("rate", "10000");
+        DEFAULTS.put("size", "256");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("producers", "2");
+        DEFAULTS.put("port", "5673");
+        DEFAULTS.put("keys", "0");
+    }
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder acked = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    /**
+     * 预热结束时替换为新的直方图，丢弃预热期间的数据
+     */
+    private volatile LatencyHistogram endToEnd = new LatencyHistogram();
+
+    private volatile LatencyHistogram confirm = new LatencyHistogram();
+
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        Map<String, String> applicationProperties = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq <= 2) {
+                applicationArgs.add(arg);
+                continue;
+            }
+            String key = arg.substring(2, eq);
+            if (DEFAULTS.containsKey(key)) {
+                options.put(key, arg.substring(eq + 1));
+            } else {
+                applicationProperties.put(key, arg.substring(eq + 1));
+            }
+        }
+        int port = Integer.parseInt(options.get("port"));
+
+        try (EmbeddedBroker broker = new EmbeddedBroker(port)) {
+            broker.start();
+            // 以命令行参数传入，优先级高于 application.properties
+            Map<String, String> brokerProperties = new LinkedHashMap<>();
+            brokerProperties.put("spring.rabbitmq.host", "localhost");
+            brokerProperties.put("spring.rabbitmq.port", String.valueOf(port));
+            brokerProperties.put("spring.rabbitmq.username", "guest");
+            brokerProperties.put("spring.rabbitmq.password", "guest");
+            brokerProperties.put("spring.rabbitmq.virtual-host", "default");
+            brokerProperties.putAll(applicationProperties);
+            brokerProperties.forEach((key, value) -> applicationArgs.add("--" + key + "=" + value));
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(ApplicationStart.class)
+                    .web(WebApplicationType.NONE)
+                    .run(applicationArgs.toArray(new String[0]));
+            try {
+                new LoadGenerator().run(context,
+                        Integer.parseInt(options.get("rate")),
+                        Math.max(Long.BYTES, Integer.parseInt(options.get("size"))),
+                        Integer.parseInt(options.get("duration")),
+                        Integer.parseInt(options.get("warmup")),
+                        Math.max(1, Integer.parseInt(options.get("producers"))),
+                        Integer.parseInt(options.get("keys")));
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private void run(ConfigurableApplicationContext context, int rate, int size, int duration, int warmup,
+                     int producers, int keys) throws InterruptedException {
+        MessageProducer producer = context.getBean(MessageProducer.class);
+        QueueHandlerRegistry registry = context.getBean(QueueHandlerRegistry.class);
+        for (String queue : QUEUES) {
+            TimingHandler handler = new TimingHandler(queue);
+            registry.register(handler);
+            // 分片队列同样交给计时处理器
+            for (String queueName : registry.getQueueNames()) {
+                if (queueName.startsWith(queue + ShardedQueues.SHARD_SUFFIX)) {
+                    registry.register(queueName, handler);
+                }
+            }
+        }
+
+        System.out.printf("rate=%d msg/s, size=%d B, producers=%d, warmup=%ds, duration=%ds%n",
+                rate, size, producers, warmup, duration);
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * producers / rate : 0;
+        List<Thread> threads = new ArrayList<>(producers);
+        for (int i = 0; i < producers; i++) {
+            Thread thread = new Thread(() -> produce(producer, size, intervalNanos, keys), "load-producer-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        TimeUnit.SECONDS.sleep(warmup);
+        endToEnd = new LatencyHistogram();
+        confirm = new LatencyHistogram();
+        long sentAtStart = sent.sum();
+        long receivedAtStart = received.sum();
+        long start = System.nanoTime();
+
+        TimeUnit.SECONDS.sleep(duration);
+        long sentInWindow = sent.sum() - sentAtStart;
+        long receivedInWindow = received.sum() - receivedAtStart;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        awaitDrain(TimeUnit.SECONDS.toNanos(10));
+
+        System.out.printf("published: %.0f msg/s, consumed: %.0f msg/s%n",
+                sentInWindow / seconds, receivedInWindow / seconds);
+        System.out.printf("sent=%d acked=%d failed=%d received=%d%n",
+                sent.sum(), acked.sum(), failed.sum(), received.sum());
+        print("end-to-end", endToEnd);
+        print("confirm", confirm);
+    }
+
+    private void produce(MessageProducer producer, int size, long intervalNanos, int keys) {
+        long next = System.nanoTime();
+        long sequence = ThreadLocalRandom.current().nextInt(ROUTING_KEYS.length);
+        while (running) {
+            if (intervalNanos > 0) {
+                long delay = next - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            } else {
+                next = System.nanoTime();
+            }
+            byte[] body = new byte[size];
+            ByteBuffer.wrap(body).putLong(next);
+            String routingKey = ROUTING_KEYS[(int) (sequence % ROUTING_KEYS.length)];
+            try {
+                CompletableFuture<ConfirmResult> future = keys > 0
+                        ? producer.sendAsyncWithKey(EXCHANGE, routingKey, "key-" + sequence % keys, body)
+                        : producer.sendAsync(EXCHANGE, routingKey, body);
+                future.whenComplete((result, ex) -> {
+                    if (ex == null && result.isAck() && !result.isReturned()) {
+                        acked.increment();
+                        confirm.record(result.getLatencyNanos());
+                    } else {
+                        failed.increment();
+                    }
+                });
+                sent.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+            }
+            sequence++;
+            next += intervalNanos;
+        }
+    }
+
+    private void awaitDrain(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (received.sum() < sent.sum() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    private static void print(String name, LatencyHistogram histogram) {
+        System.out.printf("%s latency (us): count=%d p50=%d p99=%d p999=%d max=%d%n",
+                name,
+                histogram.getCount(),
+                TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.5)),
+                TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.99)),
+                TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtQuantile(0.999)),
+                TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+    }
+
+    /**
+     * 从消息体读出计划发送时刻，记录端到端延迟。
+     */
+    private final class TimingHandler implements QueueHandler {
+
+        private final String queueName;
+
+        TimingHandler(String queueName) {
+            this.queueName = queueName;
+        }
+
+        @Override
+        public String getQueueName() {
+            return queueName;
+        }
+
+        @Override
+        public void handle(MessageView message) {
+            long scheduled = message.body().getLong();
+            endToEnd.record(System.nanoTime() - scheduled);
+            received.increment();
+        }
+    }
+}
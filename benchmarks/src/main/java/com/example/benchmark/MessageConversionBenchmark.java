@@ -0,0 +1,62 @@
+package com.example.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息转换与发布路径的基准测试：
+ * <ul>
+ *     <li>{@link #toMessage()}：默认的 SimpleMessageConverter 把 String 转换为 Message</li>
+ *     <li>{@link #convertAndSend()}：RabbitTemplate.convertAndSend 的完整调用链，通道为内存桩</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageConversionBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    private int payloadSize;
+
+    private String payload;
+
+    private SimpleMessageConverter converter;
+
+    private RabbitTemplate rabbitTemplate;
+
+    @Setup
+    public void setup() {
+        payload = Payloads.text(payloadSize);
+        converter = new SimpleMessageConverter();
+        rabbitTemplate = new RabbitTemplate(Stubs.connectionFactory(Stubs.channel(new LongAdder())));
+    }
+
+    @Benchmark
+    public Message toMessage() {
+        return converter.toMessage(payload, new MessageProperties());
+    }
+
+    @Benchmark
+    public void convertAndSend() {
+        rabbitTemplate.convertAndSend("directExchange", "routingKey1", payload);
+    }
+}
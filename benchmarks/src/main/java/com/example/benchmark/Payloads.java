@@ -0,0 +1,29 @@
+package com.example.benchmark;
+
+import java.util.Random;
+
+/**
+ * 固定种子生成的测试消息，保证每次运行的输入完全相同。
+ */
+final class Payloads {
+
+    private static final long SEED = 20240601L;
+
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 {}:,\"".toCharArray();
+
+    private Payloads() {
+    }
+
+    /**
+     * @param size 字符数
+     * @return 固定内容的文本消息
+     */
+    static String text(int size) {
+        Random random = new Random(SEED);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.benchmark;
+
+import com.example.codec.BinaryMessageCodec;
+import com.example.codec.CodecMessageConverter;
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基准测试使用的内存桩：不连接 Broker，通道上的所有调用直接返回默认值，只统计调用次数。
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * 创建一个空操作的通道，basicPublish、basicAck 等调用只计数。
+     *
+     * @param calls 调用计数
+     * @return 通道
+     */
+    static Channel channel(LongAdder calls) {
+        return (Channel) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, method, args) -> {
+                    calls.increment();
+                    if ("isOpen".equals(method.getName())) {
+                        return true;
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    /**
+     * 创建一个每次都返回同一个空操作通道的连接工厂。
+     *
+     * @param channel 通道
+     * @return 连接工厂
+     */
+    static ConnectionFactory connectionFactory(Channel channel) {
+        Connection connection = (Connection) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createChannel":
+                            return channel;
+                        case "isOpen":
+                            return true;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        return (ConnectionFactory) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{ConnectionFactory.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createConnection":
+                            return connection;
+                        case "getHost":
+                            return "localhost";
+                        case "getVirtualHost":
+                            return "/";
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * 创建使用默认配置（binary 编解码器、未按交换器配置）的 CodecMessageConverter。
+     *
+     * @return 消息转换器
+     */
+    static CodecMessageConverter messageConverter() {
+        CodecMessageConverter converter = new CodecMessageConverter();
+        inject(converter, "environment", new StandardEnvironment());
+        inject(converter, "defaultCodecName", BinaryMessageCodec.NAME);
+        return converter;
+    }
+
+    /**
+     * 为使用字段注入的组件设置依赖。
+     *
+     * @param target 目标对象
+     * @param name   字段名称
+     * @param value  字段值
+     */
+    static void inject(Object target, String name, Object value) {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("字段不存在: " + name);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        return (char) 0;
+    }
+}
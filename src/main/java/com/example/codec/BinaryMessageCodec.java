@@ -0,0 +1,588 @@
+package com.example.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的二进制编解码器，格式为 MessagePack 的子集，content_type 为 application/x-msgpack。
+ * <p>
+ * 支持 nil、布尔、整数、浮点数、字符串、二进制、数组和 map，不支持扩展类型；其他语言的 MessagePack 库可以直接读写。
+ * 其余对象由 Jackson 序列化为 token 流后直接编码，BigDecimal 以字符串编码以免丢失精度。
+ * 解码为 Object/Map/List 时得到通用结构，整数在 int 范围内为 Integer，否则为 Long；
+ * 指定其他目标类型时把消息体转换为 token 流交给 Jackson 反序列化，不生成中间结构。
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    public static final String NAME = "binary";
+
+    public static final String CONTENT_TYPE = "application/x-msgpack";
+
+    private static final int NIL = 0xc0;
+    private static final int FALSE = 0xc2;
+    private static final int TRUE = 0xc3;
+    private static final int BIN8 = 0xc4;
+    private static final int BIN16 = 0xc5;
+    private static final int BIN32 = 0xc6;
+    private static final int FLOAT32 = 0xca;
+    private static final int FLOAT64 = 0xcb;
+    private static final int UINT8 = 0xcc;
+    private static final int UINT16 = 0xcd;
+    private static final int UINT32 = 0xce;
+    private static final int UINT64 = 0xcf;
+    private static final int INT8 = 0xd0;
+    private static final int INT16 = 0xd1;
+    private static final int INT32 = 0xd2;
+    private static final int INT64 = 0xd3;
+    private static final int STR8 = 0xd9;
+    private static final int STR16 = 0xda;
+    private static final int STR32 = 0xdb;
+    private static final int ARRAY16 = 0xdc;
+    private static final int ARRAY32 = 0xdd;
+    private static final int MAP16 = 0xde;
+    private static final int MAP32 = 0xdf;
+
+    /**
+     * 嵌套层数上限，防止恶意消息造成栈溢出
+     */
+    private static final int MAX_DEPTH = 512;
+
+    private final ObjectMapper objectMapper;
+
+    public BinaryMessageCodec() {
+        this(new ObjectMapper());
+    }
+
+    public BinaryMessageCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Writer out = new Writer();
+        write(out, value, 0);
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] body, Class<T> type) {
+        Reader in = new Reader(body);
+        if (type == Object.class || type == Map.class || type == List.class) {
+            Object value = in.read(0);
+            in.requireEnd();
+            if (value != null && !type.isInstance(value)) {
+                throw new MessageConversionException("无法转换为 " + type.getName() + ": " + value.getClass().getName());
+            }
+            return type.cast(value);
+        }
+        // 其他类型直接把消息体转换为 Jackson 的 token 流再反序列化，不生成中间的 Map/List
+        TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+        try {
+            in.copy(buffer, 0);
+            in.requireEnd();
+            return objectMapper.readValue(buffer.asParser(), type);
+        } catch (IOException e) {
+            throw new MessageConversionException("无法转换为 " + type.getName(), e);
+        }
+    }
+
+    private void write(Writer out, Object value, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new MessageConversionException("嵌套层数超过 " + MAX_DEPTH);
+        }
+        if (value == null) {
+            out.writeByte(NIL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeInteger(out, ((Number) value).longValue());
+        } else if (value instanceof Double) {
+            out.writeByte(FLOAT64);
+            out.writeLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT32);
+            out.writeInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            if (integer.bitLength() < Long.SIZE) {
+                writeInteger(out, integer.longValue());
+            } else if (integer.signum() > 0 && integer.bitLength() == Long.SIZE) {
+                out.writeByte(UINT64);
+                out.writeLong(integer.longValue());
+            } else {
+                throw new MessageConversionException("整数超出 64 位范围: " + integer);
+            }
+        } else if (value instanceof CharSequence || value instanceof Character || value instanceof BigDecimal) {
+            writeString(out, value.toString());
+        } else if (value instanceof Enum) {
+            writeString(out, ((Enum<?>) value).name());
+        } else if (value instanceof byte[]) {
+            writeBinary(out, (byte[]) value);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeHeader(out, map.size(), 0x80, 16, MAP16, MAP32);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey(), depth + 1);
+                write(out, entry.getValue(), depth + 1);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            writeHeader(out, collection.size(), 0x90, 16, ARRAY16, ARRAY32);
+            for (Object item : collection) {
+                write(out, item, depth + 1);
+            }
+        } else if (value instanceof Object[]) {
+            write(out, Arrays.asList((Object[]) value), depth);
+        } else {
+            // POJO、基本类型数组、日期等由 Jackson 序列化为 token 流后直接编码
+            TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+            try {
+                objectMapper.writeValue(buffer, value);
+                writeTokens(out, buffer, depth);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new MessageConversionException("无法编码 " + value.getClass().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 编码 Jackson 的 token 流。MessagePack 的数组和 map 头部需要元素个数，第一遍只统计每个容器的元素个数，第二遍写出。
+     */
+    private void writeTokens(Writer out, TokenBuffer buffer, int depth) throws IOException {
+        int[] counts = new int[16];
+        int containers = 0;
+        int[] stack = new int[16];
+        boolean[] isArray = new boolean[16];
+        int top = -1;
+        try (JsonParser parser = buffer.asParser()) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME || top >= 0 && isArray[top] && !token.isStructEnd()) {
+                    counts[stack[top]]++;
+                }
+                if (token.isStructStart()) {
+                    if (++top >= stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                        isArray = Arrays.copyOf(isArray, isArray.length * 2);
+                    }
+                    if (containers == counts.length) {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                    }
+                    stack[top] = containers++;
+                    isArray[top] = token == JsonToken.START_ARRAY;
+                } else if (token.isStructEnd()) {
+                    top--;
+                }
+            }
+        }
+        int container = 0;
+        try (JsonParser parser = buffer.asParser()) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                    case START_OBJECT:
+                        if (depth + ++top > MAX_DEPTH) {
+                            throw new MessageConversionException("嵌套层数超过 " + MAX_DEPTH);
+                        }
+                        writeHeader(out, counts[container++], 0x80, 16, MAP16, MAP32);
+                        break;
+                    case START_ARRAY:
+                        if (depth + ++top > MAX_DEPTH) {
+                            throw new MessageConversionException("嵌套层数超过 " + MAX_DEPTH);
+                        }
+                        writeHeader(out, counts[container++], 0x90, 16, ARRAY16, ARRAY32);
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        top--;
+                        break;
+                    case FIELD_NAME:
+                        writeString(out, parser.getCurrentName());
+                        break;
+                    case VALUE_STRING:
+                        writeString(out, parser.getText());
+                        break;
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT:
+                        write(out, parser.getNumberValue(), depth + top + 1);
+                        break;
+                    case VALUE_TRUE:
+                        out.writeByte(TRUE);
+                        break;
+                    case VALUE_FALSE:
+                        out.writeByte(FALSE);
+                        break;
+                    case VALUE_NULL:
+                        out.writeByte(NIL);
+                        break;
+                    default:
+                        Object embedded = parser.getEmbeddedObject();
+                        if (!(embedded instanceof byte[])) {
+                            throw new MessageConversionException("无法编码 " + (embedded == null ? token : embedded.getClass().getName()));
+                        }
+                        writeBinary(out, (byte[]) embedded);
+                }
+            }
+        }
+    }
+
+    private static void writeInteger(Writer out, long value) {
+        if (value >= 0) {
+            if (value < 0x80) {
+                out.writeByte((int) value);
+            } else if (value < 0x100) {
+                out.writeByte(UINT8);
+                out.writeByte((int) value);
+            } else if (value < 0x10000) {
+                out.writeByte(UINT16);
+                out.writeShort((int) value);
+            } else if (value < 0x100000000L) {
+                out.writeByte(UINT32);
+                out.writeInt((int) value);
+            } else {
+                out.writeByte(UINT64);
+                out.writeLong(value);
+            }
+        } else if (value >= -32) {
+            out.writeByte((int) value & 0xff);
+        } else if (value >= Byte.MIN_VALUE) {
+            out.writeByte(INT8);
+            out.writeByte((int) value);
+        } else if (value >= Short.MIN_VALUE) {
+            out.writeByte(INT16);
+            out.writeShort((int) value);
+        } else if (value >= Integer.MIN_VALUE) {
+            out.writeByte(INT32);
+            out.writeInt((int) value);
+        } else {
+            out.writeByte(INT64);
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeString(Writer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            out.writeByte(0xa0 | bytes.length);
+        } else if (bytes.length < 0x100) {
+            out.writeByte(STR8);
+            out.writeByte(bytes.length);
+        } else {
+            writeHeader(out, bytes.length, -1, 0, STR16, STR32);
+        }
+        out.write(bytes);
+    }
+
+    private static void writeBinary(Writer out, byte[] bytes) {
+        if (bytes.length < 0x100) {
+            out.writeByte(BIN8);
+            out.writeByte(bytes.length);
+        } else {
+            writeHeader(out, bytes.length, -1, 0, BIN16, BIN32);
+        }
+        out.write(bytes);
+    }
+
+    /**
+     * 写出长度头：小于 fixLimit 时用 fix 格式，否则按长度选用 16 位或 32 位格式。
+     */
+    private static void writeHeader(Writer out, int length, int fixPrefix, int fixLimit, int format16, int format32) {
+        if (length < fixLimit) {
+            out.writeByte(fixPrefix | length);
+        } else if (length < 0x10000) {
+            out.writeByte(format16);
+            out.writeShort(length);
+        } else {
+            out.writeByte(format32);
+            out.writeInt(length);
+        }
+    }
+
+    /**
+     * 按需扩容的字节缓冲区，省去 ByteArrayOutputStream 的同步开销。
+     */
+    private static final class Writer {
+
+        private byte[] buffer = new byte[64];
+
+        private int size;
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeShort(int value) {
+            ensureCapacity(2);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void write(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        Object read(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new MessageConversionException("嵌套层数超过 " + MAX_DEPTH);
+            }
+            int format = readByte();
+            if (format < 0x80) {
+                return format;
+            }
+            if (format >= 0xe0) {
+                return (int) (byte) format;
+            }
+            if (format < 0x90) {
+                return readMap(format & 0x0f, depth);
+            }
+            if (format < 0xa0) {
+                return readArray(format & 0x0f, depth);
+            }
+            if (format < 0xc0) {
+                return readString(format & 0x1f);
+            }
+            switch (format) {
+                case NIL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case BIN8:
+                    return readBytes(readByte());
+                case BIN16:
+                    return readBytes(readShort());
+                case BIN32:
+                    return readBytes(readLength());
+                case FLOAT32:
+                    return Float.intBitsToFloat(readInt());
+                case FLOAT64:
+                    return Double.longBitsToDouble(readLong());
+                case UINT8:
+                    return readByte();
+                case UINT16:
+                    return readShort();
+                case UINT32:
+                    return integer(readInt() & 0xffffffffL);
+                case UINT64:
+                    long unsigned = readLong();
+                    return unsigned >= 0 ? integer(unsigned) : new BigInteger(Long.toUnsignedString(unsigned));
+                case INT8:
+                    return (int) (byte) readByte();
+                case INT16:
+                    return (int) (short) readShort();
+                case INT32:
+                    return readInt();
+                case INT64:
+                    return integer(readLong());
+                case STR8:
+                    return readString(readByte());
+                case STR16:
+                    return readString(readShort());
+                case STR32:
+                    return readString(readLength());
+                case ARRAY16:
+                    return readArray(readShort(), depth);
+                case ARRAY32:
+                    return readArray(readLength(), depth);
+                case MAP16:
+                    return readMap(readShort(), depth);
+                case MAP32:
+                    return readMap(readLength(), depth);
+                default:
+                    throw new MessageConversionException(String.format("不支持的格式 0x%02x，位置 %d", format, position - 1));
+            }
+        }
+
+        void requireEnd() {
+            if (position != bytes.length) {
+                throw new MessageConversionException("消息体末尾有多余的 " + (bytes.length - position) + " 字节");
+            }
+        }
+
+        /**
+         * 把一个值写到 Jackson 的 token 流中，map 的键按字符串处理。
+         */
+        void copy(JsonGenerator generator, int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw new MessageConversionException("嵌套层数超过 " + MAX_DEPTH);
+            }
+            require(1);
+            int format = bytes[position] & 0xff;
+            int size;
+            if (format >= 0x80 && format < 0x90 || format == MAP16 || format == MAP32) {
+                position++;
+                size = format < 0x90 ? format & 0x0f : format == MAP16 ? readShort() : readLength();
+                generator.writeStartObject();
+                for (int i = 0; i < size; i++) {
+                    Object key = read(depth + 1);
+                    generator.writeFieldName(String.valueOf(key));
+                    copy(generator, depth + 1);
+                }
+                generator.writeEndObject();
+            } else if (format >= 0x90 && format < 0xa0 || format == ARRAY16 || format == ARRAY32) {
+                position++;
+                size = format < 0xa0 ? format & 0x0f : format == ARRAY16 ? readShort() : readLength();
+                generator.writeStartArray();
+                for (int i = 0; i < size; i++) {
+                    copy(generator, depth + 1);
+                }
+                generator.writeEndArray();
+            } else {
+                copyScalar(generator, read(depth));
+            }
+        }
+
+        private static void copyScalar(JsonGenerator generator, Object value) throws IOException {
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof String) {
+                generator.writeString((String) value);
+            } else if (value instanceof Integer) {
+                generator.writeNumber((Integer) value);
+            } else if (value instanceof Long) {
+                generator.writeNumber((Long) value);
+            } else if (value instanceof Double) {
+                generator.writeNumber((Double) value);
+            } else if (value instanceof Float) {
+                generator.writeNumber((Float) value);
+            } else if (value instanceof Boolean) {
+                generator.writeBoolean((Boolean) value);
+            } else if (value instanceof BigInteger) {
+                generator.writeNumber((BigInteger) value);
+            } else {
+                generator.writeBinary((byte[]) value);
+            }
+        }
+
+        private List<Object> readArray(int size, int depth) {
+            // 每个元素至少 1 字节，按剩余字节数限制预分配，防止伪造的长度导致大量分配
+            List<Object> list = new ArrayList<>(Math.min(size, bytes.length - position));
+            for (int i = 0; i < size; i++) {
+                list.add(read(depth + 1));
+            }
+            return list;
+        }
+
+        private Map<Object, Object> readMap(int size, int depth) {
+            Map<Object, Object> map = new LinkedHashMap<>(Math.min(size, bytes.length - position) * 2);
+            for (int i = 0; i < size; i++) {
+                map.put(read(depth + 1), read(depth + 1));
+            }
+            return map;
+        }
+
+        private String readString(int length) {
+            require(length);
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private byte[] readBytes(int length) {
+            require(length);
+            byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private int readByte() {
+            require(1);
+            return bytes[position++] & 0xff;
+        }
+
+        private int readShort() {
+            require(2);
+            return (bytes[position++] & 0xff) << 8 | bytes[position++] & 0xff;
+        }
+
+        private int readInt() {
+            require(4);
+            return (bytes[position++] & 0xff) << 24 | (bytes[position++] & 0xff) << 16
+                    | (bytes[position++] & 0xff) << 8 | bytes[position++] & 0xff;
+        }
+
+        private long readLong() {
+            return (long) readInt() << 32 | readInt() & 0xffffffffL;
+        }
+
+        private int readLength() {
+            int length = readInt();
+            if (length < 0) {
+                throw new MessageConversionException("长度超出范围: " + (length & 0xffffffffL));
+            }
+            return length;
+        }
+
+        private void require(int length) {
+            if (length > bytes.length - position) {
+                throw new MessageConversionException("消息体不完整，位置 " + position + " 需要 " + length + " 字节");
+            }
+        }
+
+        private static Object integer(long value) {
+            return value == (int) value ? (Object) (int) value : (Object) value;
+        }
+    }
+}
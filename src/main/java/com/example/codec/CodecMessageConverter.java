@@ -0,0 +1,111 @@
+package com.example.codec;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CodecMessageConverter 按交换器或按次选择编解码器，把消息内容编码为消息体并写入 content_type。
+ * <p>
+ * String 和 byte[] 保持原来的 text/plain、application/octet-stream 格式；其余对象不再走 Java 序列化，
+ * 按 {@code rabbitmq.codec.exchanges.<交换器>} 选择编解码器，未配置时使用 {@code rabbitmq.codec.default}。
+ * 作为 MessageConverter Bean 时 Spring Boot 会把它设置到 RabbitTemplate 上，receiveAndConvert 按 content_type 解码。
+ */
+@Component
+public class CodecMessageConverter implements MessageConverter {
+
+    private static final String EXCHANGE_PREFIX = "rabbitmq.codec.exchanges.";
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${rabbitmq.codec.default:" + BinaryMessageCodec.NAME + "}")
+    private String defaultCodecName;
+
+    private final SimpleMessageConverter fallback = new SimpleMessageConverter();
+
+    private final Map<String, MessageCodec> exchangeCodecs = new ConcurrentHashMap<>();
+
+    /**
+     * 把消息内容转换为发往指定交换器的消息。
+     *
+     * @param exchange  交换器名称
+     * @param payload   消息内容，已经是 Message 时原样返回
+     * @param codecName 按次指定的编解码器名称，为 null 时按交换器选择；指定时 String 和 byte[] 也按该编解码器编码
+     * @return 消息
+     * @throws IllegalArgumentException 未知的编解码器名称
+     */
+    public Message toMessage(String exchange, Object payload, String codecName) {
+        if (payload instanceof Message) {
+            return (Message) payload;
+        }
+        MessageProperties properties = new MessageProperties();
+        if (codecName != null) {
+            return encode(MessageCodecs.forName(codecName), payload, properties);
+        }
+        if (payload instanceof String || payload instanceof byte[]) {
+            return fallback.toMessage(payload, properties);
+        }
+        return encode(codecFor(exchange), payload, properties);
+    }
+
+    /**
+     * @param exchange 交换器名称
+     * @return 该交换器使用的编解码器
+     */
+    public MessageCodec codecFor(String exchange) {
+        return exchangeCodecs.computeIfAbsent(exchange == null ? "" : exchange,
+                name -> MessageCodecs.forName(environment.getProperty(EXCHANGE_PREFIX + name, defaultCodecName)));
+    }
+
+    /**
+     * 不知道目标交换器时（例如直接调用 RabbitTemplate.convertAndSend）使用默认编解码器。
+     */
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) {
+        if (object instanceof String || object instanceof byte[]) {
+            return fallback.toMessage(object, messageProperties);
+        }
+        return encode(MessageCodecs.forName(defaultCodecName), object, messageProperties);
+    }
+
+    /**
+     * 按 content_type 解码，不是编解码器产生的消息交给 SimpleMessageConverter。
+     * Java 序列化的消息体一律拒绝：SimpleMessageConverter 的白名单为空时会反序列化任意类，
+     * 而本转换器是 RabbitTemplate 上的全局转换器，receiveAndConvert 收到的消息来自任意发布方。
+     *
+     * @throws MessageConversionException content_type 为 application/x-java-serialized-object
+     */
+    @Override
+    public Object fromMessage(Message message) {
+        String contentType = message.getMessageProperties().getContentType();
+        if (contentType != null && contentType.regionMatches(true, 0, MessageProperties.CONTENT_TYPE_SERIALIZED_OBJECT, 0,
+                MessageProperties.CONTENT_TYPE_SERIALIZED_OBJECT.length())) {
+            throw new MessageConversionException("拒绝反序列化 content_type 为 " + contentType + " 的消息");
+        }
+        MessageCodec codec = MessageCodecs.forContentType(contentType);
+        if (codec == null) {
+            return fallback.fromMessage(message);
+        }
+        return codec.decode(message.getBody(), Object.class);
+    }
+
+    private static Message encode(MessageCodec codec, Object payload, MessageProperties properties) {
+        if (payload == null) {
+            throw new MessageConversionException("消息内容不能为空");
+        }
+        byte[] body = codec.encode(payload);
+        properties.setContentType(codec.getContentType());
+        properties.setContentLength(body.length);
+        return new Message(body, properties);
+    }
+}
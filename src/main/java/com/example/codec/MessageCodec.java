@@ -0,0 +1,39 @@
+package com.example.codec;
+
+/**
+ * 消息编解码器，编码结果的格式由 {@link #getContentType()} 标识，写入消息的 content_type，
+ * 消费端按 content_type 找到对应的编解码器解码，见 {@link MessageCodecs#forContentType(String)}。
+ * 实现必须是线程安全的。
+ */
+public interface MessageCodec {
+
+    /**
+     * @return 编解码器名称，用于配置和按次指定，例如 binary、json
+     */
+    String getName();
+
+    /**
+     * @return 写入消息 content_type 的类型，不含参数
+     */
+    String getContentType();
+
+    /**
+     * 编码消息。
+     *
+     * @param value 消息内容
+     * @return 消息体
+     * @throws org.springframework.amqp.support.converter.MessageConversionException 无法编码
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码消息。type 为 Object 时返回通用结构：Map、List、String、数字、Boolean、byte[] 或 null。
+     *
+     * @param body 消息体
+     * @param type 目标类型
+     * @param <T>  目标类型
+     * @return 解码后的对象
+     * @throws org.springframework.amqp.support.converter.MessageConversionException 消息体格式错误或无法转换为目标类型
+     */
+    <T> T decode(byte[] body, Class<T> type);
+}
@@ -0,0 +1,63 @@
+package com.example.codec;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 内置编解码器及按名称、按 content_type 的查找。
+ * 编解码器无状态，消费端只凭 content_type 即可解码，与发送时按交换器还是按次选择无关。
+ */
+public final class MessageCodecs {
+
+    public static final MessageCodec BINARY = new BinaryMessageCodec();
+
+    public static final MessageCodec JSON = new JsonMessageCodec();
+
+    private static final Map<String, MessageCodec> BY_NAME;
+
+    private static final Map<String, MessageCodec> BY_CONTENT_TYPE;
+
+    static {
+        Map<String, MessageCodec> byName = new LinkedHashMap<>();
+        Map<String, MessageCodec> byContentType = new LinkedHashMap<>();
+        for (MessageCodec codec : new MessageCodec[]{BINARY, JSON}) {
+            byName.put(codec.getName(), codec);
+            byContentType.put(codec.getContentType(), codec);
+        }
+        BY_NAME = Collections.unmodifiableMap(byName);
+        BY_CONTENT_TYPE = Collections.unmodifiableMap(byContentType);
+    }
+
+    private MessageCodecs() {
+    }
+
+    /**
+     * @param name 编解码器名称
+     * @return 对应的编解码器
+     * @throws IllegalArgumentException 未知的名称
+     */
+    public static MessageCodec forName(String name) {
+        MessageCodec codec = BY_NAME.get(name.trim().toLowerCase(Locale.ROOT));
+        if (codec == null) {
+            throw new IllegalArgumentException("未知的编解码器: " + name + "，可选值: " + BY_NAME.keySet());
+        }
+        return codec;
+    }
+
+    /**
+     * 按 content_type 查找编解码器，忽略大小写和 charset 等参数。
+     *
+     * @param contentType 消息的 content_type，可以为 null
+     * @return 对应的编解码器，没有时为 null
+     */
+    public static MessageCodec forContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        String mimeType = parameters < 0 ? contentType : contentType.substring(0, parameters);
+        return BY_CONTENT_TYPE.get(mimeType.trim().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.codec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * PayloadCompressor 在发布前压缩较大的消息体，在消费前透明解压。
+ * <p>
+ * 开启 {@code rabbitmq.compression.enabled} 后，不小于 {@code rabbitmq.compression.min-size} 字节的消息体按
+ * {@code rabbitmq.compression.algorithm}（gzip 或 deflate）压缩，压缩后没有变小的保持原样。
+ * 压缩算法记录在 content_encoding 中，原有的 content_encoding（例如字符集）以 "gzip:UTF-8" 的形式保留，
+ * 与 Spring AMQP 的 GZipPostProcessor/DelegatingDecompressingPostProcessor 约定一致。
+ * 解压不受开关影响，收到带压缩标记的消息总会解压。Deflater/Inflater 实例放在有界池中复用，不为每条消息创建。
+ */
+@Component
+public class PayloadCompressor {
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadCompressor.class);
+
+    public static final String GZIP = "gzip";
+
+    public static final String DEFLATE = "deflate";
+
+    private static final int GZIP_HEADER_LENGTH = 10;
+
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private static final int FHCRC = 2;
+
+    private static final int FEXTRA = 4;
+
+    private static final int FNAME = 8;
+
+    private static final int FCOMMENT = 16;
+
+    @Value("${rabbitmq.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${rabbitmq.compression.algorithm:" + GZIP + "}")
+    private String algorithm;
+
+    @Value("${rabbitmq.compression.min-size:1024}")
+    private int minSize;
+
+    @Value("${rabbitmq.compression.level:6}")
+    private int level;
+
+    @Value("${rabbitmq.compression.pool-size:16}")
+    private int poolSize;
+
+    /**
+     * 解压后消息体的上限，防止压缩炸弹耗尽内存
+     */
+    @Value("${rabbitmq.compression.max-inflated-bytes:67108864}")
+    private int maxInflatedBytes;
+
+    private Pool<Deflater> deflaters;
+
+    private Pool<Inflater> gzipInflaters;
+
+    private Pool<Inflater> zlibInflaters;
+
+    @PostConstruct
+    public void init() {
+        algorithm = algorithm.trim().toLowerCase(Locale.ROOT);
+        if (!GZIP.equals(algorithm) && !DEFLATE.equals(algorithm)) {
+            throw new IllegalArgumentException("不支持的压缩算法: " + algorithm + "，可选值: gzip、deflate");
+        }
+        // gzip 的头和尾由本类写出，Deflater 只产生原始 deflate 数据
+        boolean nowrap = GZIP.equals(algorithm);
+        deflaters = new Pool<>(poolSize, () -> new Deflater(level, nowrap), Deflater::reset, Deflater::end);
+        gzipInflaters = new Pool<>(poolSize, () -> new Inflater(true), Inflater::reset, Inflater::end);
+        zlibInflaters = new Pool<>(poolSize, Inflater::new, Inflater::reset, Inflater::end);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deflaters.close();
+        gzipInflaters.close();
+        zlibInflaters.close();
+    }
+
+    /**
+     * @return 是否压缩发布的消息
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 发布前调用：压缩达到阈值的消息体，未开启、过小、已经压缩过或压缩后没有变小时原样返回。
+     *
+     * @param message 待发布的消息
+     * @return 压缩后的消息
+     */
+    public Message compress(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        byte[] compressed = compress(message.getBody(), properties.getContentEncoding());
+        if (compressed == null) {
+            return message;
+        }
+        properties.setContentEncoding(compressedEncoding(properties.getContentEncoding()));
+        properties.setContentLength(compressed.length);
+        return new Message(compressed, properties);
+    }
+
+    /**
+     * 压缩消息体，供直接使用通道发布的路径调用。
+     *
+     * @param body            消息体
+     * @param contentEncoding 消息原有的 content_encoding
+     * @return 压缩后的消息体，不需要压缩时为 null
+     */
+    public byte[] compress(byte[] body, String contentEncoding) {
+        if (!enabled || body.length < minSize || algorithmOf(contentEncoding) != null) {
+            return null;
+        }
+        Deflater deflater = deflaters.borrow();
+        try {
+            return GZIP.equals(algorithm) ? gzip(deflater, body) : deflate(deflater, body, 0, 0);
+        } finally {
+            deflaters.release(deflater);
+        }
+    }
+
+    /**
+     * @param contentEncoding 消息原有的 content_encoding
+     * @return 压缩后应写入的 content_encoding
+     */
+    public String compressedEncoding(String contentEncoding) {
+        return contentEncoding == null || contentEncoding.isEmpty() ? algorithm : algorithm + ":" + contentEncoding;
+    }
+
+    /**
+     * 消费前调用：content_encoding 标记为 gzip 或 deflate 时解压并恢复原有的 content_encoding，否则原样返回。
+     * 解压失败时记录日志并原样返回，由处理器按 content_encoding 自行判断。
+     *
+     * @param message 收到的消息
+     * @return 解压后的消息
+     */
+    public Message decompress(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        String contentEncoding = properties.getContentEncoding();
+        String compression = algorithmOf(contentEncoding);
+        if (compression == null) {
+            return message;
+        }
+        byte[] body;
+        try {
+            body = decompress(message.getBody(), compression);
+        } catch (MessageConversionException e) {
+            log.warn("解压消息失败，原样交给处理器: queue={}, deliveryTag={}, {}",
+                    properties.getConsumerQueue(), properties.getDeliveryTag(), e.getMessage());
+            return message;
+        }
+        int separator = contentEncoding.indexOf(':');
+        properties.setContentEncoding(separator < 0 ? null : contentEncoding.substring(separator + 1));
+        properties.setContentLength(body.length);
+        return new Message(body, properties);
+    }
+
+    /**
+     * 按算法解压消息体。
+     *
+     * @param body        压缩后的消息体
+     * @param compression gzip 或 deflate
+     * @return 解压后的消息体
+     * @throws MessageConversionException 数据损坏或解压后超过上限
+     */
+    public byte[] decompress(byte[] body, String compression) {
+        if (GZIP.equals(compression)) {
+            Inflater inflater = gzipInflaters.borrow();
+            try {
+                return gunzip(inflater, body);
+            } finally {
+                gzipInflaters.release(inflater);
+            }
+        }
+        Inflater inflater = zlibInflaters.borrow();
+        try {
+            return inflate(inflater, body, 0, body.length, Math.min(maxInflatedBytes, body.length * 4));
+        } finally {
+            zlibInflaters.release(inflater);
+        }
+    }
+
+    /**
+     * @param contentEncoding 消息的 content_encoding
+     * @return 其中标记的压缩算法，没有压缩时为 null
+     */
+    public static String algorithmOf(String contentEncoding) {
+        if (contentEncoding == null) {
+            return null;
+        }
+        int separator = contentEncoding.indexOf(':');
+        String token = (separator < 0 ? contentEncoding : contentEncoding.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+        return GZIP.equals(token) || DEFLATE.equals(token) ? token : null;
+    }
+
+    private static byte[] gzip(Deflater deflater, byte[] body) {
+        byte[] out = deflate(deflater, body, GZIP_HEADER_LENGTH, GZIP_TRAILER_LENGTH);
+        if (out == null) {
+            return null;
+        }
+        out[0] = (byte) GZIP_MAGIC;
+        out[1] = (byte) (GZIP_MAGIC >> 8);
+        out[2] = Deflater.DEFLATED;
+        // 其余头部字段（标志、修改时间、额外标志）为 0，操作系统为 unknown
+        out[9] = (byte) 0xff;
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        writeIntLE(out, out.length - GZIP_TRAILER_LENGTH, (int) crc.getValue());
+        writeIntLE(out, out.length - 4, body.length);
+        return out;
+    }
+
+    /**
+     * 压缩到预留了头尾空间的数组中。输出缓冲区以原消息体长度为上限，写满仍未结束说明压缩后不会变小，放弃压缩。
+     */
+    private static byte[] deflate(Deflater deflater, byte[] body, int headerLength, int trailerLength) {
+        deflater.setInput(body);
+        deflater.finish();
+        byte[] out = new byte[body.length];
+        int limit = out.length - trailerLength;
+        int length = headerLength;
+        while (!deflater.finished()) {
+            if (length >= limit) {
+                return null;
+            }
+            length += deflater.deflate(out, length, limit - length);
+        }
+        return Arrays.copyOf(out, length + trailerLength);
+    }
+
+    private byte[] gunzip(Inflater inflater, byte[] body) {
+        if (body.length < GZIP_HEADER_LENGTH + GZIP_TRAILER_LENGTH
+                || (readShortLE(body, 0) != GZIP_MAGIC) || body[2] != Deflater.DEFLATED) {
+            throw new MessageConversionException("不是有效的 gzip 数据");
+        }
+        int flags = body[3] & 0xff;
+        int offset = GZIP_HEADER_LENGTH;
+        try {
+            if ((flags & FEXTRA) != 0) {
+                offset += 2 + readShortLE(body, offset);
+            }
+            if ((flags & FNAME) != 0) {
+                offset = skipZeroTerminated(body, offset);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                offset = skipZeroTerminated(body, offset);
+            }
+            if ((flags & FHCRC) != 0) {
+                offset += 2;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new MessageConversionException("gzip 头部不完整");
+        }
+        int trailer = body.length - GZIP_TRAILER_LENGTH;
+        if (offset > trailer) {
+            throw new MessageConversionException("gzip 头部不完整");
+        }
+        int expectedSize = readIntLE(body, trailer + 4);
+        int sizeHint = expectedSize > 0 && expectedSize <= maxInflatedBytes ? expectedSize : body.length * 4;
+        byte[] out = inflate(inflater, body, offset, body.length - offset, Math.min(maxInflatedBytes, sizeHint));
+        CRC32 crc = new CRC32();
+        crc.update(out, 0, out.length);
+        if ((int) crc.getValue() != readIntLE(body, trailer) || out.length != expectedSize) {
+            throw new MessageConversionException("gzip 校验失败");
+        }
+        return out;
+    }
+
+    private byte[] inflate(Inflater inflater, byte[] body, int offset, int length, int sizeHint) {
+        inflater.setInput(body, offset, length);
+        byte[] out = new byte[Math.max(64, sizeHint)];
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                if (size == out.length) {
+                    if (out.length >= maxInflatedBytes) {
+                        throw new MessageConversionException("解压后超过上限 " + maxInflatedBytes + " 字节");
+                    }
+                    out = Arrays.copyOf(out, (int) Math.min(maxInflatedBytes, out.length * 2L));
+                }
+                int inflated = inflater.inflate(out, size, out.length - size);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new MessageConversionException("压缩数据不完整");
+                }
+                size += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new MessageConversionException("压缩数据损坏", e);
+        }
+        return size == out.length ? out : Arrays.copyOf(out, size);
+    }
+
+    private static int skipZeroTerminated(byte[] bytes, int offset) {
+        while (bytes[offset] != 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+
+    private static int readShortLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readIntLE(byte[] bytes, int offset) {
+        return readShortLE(bytes, offset) | readShortLE(bytes, offset + 2) << 16;
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * 有界对象池：池空时新建，归还时池满则释放，实例持有本地内存，必须显式释放。
+     */
+    private static final class Pool<T> {
+
+        private final BlockingQueue<T> idle;
+
+        private final Supplier<T> factory;
+
+        private final Consumer<T> reset;
+
+        private final Consumer<T> destroy;
+
+        Pool(int capacity, Supplier<T> factory, Consumer<T> reset, Consumer<T> destroy) {
+            this.idle = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            this.factory = factory;
+            this.reset = reset;
+            this.destroy = destroy;
+        }
+
+        T borrow() {
+            T instance = idle.poll();
+            return instance != null ? instance : factory.get();
+        }
+
+        void release(T instance) {
+            reset.accept(instance);
+            if (!idle.offer(instance)) {
+                destroy.accept(instance);
+            }
+        }
+
+        void close() {
+            T instance;
+            while ((instance = idle.poll()) != null) {
+                destroy.accept(instance);
+            }
+        }
+    }
+}
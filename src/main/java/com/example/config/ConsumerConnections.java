@@ -0,0 +1,64 @@
+package com.example.config;
+
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 监听容器和流式消费使用的连接工厂。
+ * <p>
+ * 开启 rabbitmq.connection.consumer.dedicated 后每个工厂各自维护一条与发布、声明分开的物理连接，
+ * Broker 因内存或磁盘告警阻塞发布连接时消费不受影响；多个工厂时按调用顺序轮流分配。
+ * 未开启时只有共享的连接工厂，且不会在关闭时销毁它。
+ */
+public class ConsumerConnections implements DisposableBean {
+
+    private final List<ConnectionFactory> connectionFactories;
+
+    private final boolean dedicated;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param connectionFactories 连接工厂，至少一个
+     * @param dedicated           工厂是否由本对象创建、需要在关闭时销毁
+     */
+    public ConsumerConnections(List<ConnectionFactory> connectionFactories, boolean dedicated) {
+        if (connectionFactories.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个连接工厂");
+        }
+        this.connectionFactories = Collections.unmodifiableList(connectionFactories);
+        this.dedicated = dedicated;
+    }
+
+    /**
+     * @return 轮流分配的下一个连接工厂
+     */
+    public ConnectionFactory next() {
+        return connectionFactories.get(Math.floorMod(next.getAndIncrement(), connectionFactories.size()));
+    }
+
+    /**
+     * @return 所有连接工厂
+     */
+    public List<ConnectionFactory> getConnectionFactories() {
+        return connectionFactories;
+    }
+
+    public boolean isDedicated() {
+        return dedicated;
+    }
+
+    @Override
+    public void destroy() {
+        if (dedicated) {
+            for (ConnectionFactory connectionFactory : connectionFactories) {
+                ((CachingConnectionFactory) connectionFactory).destroy();
+            }
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.example.config;
 
+import com.example.metrics.MessagingMetrics;
+import com.example.util.DeclaredTopologyCache;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,18 +16,27 @@ import org.springframework.stereotype.Service;
 @Configuration
 public class DynamicRabbitMQConfig {
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private CachingConnectionFactory cachingConnectionFactory;
 
+    @Autowired
+    private MessagingMetrics metrics;
+
+    /**
+     * RabbitAdmin 使用共享连接，开启独立发布连接后声明、拉取式接收和积压采样（通过 {@link RabbitAdmin#getRabbitTemplate()}）
+     * 不会被发布连接上的流控阻塞。
+     *
+     * @return RabbitAdmin
+     */
     @Bean
     public RabbitAdmin rabbitAdmin() {
-        return new RabbitAdmin(rabbitTemplate);
+        return new RabbitAdmin(new InstrumentedConnectionFactory(cachingConnectionFactory, "shared", metrics));
     }
 
     @Service
     public class RabbitMQService {
 
         @Autowired
-        private RabbitAdmin rabbitAdmin;
+        private DeclaredTopologyCache topologyCache;
 
         /**
          * 创建队列
@@ -34,7 +45,7 @@ public class DynamicRabbitMQConfig {
          */
         public void createQueue(String queueName) {
             Queue queue = new Queue(queueName, true); // durable queue
-            rabbitAdmin.declareQueue(queue);
+            topologyCache.declareQueue(queue);
         }
 
         /**
@@ -44,7 +55,7 @@ public class DynamicRabbitMQConfig {
          */
         public void createExchange(String exchangeName) {
             TopicExchange exchange = new TopicExchange(exchangeName);
-            rabbitAdmin.declareExchange(exchange);
+            topologyCache.declareExchange(exchange);
         }
 
         /**
@@ -58,9 +69,9 @@ public class DynamicRabbitMQConfig {
             Queue queue = new Queue(queueName, true);
             TopicExchange exchange = new TopicExchange(exchangeName);
             Binding binding = BindingBuilder.bind(queue).to(exchange).with(routingKey);
-            rabbitAdmin.declareQueue(queue);
-            rabbitAdmin.declareExchange(exchange);
-            rabbitAdmin.declareBinding(binding);
+            topologyCache.declareQueue(queue);
+            topologyCache.declareExchange(exchange);
+            topologyCache.declareBinding(binding);
         }
 
         /**
@@ -69,7 +80,7 @@ public class DynamicRabbitMQConfig {
          * @param queueName 队列名称
          */
         public void deleteQueue(String queueName) {
-            rabbitAdmin.deleteQueue(queueName);
+            topologyCache.deleteQueue(queueName);
         }
 
         /**
@@ -78,7 +89,7 @@ public class DynamicRabbitMQConfig {
          * @param exchangeName 交换器名称
          */
         public void deleteExchange(String exchangeName) {
-            rabbitAdmin.deleteExchange(exchangeName);
+            topologyCache.deleteExchange(exchangeName);
         }
 
         /**
@@ -92,7 +103,7 @@ public class DynamicRabbitMQConfig {
             Queue queue = new Queue(queueName, true);
             TopicExchange exchange = new TopicExchange(exchangeName);
             Binding binding = BindingBuilder.bind(queue).to(exchange).with(routingKey);
-            rabbitAdmin.removeBinding(binding);
+            topologyCache.removeBinding(binding);
         }
     }
 }
@@ -0,0 +1,174 @@
+package com.example.config;
+
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.BlockedListener;
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.connection.AbstractConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ChannelListener;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+
+/**
+ * 包装连接工厂，统计经由它借出的通道命中还是未命中缓存。
+ * <p>
+ * CachingConnectionFactory 只在缓存中没有空闲通道、新建物理通道时同步回调 {@link ChannelListener#onCreate}，
+ * 回调在借出通道的线程上执行；借出前清除线程标记、借出后检查标记即可判断本次是否新建了通道，不需要加锁。
+ * {@link #getPublisherConnectionFactory()} 返回以 publisher 为名统计的发布连接工厂。
+ */
+final class InstrumentedConnectionFactory implements ConnectionFactory {
+
+    /**
+     * 当前线程借出通道期间是否新建了物理通道
+     */
+    private static final ThreadLocal<boolean[]> CREATED = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private static final ChannelListener CREATED_LISTENER = (channel, transactional) -> CREATED.get()[0] = true;
+
+    private final ConnectionFactory delegate;
+
+    private final MessagingMetrics.ChannelCacheMetrics metrics;
+
+    private final ConnectionFactory publisherConnectionFactory;
+
+    /**
+     * @param delegate 被包装的连接工厂，发布连接工厂一并包装
+     * @param name     指标中的连接名称
+     * @param metrics  指标
+     */
+    InstrumentedConnectionFactory(ConnectionFactory delegate, String name, MessagingMetrics metrics) {
+        this(delegate, metrics.channelCache(name), delegate.getPublisherConnectionFactory() == null ? null
+                : new InstrumentedConnectionFactory(delegate.getPublisherConnectionFactory(), metrics.channelCache("publisher"), null));
+    }
+
+    private InstrumentedConnectionFactory(ConnectionFactory delegate, MessagingMetrics.ChannelCacheMetrics metrics,
+                                          ConnectionFactory publisherConnectionFactory) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.publisherConnectionFactory = publisherConnectionFactory;
+        if (delegate instanceof AbstractConnectionFactory) {
+            // 同一个监听器重复注册只是多设置一次标记
+            ((AbstractConnectionFactory) delegate).addChannelListener(CREATED_LISTENER);
+        }
+    }
+
+    @Override
+    public Connection createConnection() throws AmqpException {
+        return new InstrumentedConnection(delegate.createConnection());
+    }
+
+    @Override
+    public String getHost() {
+        return delegate.getHost();
+    }
+
+    @Override
+    public int getPort() {
+        return delegate.getPort();
+    }
+
+    @Override
+    public String getVirtualHost() {
+        return delegate.getVirtualHost();
+    }
+
+    @Override
+    public String getUsername() {
+        return delegate.getUsername();
+    }
+
+    @Override
+    public void addConnectionListener(ConnectionListener listener) {
+        delegate.addConnectionListener(listener);
+    }
+
+    @Override
+    public boolean removeConnectionListener(ConnectionListener listener) {
+        return delegate.removeConnectionListener(listener);
+    }
+
+    @Override
+    public void clearConnectionListeners() {
+        delegate.clearConnectionListeners();
+    }
+
+    @Override
+    public ConnectionFactory getPublisherConnectionFactory() {
+        return publisherConnectionFactory;
+    }
+
+    @Override
+    public boolean isSimplePublisherConfirms() {
+        return delegate.isSimplePublisherConfirms();
+    }
+
+    @Override
+    public boolean isPublisherConfirms() {
+        return delegate.isPublisherConfirms();
+    }
+
+    @Override
+    public boolean isPublisherReturns() {
+        return delegate.isPublisherReturns();
+    }
+
+    /**
+     * 统计 createChannel 的连接包装，其余方法直接委托。
+     */
+    private final class InstrumentedConnection implements Connection {
+
+        private final Connection target;
+
+        private InstrumentedConnection(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Channel createChannel(boolean transactional) throws AmqpException {
+            boolean[] created = CREATED.get();
+            created[0] = false;
+            long start = System.nanoTime();
+            Channel channel;
+            try {
+                channel = target.createChannel(transactional);
+            } catch (AmqpTimeoutException e) {
+                metrics.recordTimeout();
+                throw e;
+            }
+            metrics.recordCheckout(created[0], System.nanoTime() - start);
+            return channel;
+        }
+
+        @Override
+        public void close() throws AmqpException {
+            target.close();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return target.isOpen();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return target.getLocalPort();
+        }
+
+        @Override
+        public void addBlockedListener(BlockedListener listener) {
+            target.addBlockedListener(listener);
+        }
+
+        @Override
+        public boolean removeBlockedListener(BlockedListener listener) {
+            return target.removeBlockedListener(listener);
+        }
+
+        @Override
+        public com.rabbitmq.client.Connection getDelegate() {
+            return target.getDelegate();
+        }
+    }
+}
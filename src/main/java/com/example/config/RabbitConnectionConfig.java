@@ -0,0 +1,113 @@
+package com.example.config;
+
+import com.example.metrics.MessagingMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RabbitConnectionConfig 配置类用于划分连接：
+ * <ul>
+ *     <li>发布连接：开启 rabbitmq.connection.publisher.dedicated 后 RabbitTemplate 的发布走自动配置的连接工厂内置的独立发布连接，
+ *     可以单独设置通道缓存大小和借出超时</li>
+ *     <li>共享连接：RabbitAdmin 的声明、拉取式接收和积压采样</li>
+ *     <li>消费连接：开启 rabbitmq.connection.consumer.dedicated 后监听容器和流式消费使用独立的连接，数量由 connections 决定</li>
+ * </ul>
+ * Broker 触发流控时只阻塞发布的连接，拆分后消费不会跟着停顿。
+ * RabbitTemplate 借出通道的命中/未命中次数记录在 {@link MessagingMetrics#channelCache(String)}。
+ */
+@Configuration
+public class RabbitConnectionConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(RabbitConnectionConfig.class);
+
+    @Autowired
+    private CachingConnectionFactory cachingConnectionFactory;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private RabbitProperties rabbitProperties;
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 是否使用独立的发布连接
+     */
+    @Value("${rabbitmq.connection.publisher.dedicated:false}")
+    private boolean publisherDedicated;
+
+    /**
+     * 是否使用独立的消费连接
+     */
+    @Value("${rabbitmq.connection.consumer.dedicated:false}")
+    private boolean consumerDedicated;
+
+    /**
+     * 独立消费连接的数量，direct 模式下按队列轮流分配
+     */
+    @Value("${rabbitmq.connection.consumer.connections:1}")
+    private int consumerConnections;
+
+    @PostConstruct
+    public void init() {
+        if (publisherDedicated) {
+            CachingConnectionFactory publisher = (CachingConnectionFactory) cachingConnectionFactory.getPublisherConnectionFactory();
+            // 自动配置的 spring.rabbitmq.cache.channel.* 已同步到发布连接工厂，这里只覆盖单独设置的值
+            Integer channelCacheSize = environment.getProperty("rabbitmq.connection.publisher.channel-cache-size", Integer.class);
+            if (channelCacheSize != null) {
+                publisher.setChannelCacheSize(channelCacheSize);
+            }
+            Long checkoutTimeout = environment.getProperty("rabbitmq.connection.publisher.channel-checkout-timeout-ms", Long.class);
+            if (checkoutTimeout != null) {
+                publisher.setChannelCheckoutTimeout(checkoutTimeout);
+            }
+            rabbitTemplate.setUsePublisherConnection(true);
+            log.info("发布使用独立连接，通道缓存大小 {}", publisher.getChannelCacheSize());
+        }
+        rabbitTemplate.setConnectionFactory(new InstrumentedConnectionFactory(cachingConnectionFactory, "shared", metrics));
+    }
+
+    /**
+     * 按配置创建消费连接工厂。独立的工厂与自动配置的工厂共用底层 RabbitMQ 客户端配置（认证、心跳、SSL 等）和地址列表。
+     *
+     * @return 消费连接工厂
+     */
+    @Bean
+    public ConsumerConnections consumerConnections() {
+        if (!consumerDedicated) {
+            return new ConsumerConnections(Collections.singletonList(cachingConnectionFactory), false);
+        }
+        int count = Math.max(1, consumerConnections);
+        List<ConnectionFactory> connectionFactories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CachingConnectionFactory connectionFactory = new CachingConnectionFactory(cachingConnectionFactory.getRabbitConnectionFactory());
+            connectionFactory.setAddresses(rabbitProperties.determineAddresses());
+            connectionFactory.setChannelCacheSize(cachingConnectionFactory.getChannelCacheSize());
+            String connectionName = "consumer-" + i;
+            connectionFactory.setConnectionNameStrategy(factory -> connectionName);
+            connectionFactory.setBeanName(connectionName);
+            connectionFactories.add(connectionFactory);
+        }
+        log.info("消费使用 {} 条独立连接", count);
+        return new ConsumerConnections(connectionFactories, true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.consumer;
+
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单个通道的确认水位：投递按到达顺序登记，处理完成的顺序可以任意，
+ * 当某个投递及其之前的所有投递都已完成时，以一次 basicAck(tag, true) 确认到其中最大的成功投递。
+ * <p>
+ * 处理失败的投递在完成时立即单独 nack，之后的累计确认会跳过它（已 nack 的投递不再属于未确认的投递）。
+ * 确认和 nack 都在锁内发出，同一个通道上不会并发调用。
+ */
+final class AckWatermark {
+
+    private final Channel channel;
+
+    /**
+     * 尚未越过水位的投递：delivery tag -> 结果，null 表示仍在处理，true 为成功，false 为已 nack
+     */
+    private final TreeMap<Long, Boolean> pending = new TreeMap<>();
+
+    AckWatermark(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 登记一次投递，必须在通道的投递线程上按 delivery tag 顺序调用。
+     *
+     * @param deliveryTag delivery tag
+     */
+    synchronized void register(long deliveryTag) {
+        pending.put(deliveryTag, null);
+    }
+
+    /**
+     * 标记一次投递处理完成，水位前进时发出累计确认。
+     *
+     * @param deliveryTag delivery tag
+     * @param success     是否处理成功，失败时立即 nack
+     * @param requeue     失败时是否重新入队
+     * @return 发出累计确认所用的纳秒数，没有发出确认时为 -1
+     * @throws IOException 发送确认失败
+     */
+    synchronized long complete(long deliveryTag, boolean success, boolean requeue) throws IOException {
+        if (!success) {
+            channel.basicNack(deliveryTag, false, requeue);
+        }
+        pending.put(deliveryTag, success);
+        long ackTag = 0;
+        Map.Entry<Long, Boolean> head;
+        while ((head = pending.firstEntry()) != null && head.getValue() != null) {
+            if (head.getValue()) {
+                ackTag = head.getKey();
+            }
+            pending.pollFirstEntry();
+        }
+        if (ackTag == 0) {
+            return -1;
+        }
+        long start = System.nanoTime();
+        channel.basicAck(ackTag, true);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return 尚未确认的投递数（包括已完成但前面仍有未完成投递的）
+     */
+    synchronized int getPending() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.consumer;
+
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AdaptivePrefetchController 根据实测的处理耗时和往返耗时调整消费者通道的预取数量（basic.qos）。
+ * <p>
+ * 消费者处理完一条消息后，确认要经过一个网络往返才能让 Broker 补发下一条。为了在这段时间里不空闲，
+ * 通道上需要预取约 往返耗时 / 单条处理耗时 条消息；预取再多只会让消息积压在某个消费者本地，
+ * 其他空闲消费者拿不到。因此目标预取数为：
+ * <pre>
+ *     ceil(往返耗时 / 单条处理耗时 × headroom) + 1，并限制在 [min, max] 之间
+ * </pre>
+ * 往返耗时取自同步的 basic.qos 调用本身：每个采样周期都会让各通道在下一条消息到达时重新下发一次 qos 并计时。
+ * AMQP 的 basic.ack 没有响应帧，无法直接计时，这里以 qos 往返近似确认往返。
+ * <p>
+ * 预取数以 global=true 下发，作用于整个通道；容器启动时设置的按消费者预取数取 max 作为上限。
+ * qos 只能在拥有通道的监听线程上调用，因此由监听器在收到消息时调用 {@link #apply(String, Channel)}。
+ */
+@Component
+public class AdaptivePrefetchController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePrefetchController.class);
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    /**
+     * 监听器依赖本组件，而容器管理器又依赖监听器，这里延迟获取以避免循环依赖
+     */
+    @Autowired
+    private ObjectProvider<ListenerContainerManager> containerManagerProvider;
+
+    /**
+     * 首次使用时从 containerManagerProvider 获取，之后不再查找
+     */
+    private volatile ListenerContainerManager containerManager;
+
+    @Value("${rabbitmq.prefetch.adaptive-enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 测得处理耗时之前使用的预取数，与容器默认的按消费者预取数一致
+     */
+    @Value("${rabbitmq.consumer.prefetch:250}")
+    private int initialPrefetch;
+
+    @Value("${rabbitmq.prefetch.min:1}")
+    private int minPrefetch;
+
+    @Value("${rabbitmq.prefetch.max:1000}")
+    private int maxPrefetch;
+
+    @Value("${rabbitmq.consumer.batch-enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${rabbitmq.consumer.batch-size:50}")
+    private int batchSize;
+
+    /**
+     * 在理论值之上额外预留的倍数，用于吸收处理耗时和网络抖动
+     */
+    @Value("${rabbitmq.prefetch.headroom:1.5}")
+    private double headroom;
+
+    /**
+     * 每个队列的预取状态
+     */
+    private final Map<String, QueueState> queues = new ConcurrentHashMap<>();
+
+    /**
+     * 每个消费者通道当前已下发的预取数
+     */
+    private final Map<Channel, ChannelState> channels = new ConcurrentHashMap<>();
+
+    /**
+     * 采样代数，通道的代数落后时会重新下发 qos 以测量往返耗时
+     */
+    private volatile long epoch;
+
+    /**
+     * 往返耗时的指数移动平均（纳秒）
+     */
+    private volatile double rttNanos;
+
+    @PostConstruct
+    public void init() {
+        // 批量消费时预取数小于批大小会导致每批都要等到接收超时才能凑齐
+        if (batchEnabled) {
+            minPrefetch = Math.max(minPrefetch, batchSize);
+        }
+    }
+
+    /**
+     * 在监听线程上按需为通道下发新的预取数，已是目标值且无需重新测量时直接返回。
+     *
+     * @param queueName 消息所属队列
+     * @param channel   消费者通道
+     */
+    public void apply(String queueName, Channel channel) {
+        if (!enabled) {
+            return;
+        }
+        int target = targetFor(queueName);
+        ChannelState state = channels.get(channel);
+        if (state == null) {
+            state = channels.computeIfAbsent(channel, k -> new ChannelState());
+        }
+        long currentEpoch = epoch;
+        if (state.prefetch == target && state.epoch == currentEpoch) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            channel.basicQos(target, true);
+            long rtt = System.nanoTime() - start;
+            double previous = rttNanos;
+            rttNanos = previous == 0 ? rtt : previous * 0.8 + rtt * 0.2;
+            state.prefetch = target;
+            state.epoch = currentEpoch;
+        } catch (IOException e) {
+            log.warn("下发预取数 {} 失败: {}", target, e.getMessage());
+        }
+    }
+
+    /**
+     * 定时根据每个队列在本周期内的平均处理耗时重新计算目标预取数。
+     */
+    @Scheduled(fixedDelayString = "${rabbitmq.prefetch.interval-ms:5000}")
+    public void recalculate() {
+        if (!enabled) {
+            return;
+        }
+        channels.keySet().removeIf(channel -> !channel.isOpen());
+        Set<String> queueNames = containerManager().getQueueNames();
+        queues.keySet().retainAll(queueNames);
+        for (String queueName : queueNames) {
+            QueueState state = queues.computeIfAbsent(queueName, k -> new QueueState(initialPrefetch()));
+            LatencyHistogram handlerLatency = metrics.queue(queueName).getHandlerLatency();
+            long messages = handlerLatency.getCount();
+            long nanos = handlerLatency.getSum();
+            if (messages > state.lastMessages) {
+                state.handlerNanos = (double) (nanos - state.lastNanos) / (messages - state.lastMessages);
+            }
+            state.lastMessages = messages;
+            state.lastNanos = nanos;
+            if (state.handlerNanos > 0 && rttNanos > 0) {
+                int prefetch = (int) Math.ceil(rttNanos / state.handlerNanos * headroom) + 1;
+                prefetch = Math.max(minPrefetch, Math.min(maxPrefetch, prefetch));
+                if (prefetch != state.prefetch) {
+                    log.info("队列 {} 的预取数 {} -> {}，处理耗时 {} 微秒，往返耗时 {} 微秒", queueName, state.prefetch,
+                            prefetch, (long) (state.handlerNanos / 1000), (long) (rttNanos / 1000));
+                    state.prefetch = prefetch;
+                }
+            }
+        }
+        // 让各通道在下一条消息到达时重新下发 qos，顺带测量往返耗时
+        epoch++;
+    }
+
+    /**
+     * @return 每个队列当前的预取数、处理耗时与往返耗时
+     */
+    public Map<String, Object> getPrefetch() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, QueueState> entry : queues.entrySet()) {
+            QueueState state = entry.getValue();
+            Map<String, Object> queue = new LinkedHashMap<>();
+            queue.put("prefetch", state.prefetch);
+            queue.put("handlerMicros", (long) (state.handlerNanos / 1000));
+            queue.put("rttMicros", (long) (rttNanos / 1000));
+            result.put(entry.getKey(), queue);
+        }
+        return result;
+    }
+
+    /**
+     * simple 模式下一个通道消费所有队列，取各队列目标值的最大值；direct 模式下通道只消费一个队列。
+     */
+    private int targetFor(String queueName) {
+        if (containerManager().isPerQueue()) {
+            QueueState state = queues.get(queueName);
+            return state != null ? state.prefetch : initialPrefetch();
+        }
+        if (queues.isEmpty()) {
+            return initialPrefetch();
+        }
+        int target = minPrefetch;
+        for (QueueState state : queues.values()) {
+            target = Math.max(target, state.prefetch);
+        }
+        return target;
+    }
+
+    private ListenerContainerManager containerManager() {
+        ListenerContainerManager manager = containerManager;
+        if (manager == null) {
+            manager = containerManagerProvider.getObject();
+            containerManager = manager;
+        }
+        return manager;
+    }
+
+    private int initialPrefetch() {
+        return Math.max(minPrefetch, Math.min(maxPrefetch, initialPrefetch));
+    }
+
+    private static class QueueState {
+
+        private volatile int prefetch;
+
+        private long lastMessages;
+
+        private long lastNanos;
+
+        private double handlerNanos;
+
+        QueueState(int prefetch) {
+            this.prefetch = prefetch;
+        }
+    }
+
+    private static class ChannelState {
+
+        private volatile int prefetch;
+
+        private volatile long epoch = -1;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.consumer;
+
+/**
+ * 批量处理在某条消息上失败时由 {@link QueueHandler#handleBatch} 抛出，报告处理进度：
+ * 失败位置之前的消息已处理完成，监听器确认它们、单独 nack 失败的消息，再把之后的消息作为新的一批交给处理器。
+ */
+public class BatchProcessingException extends Exception {
+
+    private final int failedIndex;
+
+    /**
+     * @param failedIndex 失败的消息在本批中的下标
+     * @param cause       失败原因
+     */
+    public BatchProcessingException(int failedIndex, Throwable cause) {
+        super("批量处理第 " + failedIndex + " 条消息失败", cause);
+        this.failedIndex = failedIndex;
+    }
+
+    /**
+     * @return 失败的消息在本批中的下标，之前的消息都已处理
+     */
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.consumer;
+
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.MessagingMetrics;
+import com.example.metrics.QueueDepthSampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ConsumerAutoScaler 按队列积压和处理耗时自动调整监听容器的消费者数量。
+ * <p>
+ * 每个采样周期读取所有被消费队列的积压消息数和该周期内的平均处理耗时，
+ * 估算以当前消费者数清空积压所需的时间：
+ * <ul>
+ *     <li>连续 {@code scale-up-samples} 次超过 {@code target-drain-seconds} 时扩容到能按时清空积压的数量</li>
+ *     <li>连续 {@code scale-down-samples} 次没有积压时每次缩容一个消费者</li>
+ * </ul>
+ * 扩容快、缩容慢，并要求连续多次采样满足条件，避免在阈值附近来回抖动。
+ * 容器启动时的消费者数（{@code rabbitmq.consumer.concurrency}）不在 {@code min-consumers}~{@code max-consumers} 之间时，
+ * 第一次采样即调整到范围内。
+ * direct 模式下每个队列独立扩缩容；simple 模式下所有队列共用一个容器，按所有队列的总积压统一调整。
+ */
+@Component
+public class ConsumerAutoScaler {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerAutoScaler.class);
+
+    /**
+     * simple 模式下代表所有队列的扩缩容对象名称
+     */
+    private static final String ALL_QUEUES = "*";
+
+    @Autowired
+    private ListenerContainerManager containerManager;
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    @Autowired
+    private QueueDepthSampler depthSampler;
+
+    @Value("${rabbitmq.autoscale.enabled:false}")
+    private boolean enabled;
+
+    @Value("${rabbitmq.autoscale.min-consumers:1}")
+    private int minConsumers;
+
+    @Value("${rabbitmq.autoscale.max-consumers:20}")
+    private int maxConsumers;
+
+    /**
+     * 期望清空积压的时间（秒）
+     */
+    @Value("${rabbitmq.autoscale.target-drain-seconds:5}")
+    private double targetDrainSeconds;
+
+    @Value("${rabbitmq.autoscale.scale-up-samples:2}")
+    private int scaleUpSamples;
+
+    @Value("${rabbitmq.autoscale.scale-down-samples:6}")
+    private int scaleDownSamples;
+
+    /**
+     * 每个扩缩容对象（direct 模式为队列，simple 模式为所有队列）的采样状态
+     */
+    private final Map<String, ScaleState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 定时采样并做出扩缩容决策。
+     */
+    @Scheduled(fixedDelayString = "${rabbitmq.autoscale.interval-ms:5000}")
+    public synchronized void sample() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> queueNames = containerManager.getQueueNames();
+        if (containerManager.isPerQueue()) {
+            states.keySet().retainAll(queueNames);
+            for (String queueName : queueNames) {
+                sample(queueName, Collections.singleton(queueName));
+            }
+        } else {
+            sample(ALL_QUEUES, queueNames);
+        }
+    }
+
+    private void sample(String target, Set<String> queueNames) {
+        long backlog = 0;
+        long messages = 0;
+        long nanos = 0;
+        for (String queueName : queueNames) {
+            try {
+                backlog += depthSampler.getMessageCount(queueName);
+            } catch (RuntimeException e) {
+                log.warn("读取队列 {} 的积压失败: {}", queueName, e.getMessage());
+            }
+            LatencyHistogram handlerLatency = metrics.queue(queueName).getHandlerLatency();
+            messages += handlerLatency.getCount();
+            nanos += handlerLatency.getSum();
+        }
+        ScaleState state = states.computeIfAbsent(target, k -> new ScaleState());
+        if (messages > state.lastMessages) {
+            state.avgHandlerNanos = (double) (nanos - state.lastNanos) / (messages - state.lastMessages);
+        }
+        state.lastMessages = messages;
+        state.lastNanos = nanos;
+
+        String queueName = queueNames.isEmpty() ? target : queueNames.iterator().next();
+        int consumers = containerManager.getConsumers(queueName);
+        int desired = decide(state, consumers, backlog);
+        if (desired != consumers) {
+            log.info("调整 {} 的消费者数量 {} -> {}，积压 {} 条，平均处理耗时 {} 微秒",
+                    target, consumers, desired, backlog, (long) (state.avgHandlerNanos / 1000));
+            containerManager.setConsumers(queueName, desired);
+        }
+    }
+
+    int decide(ScaleState state, int consumers, long backlog) {
+        if (consumers < minConsumers || consumers > maxConsumers) {
+            state.busySamples = 0;
+            state.idleSamples = 0;
+            return Math.max(minConsumers, Math.min(maxConsumers, consumers));
+        }
+        if (backlog == 0) {
+            state.busySamples = 0;
+            if (++state.idleSamples >= scaleDownSamples && consumers > minConsumers) {
+                state.idleSamples = 0;
+                return consumers - 1;
+            }
+            return consumers;
+        }
+        state.idleSamples = 0;
+        double avgHandlerNanos = state.avgHandlerNanos;
+        // 还没有处理耗时数据时只按积压逐个扩容
+        double drainSeconds = avgHandlerNanos > 0 && consumers > 0
+                ? backlog * avgHandlerNanos / 1e9 / consumers : Double.MAX_VALUE;
+        if (drainSeconds <= targetDrainSeconds) {
+            state.busySamples = 0;
+            return consumers;
+        }
+        if (++state.busySamples < scaleUpSamples || consumers >= maxConsumers) {
+            return consumers;
+        }
+        state.busySamples = 0;
+        int needed = avgHandlerNanos > 0
+                ? (int) Math.ceil(backlog * avgHandlerNanos / 1e9 / targetDrainSeconds)
+                : consumers + 1;
+        return Math.min(maxConsumers, Math.max(consumers + 1, needed));
+    }
+
+    /**
+     * 单个扩缩容对象的采样状态。
+     */
+    static class ScaleState {
+
+        private int busySamples;
+
+        private int idleSamples;
+
+        private long lastMessages;
+
+        private long lastNanos;
+
+        /**
+         * 最近一个有消息处理的采样周期内的平均处理耗时（纳秒）
+         */
+        private double avgHandlerNanos;
+    }
+}
@@ -1,54 +1,193 @@
 package com.example.consumer;
 
+import com.example.codec.PayloadCompressor;
+import com.example.config.ConsumerConnections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.AcknowledgeMode;
-import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 /**
  * ConsumerConfig 配置类用于配置消费者相关的监听容器。
- * 该配置类定义了一个 SimpleMessageListenerContainer 实例，用于监听指定的队列，并处理接收到的消息。
+ * 根据 rabbitmq.consumer.container-type 选择容器模式：
+ * <ul>
+ *     <li>simple（默认）：所有队列共用一个 SimpleMessageListenerContainer，消息经容器内部队列交给消费者线程处理</li>
+ *     <li>direct：每个队列一个 DirectMessageListenerContainer，监听器直接在客户端线程上执行，消费者数量按队列设置</li>
+ * </ul>
  */
 @Configuration
 public class ConsumerConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(ConsumerConfig.class);
+
     @Autowired
     private QueueMessageListener queueMessageListener;
 
     @Autowired
-    private CachingConnectionFactory cachingConnectionFactory;
+    private QueueHandlerRegistry queueHandlerRegistry;
+
+    @Autowired
+    private ConsumerConnections consumerConnections;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private PayloadCompressor payloadCompressor;
+
+    /**
+     * 监听容器模式：simple 或 direct
+     */
+    @Value("${rabbitmq.consumer.container-type:simple}")
+    private String containerType;
+
+    /**
+     * 消费者数量，开启自动扩缩容后作为初始值（simple 模式）
+     */
+    @Value("${rabbitmq.consumer.concurrency:10}")
+    private int concurrency;
+
+    /**
+     * 每个队列默认的消费者数量（direct 模式），
+     * 可以用 rabbitmq.consumer.queues.&lt;队列名&gt;.consumers 为单个队列单独设置
+     */
+    @Value("${rabbitmq.consumer.consumers-per-queue:1}")
+    private int consumersPerQueue;
+
+    /**
+     * 每个消费者的预取数量
+     */
+    @Value("${rabbitmq.consumer.prefetch:250}")
+    private int prefetch;
+
+    /**
+     * 是否开启自适应预取，开启后由 AdaptivePrefetchController 按通道调整实际预取数
+     */
+    @Value("${rabbitmq.prefetch.adaptive-enabled:false}")
+    private boolean adaptivePrefetch;
+
+    /**
+     * 自适应预取的上限
+     */
+    @Value("${rabbitmq.prefetch.max:1000}")
+    private int maxPrefetch;
+
+    /**
+     * 是否开启批量消费，开启后监听器按批接收消息并批量确认
+     */
+    @Value("${rabbitmq.consumer.batch-enabled:false}")
+    private boolean batchEnabled;
+
+    /**
+     * 是否开启按键有序的并行处理，只对逐条消费生效
+     */
+    @Value("${rabbitmq.consumer.ordered.enabled:false}")
+    private boolean orderedEnabled;
+
+    /**
+     * 是否在虚拟线程上处理消息，只对逐条消费生效
+     */
+    @Value("${rabbitmq.consumer.virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    /**
+     * 每批最多的消息数量
+     */
+    @Value("${rabbitmq.consumer.batch-size:50}")
+    private int batchSize;
+
+    /**
+     * 凑批时等待下一条消息的超时时间（毫秒），超时后以已收到的消息组成一批
+     */
+    @Value("${rabbitmq.consumer.receive-timeout-ms:100}")
+    private long receiveTimeout;
+
+    /**
+     * 按配置的模式创建监听容器管理器，监听所有已注册处理器的队列。
+     * 运行时注册的处理器会由 QueueHandlerRegistry 追加到容器。
+     *
+     * @return 监听容器管理器
+     */
+    @Bean
+    public ListenerContainerManager listenerContainerManager() {
+        ListenerContainerManager manager;
+        if ("direct".equalsIgnoreCase(containerType)) {
+            if (batchEnabled) {
+                log.warn("direct 模式不支持批量消费，rabbitmq.consumer.batch-enabled 将被忽略");
+            }
+            manager = new DirectContainerManager(consumerConnections::next, this::configureContainer,
+                    queueName -> environment.getProperty("rabbitmq.consumer.queues." + queueName + ".consumers",
+                            Integer.class, consumersPerQueue));
+        } else {
+            manager = new SimpleContainerManager(simpleMessageListenerContainer(), concurrency);
+        }
+        for (String queueName : queueHandlerRegistry.getQueueNames()) {
+            manager.addQueue(queueName);
+        }
+        return manager;
+    }
 
     /**
      * 配置并创建一个 SimpleMessageListenerContainer 实例。
      *
      * @return 配置好的 SimpleMessageListenerContainer 对象
      */
-    @Bean
-    public SimpleMessageListenerContainer simpleMessageListenerContainer() {
+    private SimpleMessageListenerContainer simpleMessageListenerContainer() {
         // 创建一个 SimpleMessageListenerContainer 实例
-        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(cachingConnectionFactory);
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(consumerConnections.next());
+        configureContainer(container);
+
+        // 设置并发消费者的数量
+        container.setConcurrentConsumers(concurrency);
+
+        // 设置最大并发消费者的数量，与并发数相同，扩缩容由 ConsumerAutoScaler 决定
+        container.setMaxConcurrentConsumers(concurrency);
+
+        // 批量消费：凑满 batchSize 条或等待 receiveTimeout 后整批交给监听器
+        if (batchEnabled) {
+            if (orderedEnabled) {
+                log.warn("批量消费不支持按键有序处理，rabbitmq.consumer.ordered.enabled 将被忽略");
+            }
+            if (virtualThreadsEnabled) {
+                log.warn("批量消费不支持虚拟线程处理，rabbitmq.consumer.virtual-threads.enabled 将被忽略");
+            }
+            container.setConsumerBatchEnabled(true);
+            container.setBatchSize(batchSize);
+            container.setReceiveTimeout(receiveTimeout);
+        }
+
+        // 队列由 ListenerContainerManager 添加，容器随 Spring 上下文启动
+        container.afterPropertiesSet();
+
+        // 返回配置好的监听容器
+        return container;
+    }
 
+    /**
+     * 两种容器的公共配置。
+     *
+     * @param container 监听容器
+     */
+    private void configureContainer(AbstractMessageListenerContainer container) {
         // 设置消息确认模式为手动
         container.setAcknowledgeMode(AcknowledgeMode.MANUAL);
 
-        // 设置并发消费者的数量
-        container.setConcurrentConsumers(10);
+        // 设置预取数量；自适应预取时按上限设置，实际预取数由通道级 qos 控制
+        container.setPrefetchCount(adaptivePrefetch ? maxPrefetch : prefetch);
 
-        // 设置最大并发消费者的数量
-        container.setMaxConcurrentConsumers(10);
+        // 按 content_encoding 透明解压，处理器拿到的是原始消息体
+        container.setAfterReceivePostProcessors(payloadCompressor::decompress);
 
-        // 设置监听的队列名称
-        container.setQueueNames("queue1", "queue2"); // 可以根据需要添加更多队列名称
+        // 消息头保持 AMQP 原始类型，由处理器按需解码
+        container.setMessagePropertiesConverter(new RawHeaderPropertiesConverter());
 
         // 设置消息监听器，用于处理从队列接收到的消息
         container.setMessageListener(queueMessageListener);
-
-        // 启动监听容器
-        container.start();
-
-        // 返回配置好的监听容器
-        return container;
     }
 }
@@ -0,0 +1,295 @@
+package com.example.consumer;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * DeduplicationCache 记录最近处理成功的消息，重投或重复发布的消息在分发给处理器前被识别出来，直接确认而不再处理。
+ * <p>
+ * 去重键为队列名称加上 message_id（或 rabbitmq.dedup.header 指定的消息头），只保存两者的 64 位哈希，
+ * 每条约占 16 字节。键按哈希分到多个分段，每个分段有当前和上一代两个开放寻址的哈希集合：
+ * 当前一代存在超过 window-ms 或写满时整体成为上一代，原来的上一代被丢弃，命中上一代的键会复制到当前一代。
+ * 因此处理过的键至少保留 window-ms（除非一代在此之前就已写满），内存上限为 2 × max-entries 条。
+ * <p>
+ * 开启布隆过滤器时，每一代额外维护一个位数组，查询先无锁地检查两代的位数组，
+ * 都不命中（绝大多数新消息）时不进入分段的锁。
+ */
+@Component
+public class DeduplicationCache {
+
+    private static final int STRIPES = 16;
+
+    private static final int BLOOM_HASHES = 7;
+
+    /**
+     * 布隆过滤器每个键占用的位数，配合 7 个哈希函数时误判率约 1%
+     */
+    private static final int BLOOM_BITS_PER_KEY = 10;
+
+    /**
+     * 是否开启去重
+     */
+    @Value("${rabbitmq.dedup.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 作为去重键的消息头，为空时使用 message_id
+     */
+    @Value("${rabbitmq.dedup.header:}")
+    private String header;
+
+    /**
+     * 处理过的键至少保留的时间（毫秒）
+     */
+    @Value("${rabbitmq.dedup.window-ms:60000}")
+    private long windowMs;
+
+    /**
+     * 每一代最多保存的键数量
+     */
+    @Value("${rabbitmq.dedup.max-entries:200000}")
+    private int maxEntries;
+
+    /**
+     * 是否在哈希集合前加一层布隆过滤器
+     */
+    @Value("${rabbitmq.dedup.bloom-filter:false}")
+    private boolean bloomFilter;
+
+    private Stripe[] stripes;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        stripes = new Stripe[STRIPES];
+        int stripeEntries = Math.max(16, maxEntries / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeEntries, windowMs, bloomFilter);
+        }
+    }
+
+    /**
+     * @return 是否开启去重
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算消息的去重键。
+     *
+     * @param queue   消费队列名称
+     * @param message 消息
+     * @return 去重键的哈希，消息没有 message_id 或指定的消息头时返回 0，表示不参与去重
+     */
+    public long keyOf(String queue, Message message) {
+        Object id = header.isEmpty() ? message.getMessageProperties().getMessageId()
+                : message.getMessageProperties().getHeaders().get(header);
+        if (id == null) {
+            return 0;
+        }
+        long hash = hash(queue, id.toString());
+        // 0 用作哈希集合的空槽
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @param key {@link #keyOf} 返回的去重键
+     * @return 该键是否已在窗口内处理成功
+     */
+    public boolean isDuplicate(long key) {
+        return key != 0 && stripe(key).contains(key, System.currentTimeMillis());
+    }
+
+    /**
+     * 记录处理成功的消息，在处理器成功返回后调用；处理失败的消息重投后仍会再次处理。
+     *
+     * @param key {@link #keyOf} 返回的去重键
+     */
+    public void markProcessed(long key) {
+        if (key != 0) {
+            stripe(key).add(key, System.currentTimeMillis());
+        }
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) (key >>> 60)];
+    }
+
+    /**
+     * 队列名称和键的 FNV-1a 64 位哈希（按 UTF-16 字符计算，不分配字节数组），再经过 fmix64 打散。
+     */
+    static long hash(String queue, String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < queue.length(); i++) {
+            hash = (hash ^ queue.charAt(i)) * 0x100000001b3L;
+        }
+        // 分隔符，避免 ("ab", "c") 与 ("a", "bc") 得到相同的哈希
+        hash = (hash ^ 0xffff) * 0x100000001b3L;
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * 一个分段：当前和上一代，修改和查询哈希集合都在分段的锁内进行。
+     */
+    private static final class Stripe {
+
+        private final int capacity;
+
+        private final long windowMs;
+
+        private final boolean bloomFilter;
+
+        private volatile Generation current;
+
+        private volatile Generation previous;
+
+        private Stripe(int capacity, long windowMs, boolean bloomFilter) {
+            this.capacity = capacity;
+            this.windowMs = windowMs;
+            this.bloomFilter = bloomFilter;
+            this.current = new Generation(capacity, bloomFilter, System.currentTimeMillis());
+            this.previous = new Generation(capacity, bloomFilter, System.currentTimeMillis());
+        }
+
+        private boolean contains(long key, long now) {
+            if (bloomFilter && !current.mightContain(key) && !previous.mightContain(key)) {
+                return false;
+            }
+            synchronized (this) {
+                rotateIfNeeded(now);
+                if (current.contains(key)) {
+                    return true;
+                }
+                if (previous.contains(key)) {
+                    // 命中上一代的键复制到当前一代，仍在重投的键不会随上一代一起过期
+                    add(key, now);
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        private synchronized void add(long key, long now) {
+            rotateIfNeeded(now);
+            if (current.size >= capacity) {
+                rotate(now);
+            }
+            current.add(key);
+        }
+
+        private void rotateIfNeeded(long now) {
+            long age = now - current.createdMillis;
+            if (age >= 2 * windowMs) {
+                // 长时间没有写入，两代都已过期
+                previous = new Generation(capacity, bloomFilter, now);
+                current = new Generation(capacity, bloomFilter, now);
+            } else if (age >= windowMs) {
+                rotate(now);
+            }
+        }
+
+        private void rotate(long now) {
+            previous = current;
+            current = new Generation(capacity, bloomFilter, now);
+        }
+    }
+
+    /**
+     * 一代键：开放寻址（线性探测）的 long 哈希集合，装载因子不超过 0.5，以及可选的布隆过滤器位数组。
+     */
+    private static final class Generation {
+
+        private final long[] table;
+
+        private final int mask;
+
+        private final AtomicLongArray bloom;
+
+        private final int bloomMask;
+
+        private final long createdMillis;
+
+        private int size;
+
+        private Generation(int capacity, boolean bloomFilter, long createdMillis) {
+            int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            this.table = new long[tableSize];
+            this.mask = tableSize - 1;
+            if (bloomFilter) {
+                int bits = Integer.highestOneBit(capacity * BLOOM_BITS_PER_KEY - 1) << 1;
+                this.bloom = new AtomicLongArray(bits >>> 6);
+                this.bloomMask = bits - 1;
+            } else {
+                this.bloom = null;
+                this.bloomMask = 0;
+            }
+            this.createdMillis = createdMillis;
+        }
+
+        private boolean contains(long key) {
+            for (int i = (int) key & mask; ; i = (i + 1) & mask) {
+                long slot = table[i];
+                if (slot == key) {
+                    return true;
+                }
+                if (slot == 0) {
+                    return false;
+                }
+            }
+        }
+
+        private void add(long key) {
+            for (int i = (int) key & mask; ; i = (i + 1) & mask) {
+                long slot = table[i];
+                if (slot == key) {
+                    return;
+                }
+                if (slot == 0) {
+                    table[i] = key;
+                    size++;
+                    break;
+                }
+            }
+            if (bloom != null) {
+                // 双重哈希：第 i 个位置为 h1 + i * h2
+                int h1 = (int) key;
+                int h2 = (int) (key >>> 32) | 1;
+                for (int i = 0; i < BLOOM_HASHES; i++) {
+                    int bit = (h1 + i * h2) & bloomMask;
+                    long mask = 1L << bit;
+                    long word;
+                    while (((word = bloom.get(bit >>> 6)) & mask) == 0 && !bloom.compareAndSet(bit >>> 6, word, word | mask)) {
+                        // 重试直到置位成功或已被其他线程置位
+                    }
+                }
+            }
+        }
+
+        private boolean mightContain(long key) {
+            int h1 = (int) key;
+            int h2 = (int) (key >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (h1 + i * h2) & bloomMask;
+                if ((bloom.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 默认处理器，供通过接口动态创建、尚无业务处理逻辑的队列使用，只在 debug 级别记录收到的消息。
+ * 未开启 debug 时不解码消息体，也不拼接日志字符串。
+ */
+public class DefaultQueueHandler implements QueueHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultQueueHandler.class);
+
+    private final String queueName;
+
+    public DefaultQueueHandler(String queueName) {
+        this.queueName = queueName;
+    }
+
+    @Override
+    public String getQueueName() {
+        return queueName;
+    }
+
+    @Override
+    public void handle(MessageView message) {
+        if (log.isDebugEnabled()) {
+            log.debug("处理 {} 消息：{}", queueName, message.text());
+        }
+    }
+}
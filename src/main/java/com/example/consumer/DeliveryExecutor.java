@@ -0,0 +1,22 @@
+package com.example.consumer;
+
+/**
+ * 在投递线程之外处理消息的执行器。投递由 {@link QueueMessageListener} 登记到通道的 {@link AckWatermark}，
+ * 任务在执行器的线程上调用处理器并标记完成，确认由水位累计发出。
+ */
+interface DeliveryExecutor {
+
+    /**
+     * @return 是否开启
+     */
+    boolean isEnabled();
+
+    /**
+     * 提交一次投递的处理任务，在投递线程上按投递顺序调用。
+     *
+     * @param message 消息视图
+     * @param task    处理任务，完成时会标记确认水位
+     * @throws InterruptedException 等待执行许可时被中断
+     */
+    void execute(MessageView message, Runnable task) throws InterruptedException;
+}
@@ -0,0 +1,120 @@
+package com.example.consumer;
+
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 每个队列一个 DirectMessageListenerContainer，监听器直接在客户端的投递线程上执行，
+ * 省去一次线程间交接；每个队列的消费者数量（consumersPerQueue）独立设置。
+ * 有多条消费连接时，各队列的容器按创建顺序轮流分配到不同的连接。
+ */
+public class DirectContainerManager implements ListenerContainerManager {
+
+    private final Supplier<ConnectionFactory> connectionFactories;
+
+    private final Consumer<AbstractMessageListenerContainer> configurer;
+
+    private final Function<String, Integer> initialConsumers;
+
+    private final Map<String, DirectMessageListenerContainer> containers = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> consumers = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    /**
+     * @param connectionFactories 每次创建容器时调用，返回该容器使用的连接工厂
+     * @param configurer          容器的公共配置（确认模式、监听器等）
+     * @param initialConsumers    按队列名称返回初始消费者数量
+     */
+    public DirectContainerManager(Supplier<ConnectionFactory> connectionFactories, Consumer<AbstractMessageListenerContainer> configurer,
+                                  Function<String, Integer> initialConsumers) {
+        this.connectionFactories = connectionFactories;
+        this.configurer = configurer;
+        this.initialConsumers = initialConsumers;
+    }
+
+    @Override
+    public synchronized void addQueue(String queueName) {
+        if (containers.containsKey(queueName)) {
+            return;
+        }
+        int consumersPerQueue = initialConsumers.apply(queueName);
+        DirectMessageListenerContainer container = new DirectMessageListenerContainer(connectionFactories.get());
+        configurer.accept(container);
+        container.setConsumersPerQueue(consumersPerQueue);
+        container.setQueueNames(queueName);
+        container.afterPropertiesSet();
+        containers.put(queueName, container);
+        consumers.put(queueName, consumersPerQueue);
+        if (running) {
+            container.start();
+        }
+    }
+
+    @Override
+    public synchronized void removeQueue(String queueName) {
+        DirectMessageListenerContainer container = containers.remove(queueName);
+        consumers.remove(queueName);
+        if (container != null) {
+            container.destroy();
+        }
+    }
+
+    @Override
+    public Set<String> getQueueNames() {
+        return new LinkedHashSet<>(containers.keySet());
+    }
+
+    @Override
+    public boolean isPerQueue() {
+        return true;
+    }
+
+    @Override
+    public int getConsumers(String queueName) {
+        return consumers.getOrDefault(queueName, 0);
+    }
+
+    @Override
+    public synchronized void setConsumers(String queueName, int consumersPerQueue) {
+        DirectMessageListenerContainer container = containers.get(queueName);
+        if (container != null) {
+            container.setConsumersPerQueue(consumersPerQueue);
+            consumers.put(queueName, consumersPerQueue);
+        }
+    }
+
+    @Override
+    public Collection<DirectMessageListenerContainer> getContainers() {
+        return Collections.unmodifiableCollection(containers.values());
+    }
+
+    @Override
+    public synchronized void start() {
+        containers.values().forEach(DirectMessageListenerContainer::start);
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        containers.values().forEach(DirectMessageListenerContainer::stop);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeyOrderedExecutor 把同一个队列内的消息按消息键分到固定数量的单线程执行通道（lane）上处理：
+ * 同一个键总是进入同一个执行通道，按投递顺序处理；不同的键在不同的执行通道上并行，单个消费者通道就能用满所有核。
+ * <p>
+ * 消息键依次取 key-header 指定的消息头、key-field 指定的消息体字段（消息体需能解码为 Map），
+ * 都没有时按 delivery tag 分散，不保证顺序。确认由每个通道的 {@link AckWatermark} 在前面的投递都完成后累计发出。
+ * 执行通道的队列不设上限，在途消息数由预取数限制。失败的消息会被 nack 重新入队，重投时可能排在同一个键的后续消息之后。
+ */
+@Component
+public class KeyOrderedExecutor implements DeliveryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyOrderedExecutor.class);
+
+    /**
+     * 是否开启按键有序的并行处理
+     */
+    @Value("${rabbitmq.consumer.ordered.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 执行通道数，为 0 时使用 CPU 核数
+     */
+    @Value("${rabbitmq.consumer.ordered.threads:0}")
+    private int threads;
+
+    /**
+     * 作为消息键的消息头
+     */
+    @Value("${rabbitmq.consumer.ordered.key-header:key}")
+    private String keyHeader;
+
+    /**
+     * 消息头中没有键时，从消息体中读取的字段，为空时不读取消息体
+     */
+    @Value("${rabbitmq.consumer.ordered.key-field:}")
+    private String keyField;
+
+    private ExecutorService[] lanes;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        lanes = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            String name = "ordered-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        log.info("按键有序处理已开启，执行通道数 {}，消息键 header={} field={}", count, keyHeader, keyField);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 在消息键对应的执行通道上执行任务。
+     *
+     * @param message 消息视图，用于读取消息键
+     * @param task    处理任务
+     */
+    @Override
+    public void execute(MessageView message, Runnable task) {
+        String key = keyOf(message);
+        int hash = key != null ? key.hashCode() : Long.hashCode(message.getDeliveryTag());
+        lanes[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % lanes.length].execute(task);
+    }
+
+    /**
+     * @param message 消息视图
+     * @return 消息键，没有时返回 null
+     */
+    String keyOf(MessageView message) {
+        String key = message.headerAsString(keyHeader);
+        if (key == null && !keyField.isEmpty()) {
+            Object payload;
+            try {
+                payload = message.payload();
+            } catch (MessageConversionException e) {
+                // 无法解码的消息交给处理器处理，这里只是拿不到键
+                return null;
+            }
+            if (payload instanceof Map) {
+                Object value = ((Map<?, ?>) payload).get(keyField);
+                key = value == null ? null : value.toString();
+            }
+        }
+        return key;
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (lanes == null) {
+            return;
+        }
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            // 未处理完的消息没有确认，通道关闭后由 Broker 重新投递
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.consumer;
+
+import org.springframework.amqp.core.Message;
+
+/**
+ * 按 {@link Message} 处理消息的旧处理器接口，实现 {@link #handle(Message)} 即可，由 {@link #handle(MessageView)} 转交。
+ * 消息头中的 LongString 不会预先转换为 String，新处理器应直接实现 {@link QueueHandler}。
+ */
+public interface LegacyQueueHandler extends QueueHandler {
+
+    /**
+     * 处理一条消息，正常返回后消息会被确认。
+     *
+     * @param message 接收到的消息
+     * @throws Exception 处理失败
+     */
+    void handle(Message message) throws Exception;
+
+    @Override
+    default void handle(MessageView message) throws Exception {
+        handle(message.getMessage());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.consumer;
+
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * ListenerContainerManager 屏蔽不同监听容器模式的差异，统一管理被消费的队列和消费者数量。
+ * <ul>
+ *     <li>{@link SimpleContainerManager}：所有队列共用一个 SimpleMessageListenerContainer，消费者数量对所有队列生效</li>
+ *     <li>{@link DirectContainerManager}：每个队列一个 DirectMessageListenerContainer，消费者数量按队列独立设置</li>
+ * </ul>
+ * 容器随 Spring 上下文启动和停止。
+ */
+public interface ListenerContainerManager extends SmartLifecycle {
+
+    /**
+     * 开始消费队列，已在消费时忽略。
+     *
+     * @param queueName 队列名称
+     */
+    void addQueue(String queueName);
+
+    /**
+     * 停止消费队列。
+     *
+     * @param queueName 队列名称
+     */
+    void removeQueue(String queueName);
+
+    /**
+     * @return 正在消费的队列名称
+     */
+    Set<String> getQueueNames();
+
+    /**
+     * @return 消费者数量是否可以按队列独立设置
+     */
+    boolean isPerQueue();
+
+    /**
+     * 获取队列的消费者数量，共用容器时返回容器的消费者数量。
+     *
+     * @param queueName 队列名称
+     * @return 消费者数量
+     */
+    int getConsumers(String queueName);
+
+    /**
+     * 设置队列的消费者数量，共用容器时对所有队列生效。
+     *
+     * @param queueName 队列名称
+     * @param consumers 消费者数量
+     */
+    void setConsumers(String queueName, int consumers);
+
+    /**
+     * @return 管理的所有监听容器
+     */
+    Collection<? extends AbstractMessageListenerContainer> getContainers();
+}
@@ -0,0 +1,330 @@
+package com.example.consumer;
+
+import com.example.codec.PayloadCompressor;
+import com.example.config.ConsumerConnections;
+import com.example.metrics.MessagingMetrics;
+import com.example.util.ReceivedMessage;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.RabbitExceptionTranslator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MessageStreamer 以 Server-Sent Events 的形式把队列中的消息推送给 HTTP 客户端。
+ * <p>
+ * 每个流使用独立的通道和消费者，客户端通过 prefetch 控制未确认消息的上限（basic.qos），
+ * 每条消息写出成功后单独 ack；客户端断开（写出失败、连接关闭或超时）时取消消费者，
+ * 已投递但未写出的消息全部 nack 重新入队。空闲时按 {@code rabbitmq.stream.heartbeat-ms} 发送注释行，
+ * 以便及时发现已断开的客户端。每个流占用一个线程，同时打开的流数量受 {@code rabbitmq.stream.max-streams} 限制。
+ */
+@Component
+public class MessageStreamer {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageStreamer.class);
+
+    /**
+     * basic.qos 的预取数是 16 位无符号整数
+     */
+    private static final int MAX_PREFETCH = 65535;
+
+    /**
+     * 取消消费者后等待 cancel-ok 回调的最长时间（毫秒）
+     */
+    private static final long CANCEL_TIMEOUT_MS = 5000;
+
+    /**
+     * Broker 取消消费者或通道关闭时放入投递队列，通知写出线程结束
+     */
+    private static final Delivery END_OF_STREAM = new Delivery(null, null, null);
+
+    @Autowired
+    private ConsumerConnections consumerConnections;
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    @Autowired
+    private PayloadCompressor payloadCompressor;
+
+    @Value("${rabbitmq.stream.heartbeat-ms:15000}")
+    private long heartbeatMillis;
+
+    @Value("${rabbitmq.stream.max-streams:100}")
+    private int maxStreams;
+
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "message-stream-" + threadIndex.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 打开一个消息流：立即在队列上注册消费者，响应开始写出后逐条推送消息。
+     *
+     * @param queueName 队列名称
+     * @param prefetch  未确认消息的上限，取值 1~65535
+     * @return 推送消息的 SseEmitter
+     * @throws org.springframework.amqp.AmqpException 队列不存在或 Broker 不可用
+     * @throws IllegalStateException 同时打开的流已达上限
+     */
+    public SseEmitter open(String queueName, int prefetch) {
+        if (active.incrementAndGet() > maxStreams) {
+            active.decrementAndGet();
+            throw new IllegalStateException("流式消费连接数已达上限: " + maxStreams);
+        }
+        MessageStream stream;
+        try {
+            stream = new MessageStream(queueName, consumerConnections.next().createConnection().createChannel(false));
+            stream.start(Math.max(1, Math.min(prefetch, MAX_PREFETCH)));
+        } catch (IOException e) {
+            active.decrementAndGet();
+            throw RabbitExceptionTranslator.convertRabbitAccessException(e);
+        } catch (RuntimeException e) {
+            active.decrementAndGet();
+            throw e;
+        }
+        executor.execute(stream);
+        return stream.emitter;
+    }
+
+    /**
+     * @return 当前打开的流数量
+     */
+    public int getActiveStreams() {
+        return active.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 单个客户端的消息流。
+     */
+    private class MessageStream implements Runnable {
+
+        private final String queueName;
+
+        private final Channel channel;
+
+        private final StreamEmitter emitter = new StreamEmitter();
+
+        private final BlockingQueue<Delivery> deliveries = new LinkedBlockingQueue<>();
+
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        private volatile boolean closed;
+
+        private volatile long lastDeliveryTag;
+
+        private long lastAckedTag;
+
+        private String consumerTag;
+
+        MessageStream(String queueName, Channel channel) {
+            this.queueName = queueName;
+            this.channel = channel;
+        }
+
+        void start(int prefetch) throws IOException {
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(e -> close());
+            try {
+                channel.basicQos(prefetch);
+                consumerTag = channel.basicConsume(queueName, false, new DefaultConsumer(channel) {
+                    @Override
+                    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                        lastDeliveryTag = envelope.getDeliveryTag();
+                        deliveries.add(new Delivery(envelope, properties, body));
+                    }
+
+                    @Override
+                    public void handleCancelOk(String consumerTag) {
+                        cancelled.countDown();
+                    }
+
+                    @Override
+                    public void handleCancel(String consumerTag) {
+                        // 队列被删除等原因导致 Broker 取消了消费者
+                        cancelled.countDown();
+                        deliveries.add(END_OF_STREAM);
+                    }
+
+                    @Override
+                    public void handleShutdownSignal(String consumerTag, ShutdownSignalException signal) {
+                        cancelled.countDown();
+                        deliveries.add(END_OF_STREAM);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                // 消费者没有注册成功，通道可以归还
+                closeChannel(false);
+                throw e;
+            }
+        }
+
+        void close() {
+            closed = true;
+            deliveries.add(END_OF_STREAM);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (awaitAttached()) {
+                    stream();
+                }
+            } catch (IOException e) {
+                log.debug("客户端已断开，停止推送队列 {}: {}", queueName, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("推送队列 {} 的消息失败", queueName, e);
+                emitter.completeWithError(e);
+            } finally {
+                release();
+                active.decrementAndGet();
+            }
+        }
+
+        /**
+         * 等待响应开始写出，此前发送的事件会被缓存在 emitter 中，写出成功与否无从得知，不能据此 ack。
+         */
+        private boolean awaitAttached() throws InterruptedException {
+            while (!closed) {
+                if (emitter.attached.await(heartbeatMillis, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void stream() throws IOException, InterruptedException {
+            while (!closed) {
+                Delivery delivery = deliveries.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (delivery == END_OF_STREAM) {
+                    break;
+                }
+                if (delivery == null) {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                    continue;
+                }
+                long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+                Message received = payloadCompressor.decompress(new Message(delivery.getBody(),
+                        messagePropertiesConverter.toMessageProperties(delivery.getProperties(), delivery.getEnvelope(),
+                                StandardCharsets.UTF_8.name())));
+                ReceivedMessage message = new ReceivedMessage(received.getMessageProperties(), received.getBody());
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(deliveryTag))
+                        .name("message")
+                        .data(message, MediaType.APPLICATION_JSON));
+                long start = System.nanoTime();
+                channel.basicAck(deliveryTag, false);
+                metrics.queue(queueName).recordAck(System.nanoTime() - start);
+                lastAckedTag = deliveryTag;
+            }
+            if (!closed) {
+                emitter.complete();
+            }
+        }
+
+        /**
+         * 取消消费者，把已投递但未确认的消息重新入队，再把通道归还连接工厂。
+         * 没有等到消费者停止（cancel 失败、等待 cancel-ok 超时或被中断）时通道上可能仍有消费者，物理关闭而不归还。
+         */
+        private void release() {
+            try {
+                if (channel.isOpen() && cancelled.getCount() > 0) {
+                    channel.basicCancel(consumerTag);
+                    // cancel-ok 之前已分发的消息会先于 handleCancelOk 回调，等它之后再统计未确认的消息
+                    cancelled.await(CANCEL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                }
+                if (channel.isOpen() && lastDeliveryTag > lastAckedTag) {
+                    channel.basicNack(lastDeliveryTag, true, true);
+                    metrics.queue(queueName).recordNack();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("取消队列 {} 的消费者失败: {}", queueName, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // cancel-ok、Broker 取消和通道关闭都会使计数归零
+                closeChannel(cancelled.getCount() > 0);
+            }
+        }
+
+        /**
+         * @param physical 为 true 时物理关闭通道，Broker 会把通道上未确认的消息重新入队；否则恢复预取后归还到缓存
+         */
+        private void closeChannel(boolean physical) {
+            try {
+                if (channel.isOpen()) {
+                    if (physical) {
+                        // 标记只对当前线程接下来的 close 生效
+                        RabbitUtils.setPhysicalCloseRequired(channel, true);
+                    } else {
+                        // 通道会归还到缓存中复用，恢复为不限制预取
+                        channel.basicQos(0);
+                    }
+                    channel.close();
+                }
+            } catch (IOException | TimeoutException | RuntimeException e) {
+                log.debug("关闭通道失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Spring MVC 在提交响应头、把 emitter 挂到响应上之前调用 {@link #extendResponse}，以此作为可以开始写出的信号。
+     */
+    private static class StreamEmitter extends SseEmitter {
+
+        private final CountDownLatch attached = new CountDownLatch(1);
+
+        StreamEmitter() {
+            // 不设超时，流的生命周期由客户端连接决定
+            super(0L);
+        }
+
+        @Override
+        protected void extendResponse(ServerHttpResponse outputMessage) {
+            super.extendResponse(outputMessage);
+            attached.countDown();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.consumer;
+
+import com.example.codec.MessageCodec;
+import com.example.codec.MessageCodecs;
+import com.rabbitmq.client.LongString;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 交给 {@link QueueHandler#handle(MessageView)} 的消息视图，不复制消息体、不预先解码。
+ * <p>
+ * {@link #body()} 返回消息体的只读 ByteBuffer 视图；消息头在监听容器中保持 AMQP 原始类型，
+ * 调用 {@link #header(String)} 时才把 LongString 解码为字符串；{@link #text()} 首次调用时
+ * 才按 contentEncoding 解码消息体，{@link #payload()} 首次调用时才按 content_type 选择编解码器解码，结果都会被缓存。
+ * 视图不是线程安全的，只应在处理器线程内使用。
+ */
+public final class MessageView {
+
+    private final Message message;
+
+    private String text;
+
+    private Object payload;
+
+    private boolean payloadDecoded;
+
+    public MessageView(Message message) {
+        this.message = message;
+    }
+
+    /**
+     * @return 原始消息，消息头中可能包含未解码的 LongString
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    public MessageProperties getProperties() {
+        return message.getMessageProperties();
+    }
+
+    public String getQueueName() {
+        return message.getMessageProperties().getConsumerQueue();
+    }
+
+    public long getDeliveryTag() {
+        return message.getMessageProperties().getDeliveryTag();
+    }
+
+    public boolean isRedelivered() {
+        return message.getMessageProperties().isRedelivered();
+    }
+
+    public String getMessageId() {
+        return message.getMessageProperties().getMessageId();
+    }
+
+    public String getContentType() {
+        return message.getMessageProperties().getContentType();
+    }
+
+    public String getContentEncoding() {
+        return message.getMessageProperties().getContentEncoding();
+    }
+
+    /**
+     * 消息体的只读视图，与消息共享底层数组。每次调用返回独立的 position/limit，互不影响。
+     *
+     * @return 只读 ByteBuffer，position 为 0，limit 为消息体长度
+     */
+    public ByteBuffer body() {
+        return ByteBuffer.wrap(message.getBody()).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return 消息体字节数
+     */
+    public int bodyLength() {
+        return message.getBody().length;
+    }
+
+    /**
+     * 按 contentEncoding 解码消息体，未设置或不是字符集（例如 gzip）时按 UTF-8 解码。
+     *
+     * @return 消息体文本，首次调用后缓存
+     */
+    public String text() {
+        if (text == null) {
+            text = new String(message.getBody(), charsetOf(getContentEncoding()));
+        }
+        return text;
+    }
+
+    /**
+     * @return 与 content_type 对应的编解码器，不是编解码器产生的消息为 null
+     */
+    public MessageCodec getCodec() {
+        return MessageCodecs.forContentType(getContentType());
+    }
+
+    /**
+     * 按 content_type 解码消息内容，首次调用时才解码，结果会被缓存。
+     * 没有对应编解码器时，text/* 消息返回 {@link #text()}，其余返回消息体字节数组（与消息共享，不应修改）。
+     *
+     * @return 解码后的通用结构（Map、List、String、数字等）
+     * @throws org.springframework.amqp.support.converter.MessageConversionException 消息体格式错误
+     */
+    public Object payload() {
+        if (!payloadDecoded) {
+            MessageCodec codec = getCodec();
+            if (codec != null) {
+                payload = codec.decode(message.getBody(), Object.class);
+            } else if (getContentType() != null && getContentType().startsWith("text/")) {
+                payload = text();
+            } else {
+                payload = message.getBody();
+            }
+            payloadDecoded = true;
+        }
+        return payload;
+    }
+
+    /**
+     * 按 content_type 把消息内容解码为指定类型，每次调用都会重新解码。
+     *
+     * @param type 目标类型
+     * @param <T>  目标类型
+     * @return 解码后的对象
+     * @throws org.springframework.amqp.support.converter.MessageConversionException 没有对应的编解码器或无法转换为目标类型
+     */
+    public <T> T payload(Class<T> type) {
+        MessageCodec codec = getCodec();
+        if (codec == null) {
+            throw new MessageConversionException("content_type 为 " + getContentType() + " 的消息没有对应的编解码器");
+        }
+        return codec.decode(message.getBody(), type);
+    }
+
+    /**
+     * @return 所有消息头名称
+     */
+    public Set<String> headerNames() {
+        return Collections.unmodifiableSet(message.getMessageProperties().getHeaders().keySet());
+    }
+
+    /**
+     * 读取消息头，LongString 按 UTF-8 解码为字符串，列表和表中的 LongString 一并解码。每次调用都会重新解码。
+     *
+     * @param name 消息头名称
+     * @return 消息头的值，不存在时为 null
+     */
+    public Object header(String name) {
+        return decode(message.getMessageProperties().getHeaders().get(name));
+    }
+
+    /**
+     * @param name 消息头名称
+     * @return 消息头的字符串形式，不存在时为 null
+     */
+    public String headerAsString(String name) {
+        Object value = header(name);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * 按 contentEncoding 取消息体的字符集。
+     *
+     * @param contentEncoding 消息的 contentEncoding，可以为 null
+     * @return 对应的字符集，未设置或不是字符集时为 UTF-8
+     */
+    public static Charset charsetOf(String contentEncoding) {
+        if (contentEncoding != null) {
+            try {
+                return Charset.forName(contentEncoding);
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                // 非字符集的编码（例如 gzip）按 UTF-8 处理
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Object decode(Object value) {
+        if (value instanceof LongString) {
+            return new String(((LongString) value).getBytes(), StandardCharsets.UTF_8);
+        }
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            List<Object> decoded = new ArrayList<>(values.size());
+            for (Object item : values) {
+                decoded.add(decode(item));
+            }
+            return decoded;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> values = (Map<?, ?>) value;
+            Map<Object, Object> decoded = new LinkedHashMap<>(values.size() * 2);
+            for (Map.Entry<?, ?> entry : values.entrySet()) {
+                decoded.put(entry.getKey(), decode(entry.getValue()));
+            }
+            return decoded;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * queue1 的消息处理器。
+ */
+@Component
+public class Queue1Handler implements QueueHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(Queue1Handler.class);
+
+    @Override
+    public String getQueueName() {
+        return "queue1";
+    }
+
+    @Override
+    public void handle(MessageView message) {
+        // 处理 queue1 的消息，需要文本时再调用 message.text() 解码
+        if (log.isDebugEnabled()) {
+            log.debug("处理 queue1 消息：{}", message.text());
+        }
+    }
+}
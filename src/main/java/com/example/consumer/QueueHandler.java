@@ -0,0 +1,47 @@
+package com.example.consumer;
+
+import java.util.List;
+
+/**
+ * 队列消息处理器。
+ * 声明为 Spring Bean 时启动后自动注册到 {@link QueueHandlerRegistry}，
+ * 也可以在运行时通过 {@link QueueHandlerRegistry#register(QueueHandler)} 注册。
+ * <p>
+ * 监听器调用 {@link #handle(MessageView)}，实现该方法可以直接读取消息体的 ByteBuffer 视图、按需解码文本和消息头；
+ * 仍按 {@link org.springframework.amqp.core.Message} 处理的旧处理器改为实现 {@link LegacyQueueHandler}。
+ */
+public interface QueueHandler {
+
+    /**
+     * @return 处理的队列名称
+     */
+    String getQueueName();
+
+    /**
+     * 处理一条消息，正常返回后消息会被确认。
+     *
+     * @param message 接收到的消息视图
+     * @throws Exception 处理失败
+     */
+    void handle(MessageView message) throws Exception;
+
+    /**
+     * 批量处理消息，默认逐条调用 {@link #handle(MessageView)}，失败时以 {@link BatchProcessingException} 报告失败的位置。
+     * <p>
+     * 覆盖此方法时，能确定失败位置的应抛出 {@link BatchProcessingException}，之前的消息会被确认、不会重复处理；
+     * 抛出其他异常时监听器无法得知进度，会把整批消息逐条重新交给本方法，因此这种情况下整批处理必须是原子的
+     * （失败时没有副作用，例如在一个事务内）或幂等的。
+     *
+     * @param messages 同一队列的一批消息视图，按投递顺序排列
+     * @throws Exception 处理失败
+     */
+    default void handleBatch(List<MessageView> messages) throws Exception {
+        for (int i = 0; i < messages.size(); i++) {
+            try {
+                handle(messages.get(i));
+            } catch (Exception e) {
+                throw new BatchProcessingException(i, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.consumer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * QueueHandlerRegistry 维护队列名称到处理器的映射，监听器按消费队列常数时间查找处理器。
+ * 运行时注册新处理器时，会把队列加入正在运行的监听容器，无需重启即可开始消费。
+ */
+@Component
+public class QueueHandlerRegistry {
+
+    private final Map<String, QueueHandler> handlers = new ConcurrentHashMap<>();
+
+    @Autowired(required = false)
+    private List<QueueHandler> handlerBeans = Collections.emptyList();
+
+    /**
+     * 监听容器依赖本注册表获取队列列表，这里延迟获取以避免循环依赖
+     */
+    @Autowired
+    private ObjectProvider<ListenerContainerManager> containerManagerProvider;
+
+    @PostConstruct
+    public void init() {
+        for (QueueHandler handler : handlerBeans) {
+            handlers.put(handler.getQueueName(), handler);
+        }
+    }
+
+    /**
+     * 获取队列的处理器。
+     *
+     * @param queueName 队列名称
+     * @return 处理器，未注册时返回 null
+     */
+    public QueueHandler getHandler(String queueName) {
+        return handlers.get(queueName);
+    }
+
+    /**
+     * 注册处理器，并在监听容器已启动时开始消费该队列。
+     * 同一队列重复注册时替换原处理器。
+     *
+     * @param handler 处理器
+     */
+    public void register(QueueHandler handler) {
+        register(handler.getQueueName(), handler);
+    }
+
+    /**
+     * 用处理器消费指定队列，队列名称可以与 {@link QueueHandler#getQueueName()} 不同，
+     * 例如分片队列共用逻辑队列的处理器。
+     *
+     * @param queueName 队列名称
+     * @param handler   处理器
+     */
+    public void register(String queueName, QueueHandler handler) {
+        if (handlers.put(queueName, handler) == null) {
+            ListenerContainerManager containerManager = containerManagerProvider.getIfAvailable();
+            if (containerManager != null) {
+                containerManager.addQueue(queueName);
+            }
+        }
+    }
+
+    /**
+     * 注销处理器，并让监听容器停止消费该队列。
+     *
+     * @param queueName 队列名称
+     */
+    public void unregister(String queueName) {
+        if (handlers.remove(queueName) != null) {
+            ListenerContainerManager containerManager = containerManagerProvider.getIfAvailable();
+            if (containerManager != null) {
+                containerManager.removeQueue(queueName);
+            }
+        }
+    }
+
+    /**
+     * @return 已注册处理器的队列名称
+     */
+    public Set<String> getQueueNames() {
+        return Collections.unmodifiableSet(handlers.keySet());
+    }
+}
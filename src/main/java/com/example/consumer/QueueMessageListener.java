@@ -1,20 +1,62 @@
 package com.example.consumer;
 
 
+import com.example.metrics.MessagingMetrics;
 import com.rabbitmq.client.Channel;
-import org.springframework.amqp.core.AcknowledgeMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpIOException;
 import org.springframework.amqp.core.Message;
-import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * QueueMessageListener 是一个消费者类，用于处理从 RabbitMQ 接收到的消息。
+ * 按消费队列从 {@link QueueHandlerRegistry} 查找处理器分发消息，
+ * 支持逐条消费，也支持在 ConsumerConfig 开启批量消费后按批处理并批量确认。
+ * 消息以 {@link MessageView} 交给处理器，消息体按 content_type 选择编解码器，在处理器调用 payload() 时才解码。
+ * 开启去重时，{@link DeduplicationCache} 中已处理成功的消息直接确认，不再交给处理器。
+ * 开启按键有序处理或虚拟线程时，逐条消费的消息交给 {@link KeyOrderedExecutor} 或 {@link VirtualThreadExecutor}
+ * 在投递线程之外处理，由每个通道的 {@link AckWatermark} 累计确认。
  */
 @Service
-public class QueueMessageListener implements ChannelAwareMessageListener {
+public class QueueMessageListener implements ChannelAwareBatchMessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(QueueMessageListener.class);
+
+    @Autowired
+    private QueueHandlerRegistry queueHandlerRegistry;
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    @Autowired
+    private AdaptivePrefetchController prefetchController;
+
+    @Autowired
+    private DeduplicationCache deduplicationCache;
+
+    @Autowired
+    private KeyOrderedExecutor keyOrderedExecutor;
+
+    @Autowired
+    private VirtualThreadExecutor virtualThreadExecutor;
+
+    /**
+     * 异步处理时每个通道的确认水位
+     */
+    private final Map<Channel, AckWatermark> watermarks = new ConcurrentHashMap<>();
 
     /**
      * 处理接收到的消息。
@@ -26,56 +68,289 @@ public class QueueMessageListener implements ChannelAwareMessageListener {
     @Override
     public void onMessage(Message message, Channel channel) throws Exception {
         String queue = message.getMessageProperties().getConsumerQueue();
-        byte[] body = message.getBody();
-        String messageContent = new String(body);
-        System.out.println("接收到：" + queue + "，消息内容为：" + messageContent);
-
-        // 根据队列名称处理不同的业务逻辑
-        switch (queue) {
-            case "queue1":
-                handleQueue1Message(messageContent);
-                break;
-            case "queue2":
-                handleQueue2Message(messageContent);
-                break;
-            // 添加更多队列处理逻辑
-            default:
-                System.out.println("未处理的队列：" + queue);
-                break;
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        prefetchController.apply(queue, channel);
+        MessagingMetrics.QueueMetrics queueMetrics = metrics.queue(queue);
+        // 两者都开启时按键有序处理优先
+        DeliveryExecutor executor = keyOrderedExecutor.isEnabled() ? keyOrderedExecutor
+                : virtualThreadExecutor.isEnabled() ? virtualThreadExecutor : null;
+        if (executor != null) {
+            dispatchAsync(message, channel, queue, queueMetrics, executor);
+            return;
+        }
+
+        // 根据队列名称查找处理器
+        QueueHandler handler = queueHandlerRegistry.getHandler(queue);
+        if (handler == null) {
+            // 处理器已被注销（注销时已停止消费该队列，这里只会收到注销前预取的消息），
+            // 首次投递重新入队，重投后仍无处理器则不再入队，避免在队列上无限循环
+            log.warn("未注册处理器的队列：{}，delivery tag {}", queue, deliveryTag);
+            nack(message, channel, queueMetrics);
+            return;
+        }
+        long dedupKey = 0;
+        if (deduplicationCache.isEnabled()) {
+            dedupKey = deduplicationCache.keyOf(queue, message);
+            boolean duplicate = deduplicationCache.isDuplicate(dedupKey);
+            queueMetrics.recordDedup(duplicate);
+            if (duplicate) {
+                channel.basicAck(deliveryTag, false);
+                return;
+            }
         }
+        long start = System.nanoTime();
+        handler.handle(new MessageView(message));
+        long handled = System.nanoTime();
+        queueMetrics.recordHandled(1, handled - start);
+        deduplicationCache.markProcessed(dedupKey);
 
         // 手动确认消息
-        channel.basicAck(message.getMessageProperties().getDeliveryTag(), false);
-        System.out.println(queue + " 队列消息消费成功");
+        channel.basicAck(deliveryTag, false);
+        queueMetrics.recordAck(System.nanoTime() - handled);
     }
 
-    @Override
-    public void onMessage(Message message) {
-        ChannelAwareMessageListener.super.onMessage(message);
+    /**
+     * 异步处理：在投递线程上登记确认水位后把处理任务交给执行器，处理和确认在执行器的线程上完成。
+     * 处理失败的消息单独 nack，首次失败重新入队，重投后仍失败则不再入队。
+     */
+    private void dispatchAsync(Message message, Channel channel, String queue, MessagingMetrics.QueueMetrics queueMetrics,
+                               DeliveryExecutor executor) throws IOException, InterruptedException {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        AckWatermark watermark = watermark(channel);
+        watermark.register(deliveryTag);
+        QueueHandler handler = queueHandlerRegistry.getHandler(queue);
+        if (handler == null) {
+            log.warn("未注册处理器的队列：{}，delivery tag {}", queue, deliveryTag);
+            watermark.complete(deliveryTag, false,
+                    !Boolean.TRUE.equals(message.getMessageProperties().isRedelivered()));
+            queueMetrics.recordNack();
+            return;
+        }
+        long dedupKey = 0;
+        if (deduplicationCache.isEnabled()) {
+            dedupKey = deduplicationCache.keyOf(queue, message);
+            boolean duplicate = deduplicationCache.isDuplicate(dedupKey);
+            queueMetrics.recordDedup(duplicate);
+            if (duplicate) {
+                recordAck(queueMetrics, watermark.complete(deliveryTag, true, false));
+                return;
+            }
+        }
+        MessageView view = new MessageView(message);
+        long key = dedupKey;
+        Runnable task = () -> {
+            boolean success = false;
+            try {
+                long start = System.nanoTime();
+                handler.handle(view);
+                queueMetrics.recordHandled(1, System.nanoTime() - start);
+                deduplicationCache.markProcessed(key);
+                success = true;
+            } catch (Exception e) {
+                log.error("队列 {} 的消息处理失败，delivery tag {}", queue, deliveryTag, e);
+                queueMetrics.recordNack();
+            }
+            try {
+                recordAck(queueMetrics, watermark.complete(deliveryTag, success,
+                        !Boolean.TRUE.equals(message.getMessageProperties().isRedelivered())));
+            } catch (IOException | RuntimeException e) {
+                // 通道已关闭时未确认的消息会被重新投递
+                log.warn("队列 {} 的消息确认失败，delivery tag {}: {}", queue, deliveryTag, e.getMessage());
+            }
+        };
+        try {
+            executor.execute(view, task);
+        } catch (InterruptedException | RuntimeException e) {
+            // 没有提交成功的投递重新入队，避免水位停在这里
+            watermark.complete(deliveryTag, false, true);
+            queueMetrics.recordNack();
+            throw e;
+        }
     }
 
-    @Override
-    public void containerAckMode(AcknowledgeMode mode) {
-        ChannelAwareMessageListener.super.containerAckMode(mode);
+    /**
+     * 获取通道的确认水位，不存在时创建。通道重建后 delivery tag 从 1 重新开始，因此按通道对象区分。
+     *
+     * @param channel 消费者通道
+     * @return 确认水位
+     */
+    AckWatermark watermark(Channel channel) {
+        AckWatermark watermark = watermarks.get(channel);
+        if (watermark == null) {
+            // 新通道出现时顺便清理已关闭的通道
+            watermarks.keySet().removeIf(existing -> !existing.isOpen());
+            watermark = watermarks.computeIfAbsent(channel, AckWatermark::new);
+        }
+        return watermark;
     }
 
-    @Override
-    public void onMessageBatch(List<Message> messages) {
-        ChannelAwareMessageListener.super.onMessageBatch(messages);
+    private static void recordAck(MessagingMetrics.QueueMetrics queueMetrics, long ackNanos) {
+        if (ackNanos >= 0) {
+            queueMetrics.recordAck(ackNanos);
+        }
     }
 
+    /**
+     * 批量处理接收到的消息。
+     * 按队列分组后整批交给处理方法，处理成功后以一次 basicAck(lastTag, true) 确认整批；
+     * 处理方法抛出 {@link BatchProcessingException} 时，失败位置之前的消息视为已处理，只 nack 失败的那条，
+     * 再从它之后继续处理；抛出其他异常时无法得知进度，退化为逐条处理剩余的消息（见 {@link QueueHandler#handleBatch}）。
+     *
+     * @param messages 接收到的一批消息
+     * @param channel  消息通道
+     */
     @Override
     public void onMessageBatch(List<Message> messages, Channel channel) {
-        ChannelAwareMessageListener.super.onMessageBatch(messages, channel);
+        prefetchController.apply(messages.get(0).getMessageProperties().getConsumerQueue(), channel);
+
+        // 按队列分组，保持各队列内的投递顺序
+        Map<String, List<Message>> messagesByQueue = new LinkedHashMap<>();
+        for (Message message : messages) {
+            messagesByQueue.computeIfAbsent(message.getMessageProperties().getConsumerQueue(), k -> new ArrayList<>())
+                    .add(message);
+        }
+
+        long lastAckTag = 0;
+        // 有消息随这次累计确认一起确认的队列，确认耗时计入每个队列
+        List<MessagingMetrics.QueueMetrics> ackedQueues = new ArrayList<>(messagesByQueue.size());
+        try {
+            for (Map.Entry<String, List<Message>> entry : messagesByQueue.entrySet()) {
+                String queue = entry.getKey();
+                List<Message> queueMessages = entry.getValue();
+                MessagingMetrics.QueueMetrics queueMetrics = metrics.queue(queue);
+                QueueHandler handler = queueHandlerRegistry.getHandler(queue);
+                if (handler == null) {
+                    // 处理器已被注销，与单条消费相同：首次投递重新入队，重投的消息不再入队
+                    log.warn("未注册处理器的队列：{}，{} 条消息被 nack", queue, queueMessages.size());
+                    for (Message message : queueMessages) {
+                        nack(message, channel, queueMetrics);
+                    }
+                    continue;
+                }
+                long queueAckTag = 0;
+                // 重复消息不交给处理器，随整批一起确认
+                long[] dedupKeys = null;
+                if (deduplicationCache.isEnabled()) {
+                    List<Message> fresh = new ArrayList<>(queueMessages.size());
+                    List<Long> freshKeys = new ArrayList<>(queueMessages.size());
+                    for (Message message : queueMessages) {
+                        long key = deduplicationCache.keyOf(queue, message);
+                        boolean duplicate = deduplicationCache.isDuplicate(key);
+                        queueMetrics.recordDedup(duplicate);
+                        if (duplicate) {
+                            queueAckTag = Math.max(queueAckTag, message.getMessageProperties().getDeliveryTag());
+                        } else {
+                            fresh.add(message);
+                            freshKeys.add(key);
+                        }
+                    }
+                    queueMessages = fresh;
+                    dedupKeys = freshKeys.stream().mapToLong(Long::longValue).toArray();
+                }
+                if (!queueMessages.isEmpty()) {
+                    queueAckTag = Math.max(queueAckTag, handleQueueBatch(handler, queueMessages, dedupKeys, channel, queueMetrics));
+                }
+                if (queueAckTag > 0) {
+                    ackedQueues.add(queueMetrics);
+                    lastAckTag = Math.max(lastAckTag, queueAckTag);
+                }
+            }
+            // 失败的消息已单独 nack，剩余的消息一次性批量确认
+            if (lastAckTag > 0) {
+                long start = System.nanoTime();
+                channel.basicAck(lastAckTag, true);
+                long ackNanos = System.nanoTime() - start;
+                for (MessagingMetrics.QueueMetrics queueMetrics : ackedQueues) {
+                    queueMetrics.recordAck(ackNanos);
+                }
+            }
+        } catch (IOException e) {
+            throw new AmqpIOException(e);
+        }
+    }
+
+    /**
+     * 处理同一队列的一批消息，按处理器报告的进度确认，失败的消息单独 nack。
+     *
+     * @return 可以累计确认到的最大 delivery tag，没有时返回 0
+     */
+    private long handleQueueBatch(QueueHandler handler, List<Message> queueMessages, long[] dedupKeys, Channel channel,
+                                  MessagingMetrics.QueueMetrics queueMetrics) throws IOException {
+        List<MessageView> views = views(queueMessages);
+        long lastAckTag = 0;
+        int from = 0;
+        while (from < views.size()) {
+            long start = System.nanoTime();
+            try {
+                handler.handleBatch(from == 0 ? views : views.subList(from, views.size()));
+                queueMetrics.recordHandled(views.size() - from, System.nanoTime() - start);
+                lastAckTag = markHandled(queueMessages, dedupKeys, from, views.size());
+                from = views.size();
+            } catch (BatchProcessingException e) {
+                int failed = from + e.getFailedIndex();
+                if (e.getFailedIndex() < 0 || failed >= views.size()) {
+                    log.warn("处理器 {} 报告的失败位置 {} 超出批次范围，按进度未知处理", handler.getClass().getName(), e.getFailedIndex());
+                    return Math.max(lastAckTag, handleOneByOne(handler, queueMessages, dedupKeys, from, channel, queueMetrics));
+                }
+                if (failed > from) {
+                    queueMetrics.recordHandled(failed - from, System.nanoTime() - start);
+                    lastAckTag = markHandled(queueMessages, dedupKeys, from, failed);
+                }
+                MessageProperties properties = queueMessages.get(failed).getMessageProperties();
+                log.error("队列 {} 的消息处理失败，delivery tag {}", properties.getConsumerQueue(), properties.getDeliveryTag(), e.getCause());
+                nack(queueMessages.get(failed), channel, queueMetrics);
+                from = failed + 1;
+            } catch (Exception e) {
+                // 处理器没有报告进度，剩余消息逐条重试，要求 handleBatch 失败时没有副作用或可以重复执行
+                return Math.max(lastAckTag, handleOneByOne(handler, queueMessages, dedupKeys, from, channel, queueMetrics));
+            }
+        }
+        return lastAckTag;
+    }
+
+    private long handleOneByOne(QueueHandler handler, List<Message> queueMessages, long[] dedupKeys, int from, Channel channel,
+                                MessagingMetrics.QueueMetrics queueMetrics) throws IOException {
+        long lastAckTag = 0;
+        for (int i = from; i < queueMessages.size(); i++) {
+            Message message = queueMessages.get(i);
+            try {
+                long start = System.nanoTime();
+                handler.handleBatch(Collections.singletonList(new MessageView(message)));
+                queueMetrics.recordHandled(1, System.nanoTime() - start);
+                lastAckTag = markHandled(queueMessages, dedupKeys, i, i + 1);
+            } catch (Exception e) {
+                nack(message, channel, queueMetrics);
+            }
+        }
+        return lastAckTag;
+    }
+
+    /**
+     * 记录 [from, to) 的消息已处理。
+     *
+     * @return 最后一条消息的 delivery tag
+     */
+    private long markHandled(List<Message> queueMessages, long[] dedupKeys, int from, int to) {
+        if (dedupKeys != null) {
+            for (int i = from; i < to; i++) {
+                deduplicationCache.markProcessed(dedupKeys[i]);
+            }
+        }
+        return queueMessages.get(to - 1).getMessageProperties().getDeliveryTag();
     }
 
-    private void handleQueue1Message(String messageContent) {
-        // 处理 queue1 的消息
-        System.out.println("处理 queue1 消息：" + messageContent);
+    private static void nack(Message message, Channel channel, MessagingMetrics.QueueMetrics queueMetrics) throws IOException {
+        // 首次失败重新入队，重投后仍失败则不再入队，避免毒消息无限循环
+        channel.basicNack(message.getMessageProperties().getDeliveryTag(), false,
+                !Boolean.TRUE.equals(message.getMessageProperties().isRedelivered()));
+        queueMetrics.recordNack();
     }
 
-    private void handleQueue2Message(String messageContent) {
-        // 处理 queue2 的消息
-        System.out.println("处理 queue2 消息：" + messageContent);
+    private static List<MessageView> views(List<Message> messages) {
+        List<MessageView> views = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            views.add(new MessageView(message));
+        }
+        return views;
     }
 }
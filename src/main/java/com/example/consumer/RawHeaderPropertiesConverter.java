@@ -0,0 +1,42 @@
+package com.example.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+
+import java.util.Map;
+
+/**
+ * 监听容器使用的消息属性转换器：除消息头外的属性交给 {@link DefaultMessagePropertiesConverter}，
+ * 消息头原样保留，LongString 等 AMQP 类型不再逐个转换为字符串，由 {@link MessageView#header(String)} 按需解码。
+ */
+class RawHeaderPropertiesConverter implements MessagePropertiesConverter {
+
+    private final MessagePropertiesConverter delegate = new DefaultMessagePropertiesConverter();
+
+    @Override
+    public MessageProperties toMessageProperties(AMQP.BasicProperties source, Envelope envelope, String charset) {
+        Map<String, Object> headers = source.getHeaders();
+        if (headers == null || headers.isEmpty()) {
+            return delegate.toMessageProperties(source, envelope, charset);
+        }
+        MessageProperties target = delegate.toMessageProperties(source.builder().headers(null).build(), envelope, charset);
+        for (Map.Entry<String, Object> entry : headers.entrySet()) {
+            if (MessageProperties.X_DELAY.equals(entry.getKey())) {
+                if (entry.getValue() instanceof Integer) {
+                    target.setReceivedDelay((Integer) entry.getValue());
+                }
+            } else {
+                target.setHeader(entry.getKey(), entry.getValue());
+            }
+        }
+        return target;
+    }
+
+    @Override
+    public AMQP.BasicProperties fromMessageProperties(MessageProperties source, String charset) {
+        return delegate.fromMessageProperties(source, charset);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.consumer;
+
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 所有队列共用一个 SimpleMessageListenerContainer。
+ * 消息由客户端线程交给容器内部队列，再由容器的消费者线程取出处理。
+ */
+public class SimpleContainerManager implements ListenerContainerManager {
+
+    private final SimpleMessageListenerContainer container;
+
+    private volatile int consumers;
+
+    public SimpleContainerManager(SimpleMessageListenerContainer container, int consumers) {
+        this.container = container;
+        this.consumers = consumers;
+    }
+
+    @Override
+    public synchronized void addQueue(String queueName) {
+        if (!Arrays.asList(container.getQueueNames()).contains(queueName)) {
+            container.addQueueNames(queueName);
+        }
+    }
+
+    @Override
+    public synchronized void removeQueue(String queueName) {
+        container.removeQueueNames(queueName);
+    }
+
+    @Override
+    public Set<String> getQueueNames() {
+        return new LinkedHashSet<>(Arrays.asList(container.getQueueNames()));
+    }
+
+    @Override
+    public boolean isPerQueue() {
+        return false;
+    }
+
+    @Override
+    public int getConsumers(String queueName) {
+        return consumers;
+    }
+
+    @Override
+    public synchronized void setConsumers(String queueName, int consumers) {
+        // 容器要求 concurrentConsumers 不大于 maxConcurrentConsumers，按方向决定设置顺序
+        if (consumers > this.consumers) {
+            container.setMaxConcurrentConsumers(consumers);
+            container.setConcurrentConsumers(consumers);
+        } else {
+            container.setConcurrentConsumers(consumers);
+            container.setMaxConcurrentConsumers(consumers);
+        }
+        this.consumers = consumers;
+    }
+
+    @Override
+    public Collection<SimpleMessageListenerContainer> getContainers() {
+        return Collections.singletonList(container);
+    }
+
+    @Override
+    public void start() {
+        container.start();
+    }
+
+    @Override
+    public void stop() {
+        container.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return container.isRunning();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VirtualThreadExecutor 为每次投递启动一个虚拟线程调用处理器，适合处理器内有数据库、HTTP 等阻塞调用的队列：
+ * 阻塞的虚拟线程不占用平台线程，同时在途的消息数只受每个队列的并发上限限制，而不是线程数。
+ * <p>
+ * 虚拟线程通过反射创建（需要 JDK 21，或开启预览特性的 JDK 19/20），不支持时退回为按需创建的平台线程池，
+ * 并发上限同样生效。达到上限时投递线程阻塞等待，对 Broker 形成背压；每个消费者的在途消息数同时受预取数限制，
+ * 因此预取数应不小于并发上限。
+ */
+@Component
+public class VirtualThreadExecutor implements DeliveryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+    private static final String THREAD_PREFIX = "consumer-vt-";
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 是否在虚拟线程上处理消息
+     */
+    @Value("${rabbitmq.consumer.virtual-threads.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每个队列默认的并发上限，可以用 rabbitmq.consumer.queues.&lt;队列名&gt;.max-concurrency 为单个队列单独设置
+     */
+    @Value("${rabbitmq.consumer.virtual-threads.max-concurrency:1000}")
+    private int maxConcurrency;
+
+    private ExecutorService executor;
+
+    private boolean virtual;
+
+    /**
+     * 队列名称 -> 并发许可
+     */
+    private final Map<String, Semaphore> limits = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        executor = newVirtualThreadExecutor();
+        virtual = executor != null;
+        if (!virtual) {
+            AtomicInteger index = new AtomicInteger();
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "consumer-worker-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.warn("当前 JDK 不支持虚拟线程，改用平台线程处理消息，每个队列的并发上限 {}", maxConcurrency);
+        } else {
+            log.info("消息在虚拟线程上处理，每个队列的并发上限 {}", maxConcurrency);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 是否使用虚拟线程（false 表示已退回为平台线程）
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void execute(MessageView message, Runnable task) throws InterruptedException {
+        Semaphore limit = limit(message.getQueueName());
+        limit.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    limit.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 每个队列的并发上限和在途消息数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        limits.forEach((queueName, limit) -> {
+            int max = maxConcurrency(queueName);
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("maxConcurrency", max);
+            values.put("inFlight", max - limit.availablePermits());
+            stats.put(queueName, values);
+        });
+        return stats;
+    }
+
+    private Semaphore limit(String queueName) {
+        Semaphore limit = limits.get(queueName);
+        return limit != null ? limit : limits.computeIfAbsent(queueName, k -> new Semaphore(maxConcurrency(k)));
+    }
+
+    private int maxConcurrency(String queueName) {
+        return environment.getProperty("rabbitmq.consumer.queues." + queueName + ".max-concurrency", Integer.class, maxConcurrency);
+    }
+
+    /**
+     * 通过反射调用 Thread.ofVirtual().name(prefix, 0).factory() 和 Executors.newThreadPerTaskExecutor(factory)。
+     *
+     * @return 每个任务一个虚拟线程的执行器，JDK 不支持时返回 null
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_PREFIX, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // JDK 19/20 未开启预览特性时 ofVirtual 抛出 UnsupportedOperationException，包装在 InvocationTargetException 中
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        // 未处理完的消息没有确认，通道关闭后由 Broker 重新投递
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -1,9 +1,34 @@
 package com.example.controller;
 
+import com.example.consumer.AdaptivePrefetchController;
+import com.example.consumer.DefaultQueueHandler;
+import com.example.consumer.MessageStreamer;
+import com.example.metrics.MessagingMetrics;
+import com.example.metrics.QueueDepthSampler;
+import com.example.producer.ConfirmResult;
+import com.example.producer.MessageProducer;
+import com.example.producer.PublisherConfirmTracker;
+import com.example.shard.ShardedQueues;
+import com.example.spool.PublishSpool;
 import com.example.util.RabbitMQUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.amqp.rabbit.connection.CorrelationData;
+import com.example.util.BatchPublishResult;
+import com.example.util.BatchRecordTooLargeException;
+import com.example.util.TopologyDocument;
+import com.example.util.TopologyResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/rabbitmq")
@@ -11,15 +36,46 @@ public class RabbitMQController {
     @Autowired
     private RabbitMQUtil rabbitMQUtil;
 
+    @Autowired
+    private PublisherConfirmTracker confirmTracker;
+
+    @Autowired
+    private AdaptivePrefetchController prefetchController;
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    @Autowired
+    private QueueDepthSampler depthSampler;
+
+    @Autowired
+    private MessageStreamer messageStreamer;
+
+    @Autowired
+    private ShardedQueues shardedQueues;
+
+    @Autowired
+    private PublishSpool publishSpool;
+
+    @Autowired
+    private MessageProducer messageProducer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     /**
      * 创建一个新的队列
      *
      * @param queueName 要创建的队列名称
+     * @param consume 是否立即挂载默认处理器并开始消费该队列
      * @return 创建结果的消息
      */
     @PostMapping("/createQueue")
-    public String createQueue(@RequestParam String queueName) {
-        rabbitMQUtil.createQueue(queueName);
+    public String createQueue(@RequestParam String queueName, @RequestParam(defaultValue = "false") boolean consume) {
+        if (consume) {
+            rabbitMQUtil.createQueue(new DefaultQueueHandler(queueName));
+        } else {
+            rabbitMQUtil.createQueue(queueName);
+        }
         return "创建队列: " + queueName;
     }
 
@@ -41,11 +97,17 @@ public class RabbitMQController {
      * @param queueName 要绑定的队列名称
      * @param exchangeName 绑定的交换器名称
      * @param routingKey 路由键
+     * @param consume 是否立即挂载默认处理器并开始消费该队列
      * @return 创建结果的消息
      */
     @PostMapping("/createBinding")
-    public String createBinding(@RequestParam String queueName, @RequestParam String exchangeName, @RequestParam String routingKey) {
-        rabbitMQUtil.createBinding(queueName, exchangeName, routingKey);
+    public String createBinding(@RequestParam String queueName, @RequestParam String exchangeName, @RequestParam String routingKey,
+                                @RequestParam(defaultValue = "false") boolean consume) {
+        if (consume) {
+            rabbitMQUtil.createBinding(new DefaultQueueHandler(queueName), exchangeName, routingKey);
+        } else {
+            rabbitMQUtil.createBinding(queueName, exchangeName, routingKey);
+        }
         return "绑定: queue=" + queueName + ", exchange=" + exchangeName + ", routingKey=" + routingKey;
     }
 
@@ -87,21 +149,95 @@ public class RabbitMQController {
         return "删除绑定: queue=" + queueName + ", exchange=" + exchangeName + ", routingKey=" + routingKey;
     }
 
+    /**
+     * 按拓扑文档批量声明交换器、队列和绑定，整个文档复用一个通道
+     *
+     * @param document 拓扑文档，包含 exchanges、queues、bindings 三个列表
+     * @return 每一项的声明结果和总耗时
+     */
+    @PostMapping("/declareTopology")
+    public TopologyResult declareTopology(@RequestBody TopologyDocument document) {
+        return rabbitMQUtil.declareTopology(document);
+    }
+
     /**
      * 发送消息到指定的交换器和路由键
      *
      * @param exchange 交换器名称
      * @param routingKey 路由键
      * @param message 消息内容
+     * @param key 消息键，路由键对应分片队列时按键选择分片，同一个键的消息保持顺序
      * @return 发送结果的消息
      */
     @PostMapping("/send")
-    public String sendMessage(@RequestParam String exchange, @RequestParam String routingKey, @RequestParam String message) {
-        rabbitMQUtil.sendMessage(exchange, routingKey, message);
-        System.out.println("发送消息为"+message);
+    public String sendMessage(@RequestParam String exchange, @RequestParam String routingKey, @RequestParam String message,
+                              @RequestParam(required = false) String key) {
+        rabbitMQUtil.sendMessage(exchange, key == null ? routingKey : shardedQueues.routingKey(exchange, routingKey, key), message);
         return "交换器："+exchange+"键"+routingKey+"发送消息: " + message;
     }
 
+    /**
+     * 非阻塞地发送消息，请求线程立即释放，收到 Broker 确认后再返回确认结果
+     *
+     * @param exchange 交换器名称
+     * @param routingKey 路由键
+     * @param message 消息内容
+     * @param key 消息键，路由键对应分片队列时按键选择分片，同一个键的消息保持顺序
+     * @return 确认结果（关联 ID、是否 ack、nack 原因、是否被退回、确认耗时）
+     */
+    @PostMapping("/sendAsync")
+    public CompletableFuture<Map<String, Object>> sendMessageAsync(@RequestParam String exchange, @RequestParam String routingKey,
+                                                                   @RequestParam String message, @RequestParam(required = false) String key) {
+        return messageProducer.publishAsync(exchange, key == null ? routingKey : shardedQueues.routingKey(exchange, routingKey, key), message)
+                .thenApply(RabbitMQController::toMap);
+    }
+
+    private static Map<String, Object> toMap(ConfirmResult result) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("correlationId", result.getCorrelationId());
+        body.put("ack", result.isAck());
+        body.put("cause", result.getCause());
+        body.put("returned", result.isReturned());
+        body.put("latencyMicros", result.getLatencyNanos() / 1000);
+        return body;
+    }
+
+    /**
+     * 批量发送消息，请求体为流式的 NDJSON（每行一条消息）
+     * 或长度前缀的二进制格式（Content-Type 为 application/octet-stream 时，4 字节大端长度 + 消息体）。
+     *
+     * @param exchange 交换器名称
+     * @param routingKey 路由键
+     * @param request HTTP 请求，用于读取请求体
+     * @return 批次汇总结果（成功数、失败数、耗时）
+     * @throws IOException 读取请求体失败
+     */
+    @PostMapping("/sendBatch")
+    public BatchPublishResult sendBatch(@RequestParam String exchange, @RequestParam String routingKey, HttpServletRequest request) throws IOException {
+        boolean lengthPrefixed = request.getContentType() != null
+                && MediaType.APPLICATION_OCTET_STREAM.isCompatibleWith(MediaType.parseMediaType(request.getContentType()));
+        return rabbitMQUtil.sendBatch(exchange, routingKey, request.getInputStream(), lengthPrefixed);
+    }
+
+    /**
+     * 批量发送中单条消息超过上限时返回 413，并附上超限之前已发送的消息数
+     *
+     * @param e 超限异常
+     * @return 错误信息和已发送消息的汇总
+     */
+    @ExceptionHandler(BatchRecordTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public Map<String, Object> handleBatchRecordTooLarge(BatchRecordTooLargeException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", e.getMessage());
+        body.put("maxRecordBytes", e.getMaxRecordBytes());
+        if (e.getResult() != null) {
+            body.put("accepted", e.getResult().getAccepted());
+            body.put("failed", e.getResult().getFailed());
+        }
+        return body;
+    }
+
     /**
      * 发送消息并获取确认结果
      *
@@ -127,10 +263,41 @@ public class RabbitMQController {
     @GetMapping("/receive")
     public String receiveMessage(@RequestParam String queueName) {
         Object message = rabbitMQUtil.receiveMessage(queueName);
-        System.out.println("消息："+message);
         return message != null ? "Received message: " + message : "No messages in queue";
     }
 
+    /**
+     * 从指定队列批量接收消息，以 JSON 数组返回消息体和投递信息，响应写出后整批确认
+     *
+     * @param queueName 队列名称
+     * @param max 最多接收的消息数
+     * @param timeoutMs 最长等待时间（毫秒），不足 max 条时等到超时为止
+     * @param response HTTP 响应，消息直接写入响应体
+     * @throws IOException 写出响应失败，消息会重新入队
+     */
+    @GetMapping("/receiveBatch")
+    public void receiveBatch(@RequestParam String queueName, @RequestParam(defaultValue = "100") int max,
+                             @RequestParam(defaultValue = "1000") long timeoutMs, HttpServletResponse response) throws IOException {
+        rabbitMQUtil.receiveBatch(queueName, max, timeoutMs, messages -> {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), messages);
+            response.flushBuffer();
+        });
+    }
+
+    /**
+     * 以 Server-Sent Events 推送指定队列的消息，每条消息为一个 message 事件（id 为投递标签，data 为 JSON），
+     * 写出成功后确认；客户端断开时取消消费者，未写出的消息重新入队
+     *
+     * @param queueName 队列名称
+     * @param prefetch 未确认消息的上限，即服务端最多预先取出的消息数
+     * @return 事件流
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam String queueName, @RequestParam(defaultValue = "10") int prefetch) {
+        return messageStreamer.open(queueName, prefetch);
+    }
+
     /**
      * 检查指定队列是否有消息
      *
@@ -152,4 +319,90 @@ public class RabbitMQController {
     public int getQueueMessageCount(@RequestParam String queueName) {
         return rabbitMQUtil.getQueueMessageCount(queueName);
     }
+
+    /**
+     * 一次返回所有已采样队列的积压消息数、消费者数和积压变化速率（条/秒），读取后台采样的缓存值
+     *
+     * @return 队列名称到采样值的映射
+     */
+    @GetMapping("/messageCounts")
+    public Map<String, Object> getQueueMessageCounts() {
+        return depthSampler.snapshot();
+    }
+
+    /**
+     * 获取所有分片队列的交换器、路由键和分片数
+     *
+     * @return 逻辑队列名称到分片配置的映射
+     */
+    @GetMapping("/shards")
+    public Map<String, Object> getShards() {
+        return shardedQueues.describe();
+    }
+
+    /**
+     * 把逻辑队列拆成分片队列，或调整已有的分片数。分片数减少时被移除的分片解除绑定、继续消费，积压清空后再删除
+     *
+     * @param queueName 逻辑队列名称
+     * @param exchange 交换器名称
+     * @param routingKey 逻辑队列的路由键
+     * @param count 分片数
+     * @return 调整后所有分片队列的配置
+     */
+    @PostMapping("/shards")
+    public Map<String, Object> resizeShards(@RequestParam String queueName, @RequestParam String exchange, @RequestParam String routingKey,
+                                            @RequestParam int count) {
+        shardedQueues.resize(queueName, exchange, routingKey, count);
+        return shardedQueues.describe();
+    }
+
+    /**
+     * 获取发布确认统计，包括在途消息数和确认耗时，用于评估在途窗口大小
+     *
+     * @return 确认统计
+     */
+    @GetMapping("/confirmStats")
+    public Map<String, Object> getConfirmStats() {
+        return confirmTracker.getStats();
+    }
+
+    /**
+     * 获取发布日志的积压和发送统计，未开启时只返回 enabled
+     *
+     * @return 发布日志统计
+     */
+    @GetMapping("/spool")
+    public Map<String, Object> getSpoolStats() {
+        return publishSpool.getStats();
+    }
+
+    /**
+     * 获取每个队列当前的自适应预取数，以及计算它所用的处理耗时和往返耗时
+     *
+     * @return 队列名称到预取状态的映射
+     */
+    @GetMapping("/prefetch")
+    public Map<String, Object> getPrefetch() {
+        return prefetchController.getPrefetch();
+    }
+
+    /**
+     * 获取发布、确认、退回、处理和确认（ack）的次数与耗时，按交换器和队列分组
+     *
+     * @return 指标快照，耗时单位为微秒
+     */
+    @GetMapping("/metrics")
+    public Map<String, Object> getMetrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * 以 Prometheus 文本格式输出指标，供 Prometheus 抓取
+     *
+     * @return Prometheus 文本格式的指标
+     */
+    @GetMapping(value = "/metrics/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String getPrometheusMetrics() {
+        return metrics.prometheus();
+    }
 }
@@ -0,0 +1,392 @@
+package com.example.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * MessagingMetrics 按交换器和队列记录发布、确认、退回、处理和确认（ack）的次数与耗时。
+ * <p>
+ * 热路径上只有一次 Map 查找加上 LongAdder 累加和直方图记录，不分配对象、不加锁；
+ * 可以通过 {@code /rabbitmq/metrics} 以 JSON 查看，或通过 {@code /rabbitmq/metrics/prometheus} 以 Prometheus 文本格式抓取。
+ */
+@Component
+public class MessagingMetrics {
+
+    /**
+     * 无法确定交换器时使用的标签值
+     */
+    public static final String UNKNOWN = "unknown";
+
+    /**
+     * 交换器数量超过上限后，新出现的交换器共用的标签值
+     */
+    public static final String OTHER = "other";
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    /**
+     * 单独记录指标的交换器数量上限。交换器名称可能来自 HTTP 请求，每个交换器占用几组直方图和多条 Prometheus 序列
+     */
+    @Value("${rabbitmq.metrics.max-exchanges:100}")
+    private int maxExchanges = 100;
+
+    private final Map<String, ExchangeMetrics> exchanges = new ConcurrentHashMap<>();
+
+    private final Map<String, QueueMetrics> queues = new ConcurrentHashMap<>();
+
+    private final Map<String, ChannelCacheMetrics> channelCaches = new ConcurrentHashMap<>();
+
+    /**
+     * 获取交换器的指标，不存在时创建；已记录的交换器达到 {@code rabbitmq.metrics.max-exchanges} 后，
+     * 新出现的交换器计入 {@link #OTHER}。
+     *
+     * @param exchange 交换器名称，默认交换器为空字符串
+     * @return 交换器指标
+     */
+    public ExchangeMetrics exchange(String exchange) {
+        ExchangeMetrics metrics = exchanges.get(exchange);
+        if (metrics != null) {
+            return metrics;
+        }
+        // 并发创建时可能略微超过上限，数量仍然有界
+        return exchanges.computeIfAbsent(exchanges.size() < maxExchanges ? exchange : OTHER, k -> new ExchangeMetrics());
+    }
+
+    /**
+     * 获取队列的指标，不存在时创建。
+     *
+     * @param queue 队列名称
+     * @return 队列指标
+     */
+    public QueueMetrics queue(String queue) {
+        QueueMetrics metrics = queues.get(queue);
+        return metrics != null ? metrics : queues.computeIfAbsent(queue, k -> new QueueMetrics());
+    }
+
+    /**
+     * 获取连接的通道缓存指标，不存在时创建。
+     *
+     * @param connection 连接名称（shared、publisher）
+     * @return 通道缓存指标
+     */
+    public ChannelCacheMetrics channelCache(String connection) {
+        ChannelCacheMetrics metrics = channelCaches.get(connection);
+        return metrics != null ? metrics : channelCaches.computeIfAbsent(connection, k -> new ChannelCacheMetrics());
+    }
+
+    /**
+     * @return 所有指标的快照，耗时单位为微秒
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> exchangeSnapshot = new TreeMap<>();
+        exchanges.forEach((name, metrics) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("published", metrics.published.sum());
+            values.put("publishLatency", latency(metrics.publishLatency));
+            values.put("acked", metrics.acked.sum());
+            values.put("nacked", metrics.nacked.sum());
+            values.put("confirmLatency", latency(metrics.confirmLatency));
+            values.put("returned", metrics.returned.sum());
+            exchangeSnapshot.put(name, values);
+        });
+        Map<String, Object> queueSnapshot = new TreeMap<>();
+        queues.forEach((name, metrics) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("consumed", metrics.handlerLatency.getCount());
+            values.put("handlerLatency", latency(metrics.handlerLatency));
+            values.put("ackCalls", metrics.ackLatency.getCount());
+            values.put("ackLatency", latency(metrics.ackLatency));
+            values.put("nacked", metrics.nacked.sum());
+            values.put("duplicates", metrics.duplicates.sum());
+            values.put("dedupMisses", metrics.dedupMisses.sum());
+            queueSnapshot.put(name, values);
+        });
+        Map<String, Object> channelCacheSnapshot = new TreeMap<>();
+        channelCaches.forEach((name, metrics) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("hits", metrics.hits.sum());
+            values.put("misses", metrics.misses.sum());
+            values.put("timeouts", metrics.timeouts.sum());
+            values.put("checkoutLatency", latency(metrics.checkoutLatency));
+            channelCacheSnapshot.put(name, values);
+        });
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("exchanges", exchangeSnapshot);
+        snapshot.put("queues", queueSnapshot);
+        snapshot.put("channelCaches", channelCacheSnapshot);
+        return snapshot;
+    }
+
+    /**
+     * @return Prometheus 文本格式（0.0.4）的指标，耗时单位为秒
+     */
+    public String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, ExchangeMetrics> sortedExchanges = new TreeMap<>(exchanges);
+        Map<String, QueueMetrics> sortedQueues = new TreeMap<>(queues);
+        Map<String, ChannelCacheMetrics> sortedChannelCaches = new TreeMap<>(channelCaches);
+
+        counterHeader(out, "rabbitmq_published_total", "Messages published per exchange");
+        sortedExchanges.forEach((name, m) -> sample(out, "rabbitmq_published_total", "exchange", name, null, m.published.sum()));
+        summary(out, "rabbitmq_publish_latency_seconds", "Time spent in the publish call", "exchange", sortedExchanges, m -> m.publishLatency);
+        counterHeader(out, "rabbitmq_confirmed_total", "Publisher confirms per exchange and outcome");
+        sortedExchanges.forEach((name, m) -> {
+            sample(out, "rabbitmq_confirmed_total", "exchange", name, "result=\"ack\"", m.acked.sum());
+            sample(out, "rabbitmq_confirmed_total", "exchange", name, "result=\"nack\"", m.nacked.sum());
+        });
+        summary(out, "rabbitmq_confirm_latency_seconds", "Time from publish to broker confirm", "exchange", sortedExchanges, m -> m.confirmLatency);
+        counterHeader(out, "rabbitmq_returned_total", "Unroutable messages returned per exchange");
+        sortedExchanges.forEach((name, m) -> sample(out, "rabbitmq_returned_total", "exchange", name, null, m.returned.sum()));
+
+        summary(out, "rabbitmq_handler_latency_seconds", "Time spent in queue handlers", "queue", sortedQueues, m -> m.handlerLatency);
+        summary(out, "rabbitmq_ack_latency_seconds", "Time spent in basic.ack", "queue", sortedQueues, m -> m.ackLatency);
+        counterHeader(out, "rabbitmq_nacked_total", "Deliveries rejected per queue");
+        sortedQueues.forEach((name, m) -> sample(out, "rabbitmq_nacked_total", "queue", name, null, m.nacked.sum()));
+        counterHeader(out, "rabbitmq_dedup_lookups_total", "Deduplication lookups per queue and outcome");
+        sortedQueues.forEach((name, m) -> {
+            sample(out, "rabbitmq_dedup_lookups_total", "queue", name, "result=\"hit\"", m.duplicates.sum());
+            sample(out, "rabbitmq_dedup_lookups_total", "queue", name, "result=\"miss\"", m.dedupMisses.sum());
+        });
+
+        counterHeader(out, "rabbitmq_channel_checkouts_total", "Channel checkouts per connection and cache outcome");
+        sortedChannelCaches.forEach((name, m) -> {
+            sample(out, "rabbitmq_channel_checkouts_total", "connection", name, "result=\"hit\"", m.hits.sum());
+            sample(out, "rabbitmq_channel_checkouts_total", "connection", name, "result=\"miss\"", m.misses.sum());
+            sample(out, "rabbitmq_channel_checkouts_total", "connection", name, "result=\"timeout\"", m.timeouts.sum());
+        });
+        summary(out, "rabbitmq_channel_checkout_latency_seconds", "Time spent checking out a channel", "connection",
+                sortedChannelCaches, m -> m.checkoutLatency);
+        return out.toString();
+    }
+
+    private static Map<String, Object> latency(LatencyHistogram histogram) {
+        long count = histogram.getCount();
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", count);
+        values.put("meanMicros", count == 0 ? 0 : histogram.getSum() / count / 1000);
+        values.put("p50Micros", histogram.getValueAtQuantile(0.5) / 1000);
+        values.put("p99Micros", histogram.getValueAtQuantile(0.99) / 1000);
+        values.put("p999Micros", histogram.getValueAtQuantile(0.999) / 1000);
+        values.put("maxMicros", histogram.getMax() / 1000);
+        return values;
+    }
+
+    private static void counterHeader(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+    }
+
+    private static <M> void summary(StringBuilder out, String name, String help, String label, Map<String, M> metrics,
+                                    Function<M, LatencyHistogram> histogramOf) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" summary\n");
+        metrics.forEach((value, m) -> {
+            LatencyHistogram histogram = histogramOf.apply(m);
+            for (double quantile : QUANTILES) {
+                sample(out, name, label, value, "quantile=\"" + quantile + "\"", histogram.getValueAtQuantile(quantile) / 1e9);
+            }
+            sample(out, name + "_sum", label, value, null, histogram.getSum() / 1e9);
+            sample(out, name + "_count", label, value, null, histogram.getCount());
+        });
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, String extraLabel, Object sample) {
+        out.append(name).append('{').append(label).append("=\"").append(escape(value)).append('"');
+        if (extraLabel != null) {
+            out.append(',').append(extraLabel);
+        }
+        out.append("} ").append(sample).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * 单个交换器的发布侧指标。
+     */
+    public static class ExchangeMetrics {
+
+        private final LongAdder published = new LongAdder();
+
+        private final LatencyHistogram publishLatency = new LatencyHistogram();
+
+        private final LongAdder acked = new LongAdder();
+
+        private final LongAdder nacked = new LongAdder();
+
+        private final LatencyHistogram confirmLatency = new LatencyHistogram();
+
+        private final LongAdder returned = new LongAdder();
+
+        /**
+         * 记录一次发布调用。
+         *
+         * @param nanos 发布调用耗时（纳秒）
+         */
+        public void recordPublish(long nanos) {
+            published.increment();
+            publishLatency.record(nanos);
+        }
+
+        /**
+         * 记录批量发布的消息数，批量发布不单独计时。
+         *
+         * @param messages 消息数
+         */
+        public void recordPublished(long messages) {
+            published.add(messages);
+        }
+
+        /**
+         * 记录一次确认结果。
+         *
+         * @param ack 是否确认
+         */
+        public void recordConfirm(boolean ack) {
+            if (ack) {
+                acked.increment();
+            } else {
+                nacked.increment();
+            }
+        }
+
+        /**
+         * 记录一次从发布到收到确认的耗时。
+         *
+         * @param nanos 确认耗时（纳秒）
+         */
+        public void recordConfirmLatency(long nanos) {
+            confirmLatency.record(nanos);
+        }
+
+        /**
+         * 记录一次消息退回。
+         */
+        public void recordReturn() {
+            returned.increment();
+        }
+    }
+
+    /**
+     * 单个队列的消费侧指标。
+     */
+    public static class QueueMetrics {
+
+        private final LatencyHistogram handlerLatency = new LatencyHistogram();
+
+        private final LatencyHistogram ackLatency = new LatencyHistogram();
+
+        private final LongAdder nacked = new LongAdder();
+
+        private final LongAdder duplicates = new LongAdder();
+
+        private final LongAdder dedupMisses = new LongAdder();
+
+        /**
+         * 记录一次处理，批量处理时按平均耗时记录整批。
+         *
+         * @param messages 消息数
+         * @param nanos    处理总耗时（纳秒）
+         */
+        public void recordHandled(int messages, long nanos) {
+            handlerLatency.record(nanos / messages, messages);
+        }
+
+        /**
+         * 记录一次 basic.ack 调用。
+         *
+         * @param nanos 调用耗时（纳秒）
+         */
+        public void recordAck(long nanos) {
+            ackLatency.record(nanos);
+        }
+
+        /**
+         * 记录一次 nack。
+         */
+        public void recordNack() {
+            nacked.increment();
+        }
+
+        /**
+         * 记录一次去重查询。
+         *
+         * @param duplicate 是否为已处理过的重复消息
+         */
+        public void recordDedup(boolean duplicate) {
+            if (duplicate) {
+                duplicates.increment();
+            } else {
+                dedupMisses.increment();
+            }
+        }
+
+        public long getDuplicates() {
+            return duplicates.sum();
+        }
+
+        /**
+         * @return 处理耗时直方图，其中次数为已处理的消息数
+         */
+        public LatencyHistogram getHandlerLatency() {
+            return handlerLatency;
+        }
+    }
+
+    /**
+     * 单个连接的通道缓存指标：命中为复用了缓存中的通道，未命中为新建了物理通道，
+     * 超时为等待 channel-checkout-timeout 后仍没有可用通道。
+     */
+    public static class ChannelCacheMetrics {
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder timeouts = new LongAdder();
+
+        private final LatencyHistogram checkoutLatency = new LatencyHistogram();
+
+        /**
+         * 记录一次通道借出。
+         *
+         * @param created 是否新建了物理通道
+         * @param nanos   借出耗时（纳秒），包括等待空闲通道和新建通道的时间
+         */
+        public void recordCheckout(boolean created, long nanos) {
+            if (created) {
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            checkoutLatency.record(nanos);
+        }
+
+        /**
+         * 记录一次借出超时。
+         */
+        public void recordTimeout() {
+            timeouts.increment();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+    }
+}
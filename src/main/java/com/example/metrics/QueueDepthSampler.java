@@ -0,0 +1,200 @@
+package com.example.metrics;
+
+import com.example.consumer.QueueHandlerRegistry;
+import com.rabbitmq.client.AMQP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueueDepthSampler 在后台定时采样队列的积压消息数和消费者数，读取时直接返回缓存的采样值。
+ * <p>
+ * 每个采样周期在同一个通道上依次被动声明所有已知队列（有处理器的队列，以及被查询过的队列），
+ * 一次采样只占用一个通道；采样值超过 {@code rabbitmq.depth.ttl-ms} 时，读取方会同步刷新该队列。
+ * 相邻两次采样的差值给出积压的变化速率（条/秒），正数表示积压在增长。
+ */
+@Component
+public class QueueDepthSampler {
+
+    private static final Logger log = LoggerFactory.getLogger(QueueDepthSampler.class);
+
+    /**
+     * 两次采样间隔短于此值时沿用上一次的变化速率，避免按需刷新紧跟定时刷新时速率剧烈跳动
+     */
+    private static final long MIN_RATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    @Autowired
+    private RabbitAdmin rabbitAdmin;
+
+    @Autowired
+    private QueueHandlerRegistry queueHandlerRegistry;
+
+    @Value("${rabbitmq.depth.ttl-ms:2000}")
+    private long ttlMillis;
+
+    /**
+     * 被查询过、需要定时采样的队列（有处理器的队列总会被采样，不必记录在这里）
+     */
+    private final Set<String> tracked = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, QueueDepth> samples = new ConcurrentHashMap<>();
+
+    /**
+     * 定时刷新所有已知队列。
+     */
+    @Scheduled(fixedDelayString = "${rabbitmq.depth.interval-ms:1000}")
+    public void refresh() {
+        Set<String> queueNames = new LinkedHashSet<>(queueHandlerRegistry.getQueueNames());
+        queueNames.addAll(tracked);
+        List<String> names = new ArrayList<>(queueNames);
+        int next = 0;
+        while (next < names.size()) {
+            // 被动声明不存在的队列会使 Broker 关闭通道，跳过该队列后在新通道上继续
+            int[] position = {next};
+            try {
+                rabbitAdmin.getRabbitTemplate().execute(channel -> {
+                    for (; position[0] < names.size(); position[0]++) {
+                        String queueName = names.get(position[0]);
+                        record(queueName, channel.queueDeclarePassive(queueName));
+                    }
+                    return null;
+                });
+            } catch (AmqpException e) {
+                String queueName = names.get(position[0]);
+                samples.remove(queueName);
+                if (queueHandlerRegistry.getHandler(queueName) == null) {
+                    tracked.remove(queueName);
+                }
+                log.debug("采样队列 {} 失败: {}", queueName, e.getMessage());
+                position[0]++;
+            }
+            next = position[0];
+        }
+    }
+
+    /**
+     * 获取队列的积压消息数，采样值过期时同步刷新。
+     *
+     * @param queueName 队列名称
+     * @return 积压消息数
+     */
+    public int getMessageCount(String queueName) {
+        return get(queueName).getMessageCount();
+    }
+
+    /**
+     * 获取队列的采样值，采样值不存在或过期时同步刷新，并把该队列加入定时采样。
+     *
+     * @param queueName 队列名称
+     * @return 采样值
+     * @throws AmqpException 队列不存在或 Broker 不可用
+     */
+    public QueueDepth get(String queueName) {
+        QueueDepth sample = samples.get(queueName);
+        if (sample != null && System.nanoTime() - sample.sampledNanos <= TimeUnit.MILLISECONDS.toNanos(ttlMillis)) {
+            return sample;
+        }
+        QueueDepth refreshed = rabbitAdmin.getRabbitTemplate().execute(channel -> record(queueName, channel.queueDeclarePassive(queueName)));
+        tracked.add(queueName);
+        return refreshed;
+    }
+
+    /**
+     * 停止采样队列，队列删除时调用。
+     *
+     * @param queueName 队列名称
+     */
+    public void forget(String queueName) {
+        tracked.remove(queueName);
+        samples.remove(queueName);
+    }
+
+    /**
+     * @return 所有已采样队列的积压消息数、消费者数、积压变化速率和采样时间，按队列名称排序
+     */
+    public Map<String, Object> snapshot() {
+        long now = System.nanoTime();
+        Map<String, Object> snapshot = new TreeMap<>();
+        samples.forEach((queueName, sample) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("messageCount", sample.getMessageCount());
+            values.put("consumerCount", sample.getConsumerCount());
+            values.put("ratePerSecond", sample.getRatePerSecond());
+            values.put("ageMillis", TimeUnit.NANOSECONDS.toMillis(now - sample.sampledNanos));
+            snapshot.put(queueName, values);
+        });
+        return snapshot;
+    }
+
+    private QueueDepth record(String queueName, AMQP.Queue.DeclareOk declareOk) {
+        long now = System.nanoTime();
+        QueueDepth previous = samples.get(queueName);
+        double rate = 0;
+        if (previous != null) {
+            long elapsed = now - previous.sampledNanos;
+            rate = elapsed >= MIN_RATE_INTERVAL_NANOS
+                    ? (declareOk.getMessageCount() - previous.messageCount) * 1e9 / elapsed
+                    : previous.ratePerSecond;
+        }
+        QueueDepth sample = new QueueDepth(declareOk.getMessageCount(), declareOk.getConsumerCount(), rate, now);
+        samples.put(queueName, sample);
+        return sample;
+    }
+
+    /**
+     * 单个队列的一次采样。
+     */
+    public static class QueueDepth {
+
+        private final int messageCount;
+
+        private final int consumerCount;
+
+        private final double ratePerSecond;
+
+        private final long sampledNanos;
+
+        QueueDepth(int messageCount, int consumerCount, double ratePerSecond, long sampledNanos) {
+            this.messageCount = messageCount;
+            this.consumerCount = consumerCount;
+            this.ratePerSecond = ratePerSecond;
+            this.sampledNanos = sampledNanos;
+        }
+
+        /**
+         * @return 积压（就绪）消息数
+         */
+        public int getMessageCount() {
+            return messageCount;
+        }
+
+        /**
+         * @return 消费者数
+         */
+        public int getConsumerCount() {
+            return consumerCount;
+        }
+
+        /**
+         * @return 与上一次采样相比积压的变化速率（条/秒），正数表示积压在增长
+         */
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+    }
+}
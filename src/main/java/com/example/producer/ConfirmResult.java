@@ -0,0 +1,75 @@
+package com.example.producer;
+
+import org.springframework.amqp.core.Message;
+
+/**
+ * 一条消息的发布确认结果。
+ */
+public class ConfirmResult {
+
+    private final String correlationId;
+
+    private final boolean ack;
+
+    private final String cause;
+
+    private final Message returnedMessage;
+
+    private final long latencyNanos;
+
+    public ConfirmResult(String correlationId, boolean ack, String cause, Message returnedMessage, long latencyNanos) {
+        this.correlationId = correlationId;
+        this.ack = ack;
+        this.cause = cause;
+        this.returnedMessage = returnedMessage;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @return 消息的关联 ID
+     */
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * @return Broker 是否确认（ack）了该消息
+     */
+    public boolean isAck() {
+        return ack;
+    }
+
+    /**
+     * @return 否定确认（nack）的原因，确认时为 null
+     */
+    public String getCause() {
+        return cause;
+    }
+
+    /**
+     * @return 消息因无法路由被退回时为 true，此时即使 ack 也未进入任何队列
+     */
+    public boolean isReturned() {
+        return returnedMessage != null;
+    }
+
+    /**
+     * @return 被退回的消息，未退回时为 null
+     */
+    public Message getReturnedMessage() {
+        return returnedMessage;
+    }
+
+    /**
+     * @return 从发布到收到确认的耗时（纳秒）
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfirmResult{correlationId=" + correlationId + ", ack=" + ack + ", cause=" + cause
+                + ", returned=" + isReturned() + ", latencyNanos=" + latencyNanos + "}";
+    }
+}
@@ -1,10 +1,23 @@
 package com.example.producer;
 
+import com.example.shard.ShardedQueues;
+import com.example.util.BatchPublishResult;
 import com.example.util.RabbitMQUtil;
 import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
 /**
  * MessageProducer 是一个生产者类，用于发送消息到 RabbitMQ。
  */
@@ -14,6 +27,30 @@ public class MessageProducer {
     @Autowired
     private RabbitMQUtil rabbitMQUtil;
 
+    @Autowired
+    private PublisherConfirmTracker confirmTracker;
+
+    @Autowired
+    private ShardedQueues shardedQueues;
+
+    /**
+     * 流式发布的取数和发布线程数
+     */
+    @Value("${rabbitmq.confirm.stream-threads:2}")
+    private int streamThreads;
+
+    private ScheduledExecutorService streamExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        streamExecutor = Executors.newScheduledThreadPool(Math.max(1, streamThreads), runnable -> {
+            Thread thread = new Thread(runnable, "publish-stream-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     /**
      * 发送消息到指定的路由键。
      *
@@ -25,6 +62,31 @@ public class MessageProducer {
         rabbitMQUtil.sendMessage(exchange, routingKey, message);
     }
 
+    /**
+     * 使用指定的编解码器发送消息，编解码器名称写入 content_type，消费端据此解码。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 路由键
+     * @param message    消息内容
+     * @param codec      编解码器名称（binary、json），为 null 时按交换器配置选择
+     */
+    public void sendMessage(String exchange, String routingKey, Object message, String codec) {
+        rabbitMQUtil.sendMessage(exchange, routingKey, message, codec);
+    }
+
+    /**
+     * 按消息键发送消息：路由键对应分片队列时按键的一致性哈希选择分片，同一个键的消息进入同一个分片、按顺序消费；
+     * 未分片时与 {@link #sendMessage(String, String, Object)} 相同。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 逻辑队列的路由键
+     * @param key        消息键，例如订单号
+     * @param message    消息内容
+     */
+    public void sendMessageWithKey(String exchange, String routingKey, String key, Object message) {
+        rabbitMQUtil.sendMessage(exchange, shardedQueues.routingKey(exchange, routingKey, key), message);
+    }
+
     /**
      * 发送消息并获取确认结果。
      *
@@ -36,4 +98,91 @@ public class MessageProducer {
     public void sendMessageWithConfirmation(String exchange, String routingKey, Object message, CorrelationData correlationData) {
         rabbitMQUtil.sendMessageWithConfirmation(exchange, routingKey, message, correlationData);
     }
+
+    /**
+     * 异步发送消息，返回在 Broker 确认（ack/nack）或退回时完成的 Future。
+     * 关联 ID 自动生成；在途消息达到上限时阻塞等待，超时抛出 {@link org.springframework.amqp.AmqpTimeoutException}。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 路由键
+     * @param message    消息内容
+     * @return 确认结果的 Future
+     */
+    public CompletableFuture<ConfirmResult> sendAsync(String exchange, String routingKey, Object message) {
+        return sendAsync(exchange, routingKey, message, null);
+    }
+
+    /**
+     * 异步发送消息，返回在 Broker 确认（ack/nack）或退回时完成的 Future。
+     *
+     * @param exchange      交换器名称
+     * @param routingKey    路由键
+     * @param message       消息内容
+     * @param correlationId 关联 ID，为空时自动生成
+     * @return 确认结果的 Future
+     */
+    public CompletableFuture<ConfirmResult> sendAsync(String exchange, String routingKey, Object message, String correlationId) {
+        return confirmTracker.publish(exchange, correlationId,
+                correlationData -> rabbitMQUtil.sendMessageWithConfirmation(exchange, routingKey, message, correlationData));
+    }
+
+    /**
+     * 按消息键异步发送消息，分片规则同 {@link #sendMessageWithKey}。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 逻辑队列的路由键
+     * @param key        消息键，例如订单号
+     * @param message    消息内容
+     * @return 确认结果的 Future
+     */
+    public CompletableFuture<ConfirmResult> sendAsyncWithKey(String exchange, String routingKey, String key, Object message) {
+        return sendAsync(exchange, shardedQueues.routingKey(exchange, routingKey, key), message, null);
+    }
+
+    /**
+     * 非阻塞地发布一条消息，在后台线程上占用在途窗口并发布，调用线程不会因窗口已满而等待。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 路由键
+     * @param message    消息内容
+     * @return 确认结果的 Future；发布失败时以 nack 的形式完成
+     */
+    public CompletableFuture<ConfirmResult> publishAsync(String exchange, String routingKey, Object message) {
+        CompletableFuture<ConfirmResult> result = new CompletableFuture<>();
+        publishAll(exchange, routingKey, Collections.singleton(message).iterator(), 1, result::complete)
+                .whenComplete((summary, e) -> {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * 流式发布一组消息：只在在途（已发布未确认）消息数小于 maxConcurrency 时才从 messages 取下一条，
+     * 每收到一个确认就通过 onConfirm 输出结果并继续取数，消费速度由 Broker 的确认速度决定。
+     * 取数和发布在后台线程上进行，方法立即返回，不占用调用线程；同时受全局在途窗口（rabbitmq.confirm.max-in-flight）限制。
+     *
+     * @param exchange       交换器名称
+     * @param routingKey     路由键
+     * @param messages       消息来源，按需调用 hasNext/next，不应阻塞
+     * @param maxConcurrency 本次发布的最大在途消息数
+     * @param onConfirm      每条消息的确认结果，按到达顺序在确认线程上回调，不应阻塞；
+     *                       发布本身失败的消息以 nack 输出，关联 ID 为 null
+     * @return 消息取完且全部确认后完成的 Future，accepted 为 ack 且未退回的数量，failed 为其余数量；
+     * 取消该 Future 即停止取数
+     */
+    public CompletableFuture<BatchPublishResult> publishAll(String exchange, String routingKey, Iterator<?> messages,
+                                                           int maxConcurrency, Consumer<ConfirmResult> onConfirm) {
+        return new PublishStream(confirmTracker, streamExecutor, exchange, messages, maxConcurrency,
+                (message, correlationData) -> rabbitMQUtil.sendMessageWithConfirmation(exchange, routingKey, message, correlationData),
+                onConfirm).start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (streamExecutor != null) {
+            streamExecutor.shutdown();
+        }
+    }
 }
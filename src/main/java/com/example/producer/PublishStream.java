@@ -0,0 +1,171 @@
+package com.example.producer;
+
+import com.example.util.BatchPublishResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 一次流式发布：只在有空闲名额时才从数据源取下一条消息发布，在途（已发布未确认）消息数不超过 maxConcurrency，
+ * 每收到一个确认释放一个名额并继续取数，即按需拉取（demand-driven）的背压。
+ * <p>
+ * 取数和发布都在 {@code executor} 的线程上执行，不阻塞调用方和确认回调线程；同一时刻只有一个线程在取数。
+ * 全局在途窗口（{@link PublisherConfirmTracker}）已满而本次发布没有在途消息可等待时，延迟 {@link #RETRY_DELAY_MS} 毫秒后重试。
+ */
+final class PublishStream {
+
+    private static final Logger log = LoggerFactory.getLogger(PublishStream.class);
+
+    /**
+     * 全局在途窗口已满时的重试间隔（毫秒）
+     */
+    static final long RETRY_DELAY_MS = 10;
+
+    private final PublisherConfirmTracker confirmTracker;
+
+    private final ScheduledExecutorService executor;
+
+    private final String exchange;
+
+    private final Iterator<?> source;
+
+    private final int maxConcurrency;
+
+    private final MessageSender sender;
+
+    private final Consumer<ConfirmResult> onConfirm;
+
+    private final CompletableFuture<BatchPublishResult> summary = new CompletableFuture<>();
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 待处理的信号数，从 0 变为 1 的线程负责取数，其余信号合并到这一轮
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder acked = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * 已取出但因全局窗口已满尚未发布的消息，只在取数线程上访问
+     */
+    private Object pending;
+
+    private volatile boolean exhausted;
+
+    PublishStream(PublisherConfirmTracker confirmTracker, ScheduledExecutorService executor, String exchange,
+                  Iterator<?> source, int maxConcurrency, MessageSender sender, Consumer<ConfirmResult> onConfirm) {
+        this.confirmTracker = confirmTracker;
+        this.executor = executor;
+        this.exchange = exchange;
+        this.source = source;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.sender = sender;
+        this.onConfirm = onConfirm;
+    }
+
+    /**
+     * 按消息和关联数据执行实际发布的回调。
+     */
+    interface MessageSender {
+        void send(Object message, CorrelationData correlationData);
+    }
+
+    /**
+     * 开始发布。
+     *
+     * @return 在数据源取完且所有确认都已收到时完成的 Future；取消该 Future 后不再取数，已发布的消息仍会收到确认
+     */
+    CompletableFuture<BatchPublishResult> start() {
+        signal();
+        return summary;
+    }
+
+    private void signal() {
+        if (wip.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                summary.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            try {
+                boolean retry = false;
+                while (!summary.isDone() && inFlight.get() < maxConcurrency) {
+                    if (pending == null) {
+                        if (!source.hasNext()) {
+                            exhausted = true;
+                            break;
+                        }
+                        pending = source.next();
+                    }
+                    Object message = pending;
+                    inFlight.incrementAndGet();
+                    CompletableFuture<ConfirmResult> result = confirmTracker.tryPublish(exchange, null,
+                            correlationData -> sender.send(message, correlationData));
+                    if (result == null) {
+                        inFlight.decrementAndGet();
+                        // 有在途消息时由它们的确认唤醒，否则定时重试
+                        retry = inFlight.get() == 0;
+                        break;
+                    }
+                    pending = null;
+                    result.whenComplete(this::confirmed);
+                }
+                if (retry) {
+                    executor.schedule(this::signal, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (RuntimeException e) {
+                // 数据源抛出异常，不再取数；已发布的消息仍按确认回调输出
+                log.warn("流式发布到交换器 {} 时读取消息失败: {}", exchange, e.getMessage());
+                summary.completeExceptionally(e);
+            }
+            completeIfDone();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void confirmed(ConfirmResult result, Throwable error) {
+        if (error != null) {
+            // 发布本身失败，不会有 Broker 确认，以 nack 的形式输出
+            result = new ConfirmResult(null, false, String.valueOf(error.getMessage()), null, 0);
+        }
+        if (result.isAck() && !result.isReturned()) {
+            acked.increment();
+        } else {
+            failed.increment();
+        }
+        try {
+            onConfirm.accept(result);
+        } catch (RuntimeException e) {
+            log.warn("流式发布的确认回调抛出异常: {}", e.getMessage());
+        }
+        inFlight.decrementAndGet();
+        signal();
+    }
+
+    private void completeIfDone() {
+        if (exhausted && inFlight.get() == 0) {
+            summary.complete(new BatchPublishResult(acked.sum(), failed.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.producer;
+
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * PublisherConfirmTracker 跟踪发布确认（publisher confirm）的结果。
+ * 每次发布占用一个在途窗口许可，收到 ack/nack 后释放；窗口已满时发布方阻塞等待，
+ * 超时则抛出 {@link AmqpTimeoutException}，从而对生产者形成背压，而不是让在途消息无限增长。
+ */
+@Component
+public class PublisherConfirmTracker {
+
+    /**
+     * 最大在途（已发布未确认）消息数
+     */
+    @Value("${rabbitmq.confirm.max-in-flight:1000}")
+    private int maxInFlight;
+
+    /**
+     * 窗口已满时等待许可的最长时间（毫秒）
+     */
+    @Value("${rabbitmq.confirm.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    /**
+     * 关联 ID 前缀，进程内唯一，后接自增序号，避免每条消息生成 UUID
+     */
+    private final String idPrefix = Long.toString(System.currentTimeMillis(), 36) + "-"
+            + Integer.toString(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), 36) + "-";
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder acked = new LongAdder();
+
+    private final LongAdder nacked = new LongAdder();
+
+    private final LongAdder returned = new LongAdder();
+
+    private final LongAdder latencyTotalNanos = new LongAdder();
+
+    private final AtomicLong latencyMaxNanos = new AtomicLong();
+
+    private Semaphore window;
+
+    @PostConstruct
+    public void init() {
+        window = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * 占用一个窗口许可并发布消息，返回在收到确认时完成的 Future。
+     *
+     * @param exchange      目标交换器名称，用于按交换器统计确认
+     * @param correlationId 关联 ID，为空时自动生成
+     * @param publisher     实际执行发布的回调，参数为本次使用的关联数据
+     * @return 确认结果的 Future；发布本身抛出异常时以该异常完成
+     * @throws AmqpTimeoutException 在途窗口已满且等待超时
+     */
+    public CompletableFuture<ConfirmResult> publish(String exchange, String correlationId, Consumer<CorrelationData> publisher) {
+        acquire();
+        return publishAcquired(exchange, correlationId, publisher);
+    }
+
+    /**
+     * 不等待的发布：在途窗口已满时立即返回 null，调用方在有确认完成后重试，不阻塞调用线程。
+     *
+     * @param exchange      目标交换器名称，用于按交换器统计确认
+     * @param correlationId 关联 ID，为空时自动生成
+     * @param publisher     实际执行发布的回调，参数为本次使用的关联数据
+     * @return 确认结果的 Future；窗口已满时返回 null
+     */
+    public CompletableFuture<ConfirmResult> tryPublish(String exchange, String correlationId, Consumer<CorrelationData> publisher) {
+        if (!window.tryAcquire()) {
+            return null;
+        }
+        return publishAcquired(exchange, correlationId, publisher);
+    }
+
+    private CompletableFuture<ConfirmResult> publishAcquired(String exchange, String correlationId, Consumer<CorrelationData> publisher) {
+        TrackedCorrelationData correlationData = new TrackedCorrelationData(correlationId != null && !correlationId.isEmpty()
+                ? correlationId : nextCorrelationId(), exchange);
+        CompletableFuture<ConfirmResult> result = new CompletableFuture<>();
+        correlationData.getFuture().addCallback(
+                confirm -> complete(result, correlationData, confirm.isAck(), confirm.getReason()),
+                ex -> {
+                    window.release();
+                    result.completeExceptionally(ex);
+                });
+        try {
+            publisher.accept(correlationData);
+        } catch (RuntimeException e) {
+            // 发布未成功写出，不会再有确认，由失败回调释放许可
+            correlationData.getFuture().setException(e);
+        }
+        return result;
+    }
+
+    /**
+     * 生成关联 ID。
+     *
+     * @return 进程内唯一的关联 ID
+     */
+    public String nextCorrelationId() {
+        return idPrefix + Long.toString(sequence.incrementAndGet(), 36);
+    }
+
+    /**
+     * @return 当前在途（已发布未确认）消息数
+     */
+    public int getOutstanding() {
+        return maxInFlight - window.availablePermits();
+    }
+
+    /**
+     * @return 确认统计：在途数、窗口大小、ack/nack/退回数量及确认耗时
+     */
+    public Map<String, Object> getStats() {
+        long confirmedCount = acked.sum() + nacked.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("outstanding", getOutstanding());
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("acked", acked.sum());
+        stats.put("nacked", nacked.sum());
+        stats.put("returned", returned.sum());
+        stats.put("avgLatencyMicros", confirmedCount == 0 ? 0 : latencyTotalNanos.sum() / confirmedCount / 1000);
+        stats.put("maxLatencyMicros", latencyMaxNanos.get() / 1000);
+        return stats;
+    }
+
+    private void acquire() {
+        try {
+            if (!window.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new AmqpTimeoutException("在途未确认消息已达上限 " + maxInFlight + "，等待 " + acquireTimeoutMs + "ms 超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpTimeoutException("等待在途窗口许可时被中断");
+        }
+    }
+
+    private void complete(CompletableFuture<ConfirmResult> result, TrackedCorrelationData correlationData,
+                          boolean ack, String cause) {
+        window.release();
+        long latency = System.nanoTime() - correlationData.getPublishNanos();
+        latencyTotalNanos.add(latency);
+        long max;
+        while (latency > (max = latencyMaxNanos.get()) && !latencyMaxNanos.compareAndSet(max, latency)) {
+            // 重试直到更新成功或已有更大的值
+        }
+        if (ack) {
+            acked.increment();
+        } else {
+            nacked.increment();
+        }
+        if (correlationData.getReturnedMessage() != null) {
+            returned.increment();
+        }
+        result.complete(new ConfirmResult(correlationData.getId(), ack, cause, correlationData.getReturnedMessage(), latency));
+    }
+}
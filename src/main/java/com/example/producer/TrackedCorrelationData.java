@@ -0,0 +1,34 @@
+package com.example.producer;
+
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+/**
+ * 由 {@link PublisherConfirmTracker} 创建的关联数据，额外记录目标交换器和发布时间，
+ * 确认回调据此按交换器统计确认结果和确认耗时。
+ */
+public class TrackedCorrelationData extends CorrelationData {
+
+    private final String exchange;
+
+    private final long publishNanos;
+
+    public TrackedCorrelationData(String id, String exchange) {
+        super(id);
+        this.exchange = exchange;
+        this.publishNanos = System.nanoTime();
+    }
+
+    /**
+     * @return 目标交换器名称
+     */
+    public String getExchange() {
+        return exchange;
+    }
+
+    /**
+     * @return 发布时的 {@link System#nanoTime()}
+     */
+    public long getPublishNanos() {
+        return publishNanos;
+    }
+}
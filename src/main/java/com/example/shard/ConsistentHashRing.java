@@ -0,0 +1,102 @@
+package com.example.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 分片的一致性哈希环，不可变，可以在多个线程间共享。
+ * <p>
+ * 每个分片在环上放置 virtualNodes 个虚拟节点，位置只取决于分片名称和虚拟节点序号；
+ * 键按哈希值顺时针找到的第一个虚拟节点归属对应分片。分片数从 N 增加到 M 时只有约 (M-N)/M 的键移动，
+ * 且只会移到新增的分片上；减少时只有被移除分片上的键移动。
+ */
+public final class ConsistentHashRing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 按哈希值升序排列的虚拟节点位置
+     */
+    private final long[] points;
+
+    /**
+     * 与 points 一一对应的分片序号
+     */
+    private final int[] owners;
+
+    private final int shards;
+
+    /**
+     * @param name         逻辑队列名称，虚拟节点位置由名称、分片序号和虚拟节点序号决定
+     * @param shards       分片数，至少为 1
+     * @param virtualNodes 每个分片的虚拟节点数，至少为 1
+     */
+    public ConsistentHashRing(String name, int shards, int virtualNodes) {
+        if (shards < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("分片数和虚拟节点数必须大于 0");
+        }
+        int size = shards * virtualNodes;
+        long[] unsorted = new long[size];
+        for (int shard = 0; shard < shards; shard++) {
+            String prefix = name + '#' + shard + '#';
+            for (int node = 0; node < virtualNodes; node++) {
+                unsorted[shard * virtualNodes + node] = hash(prefix + node);
+            }
+        }
+        // 按位置排序，位置相同时序号小的分片在前，保证结果与分片的添加顺序无关
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> unsorted[a] != unsorted[b] ? Long.compare(unsorted[a], unsorted[b]) : Integer.compare(a, b));
+        this.points = new long[size];
+        this.owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = unsorted[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * @param key 消息键
+     * @return 键所属的分片序号，0 ~ shards-1
+     */
+    public int shardOf(String key) {
+        long hash = hash(key);
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        } else {
+            // 位置相同的虚拟节点取第一个
+            while (index > 0 && points[index - 1] == hash) {
+                index--;
+            }
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * UTF-8 字节的 FNV-1a 64 位哈希，再经过 MurmurHash3 的 fmix64 打散，相近的键也均匀分布在环上。
+     * 结果只取决于字符串内容，跨进程、跨版本稳定。
+     */
+    static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.shard;
+
+import com.example.consumer.QueueHandler;
+import com.example.consumer.QueueHandlerRegistry;
+import com.example.util.DeclaredTopologyCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Queue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ShardedQueues 把一个逻辑队列拆成 N 个分片队列 &lt;逻辑队列&gt;.shard-0 ~ shard-(N-1)，分散到 Broker 的多个核上。
+ * <p>
+ * 分片 i 以路由键 &lt;路由键&gt;.shard-i 绑定到逻辑队列所在的交换器；发布时按消息键的一致性哈希选择分片，
+ * 同一个键总是进入同一个分片。分片队列默认声明为 single-active-consumer，任意时刻只有一个消费者在消费，
+ * 因此同一个键的消息按发布顺序处理。所有分片都由逻辑队列的处理器消费，处理器无需感知分片。
+ * <p>
+ * 分片数可以通过 {@link #resize} 在运行时调整，调整步骤见 README 的“分片队列”一节。
+ */
+@Component
+public class ShardedQueues {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedQueues.class);
+
+    /**
+     * 分片队列名称和路由键的后缀
+     */
+    public static final String SHARD_SUFFIX = ".shard-";
+
+    @Autowired
+    private DeclaredTopologyCache topologyCache;
+
+    @Autowired
+    private QueueHandlerRegistry queueHandlerRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 启动时分片的逻辑队列，每个队列的交换器、路由键和分片数由 rabbitmq.shards.&lt;队列名&gt;.* 设置
+     */
+    @Value("${rabbitmq.shards.queues:}")
+    private String[] queueNames;
+
+    /**
+     * 每个分片在哈希环上的虚拟节点数
+     */
+    @Value("${rabbitmq.shards.virtual-nodes:512}")
+    private int virtualNodes;
+
+    /**
+     * 分片队列是否声明为 single-active-consumer
+     */
+    @Value("${rabbitmq.shards.single-active-consumer:true}")
+    private boolean singleActiveConsumer;
+
+    /**
+     * 逻辑队列名称 -> 分片配置
+     */
+    private final Map<String, ShardedQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * 交换器 -> 路由键 -> 分片配置，发布时按此查找
+     */
+    private final Map<String, Map<String, ShardedQueue>> routes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String queueName : queueNames) {
+            if (queueName.trim().isEmpty()) {
+                continue;
+            }
+            String prefix = "rabbitmq.shards." + queueName.trim() + ".";
+            resize(queueName.trim(), environment.getRequiredProperty(prefix + "exchange"),
+                    environment.getRequiredProperty(prefix + "routing-key"),
+                    environment.getProperty(prefix + "count", Integer.class, 1));
+        }
+    }
+
+    /**
+     * 声明或调整逻辑队列的分片：声明缺少的分片队列和绑定并开始消费，然后切换到新的哈希环。
+     * 分片数减少时，被移除的分片只解除绑定、继续消费，积压清空后再删除。
+     *
+     * @param queueName  逻辑队列名称，它的处理器用于消费所有分片
+     * @param exchange   交换器名称，需要已经存在
+     * @param routingKey 逻辑队列的路由键
+     * @param count      分片数，至少为 1
+     */
+    public synchronized void resize(String queueName, String exchange, String routingKey, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("分片数必须大于 0: " + count);
+        }
+        ShardedQueue previous = queues.get(queueName);
+        if (previous != null && (!previous.exchange.equals(exchange) || !previous.routingKey.equals(routingKey))) {
+            throw new IllegalArgumentException("逻辑队列 " + queueName + " 已按 " + previous.exchange + "/" + previous.routingKey + " 分片");
+        }
+        QueueHandler handler = queueHandlerRegistry.getHandler(queueName);
+        if (handler == null) {
+            log.warn("逻辑队列 {} 没有处理器，分片队列不会被消费", queueName);
+        }
+        Map<String, Object> arguments = new HashMap<>();
+        if (singleActiveConsumer) {
+            arguments.put("x-single-active-consumer", true);
+        }
+        for (int shard = 0; shard < count; shard++) {
+            String shardName = shardName(queueName, shard);
+            topologyCache.declareQueue(new Queue(shardName, true, false, false, arguments));
+            topologyCache.declareBinding(binding(shardName, exchange, shardRoutingKey(routingKey, shard)));
+            if (handler != null && queueHandlerRegistry.getHandler(shardName) == null) {
+                queueHandlerRegistry.register(shardName, handler);
+            }
+        }
+
+        ShardedQueue sharded = new ShardedQueue(exchange, routingKey, new ConsistentHashRing(queueName, count, virtualNodes));
+        queues.put(queueName, sharded);
+        routes.computeIfAbsent(exchange, k -> new ConcurrentHashMap<>()).put(routingKey, sharded);
+
+        // 新的哈希环生效后，不再有消息发往被移除的分片
+        int previousCount = previous == null ? 0 : previous.ring.getShards();
+        for (int shard = count; shard < previousCount; shard++) {
+            topologyCache.removeBinding(binding(shardName(queueName, shard), exchange, shardRoutingKey(routingKey, shard)));
+        }
+        log.info("逻辑队列 {} 分片数 {} -> {}", queueName, previousCount, count);
+    }
+
+    /**
+     * 按消息键选择分片的路由键。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 逻辑队列的路由键
+     * @param key        消息键，为 null 时不分片
+     * @return 分片的路由键；没有为该交换器和路由键配置分片或键为 null 时返回原路由键
+     */
+    public String routingKey(String exchange, String routingKey, String key) {
+        if (key == null) {
+            return routingKey;
+        }
+        Map<String, ShardedQueue> byRoutingKey = routes.get(exchange);
+        ShardedQueue sharded = byRoutingKey == null ? null : byRoutingKey.get(routingKey);
+        return sharded == null ? routingKey : shardRoutingKey(routingKey, sharded.ring.shardOf(key));
+    }
+
+    /**
+     * @param queueName 逻辑队列名称
+     * @param key       消息键
+     * @return 键所属的分片队列名称，逻辑队列未分片时返回 null
+     */
+    public String shardOf(String queueName, String key) {
+        ShardedQueue sharded = queues.get(queueName);
+        return sharded == null ? null : shardName(queueName, sharded.ring.shardOf(key));
+    }
+
+    /**
+     * @return 每个逻辑队列的交换器、路由键和分片数
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new TreeMap<>();
+        queues.forEach((name, sharded) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("exchange", sharded.exchange);
+            values.put("routingKey", sharded.routingKey);
+            values.put("shards", sharded.ring.getShards());
+            result.put(name, values);
+        });
+        return result;
+    }
+
+    /**
+     * @param queueName 逻辑队列名称
+     * @param shard     分片序号
+     * @return 分片队列名称
+     */
+    public static String shardName(String queueName, int shard) {
+        return queueName + SHARD_SUFFIX + shard;
+    }
+
+    private static String shardRoutingKey(String routingKey, int shard) {
+        return routingKey + SHARD_SUFFIX + shard;
+    }
+
+    private static Binding binding(String queueName, String exchange, String routingKey) {
+        return new Binding(queueName, Binding.DestinationType.QUEUE, exchange, routingKey, null);
+    }
+
+    private static final class ShardedQueue {
+
+        private final String exchange;
+
+        private final String routingKey;
+
+        private final ConsistentHashRing ring;
+
+        private ShardedQueue(String exchange, String routingKey, ConsistentHashRing ring) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.ring = ring;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.spool;
+
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.MessagingMetrics;
+import com.example.producer.TrackedCorrelationData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpResourceNotAvailableException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * PublishSpool 是发布的本地预写日志：消息先追加到磁盘上的 {@link SpoolJournal} 即返回，
+ * 由后台线程按追加顺序带发布确认发往 Broker，确认后推进提交位置并删除已确认的段文件。
+ * Broker 不可用或阻塞发布时只影响后台线程，调用方的延迟只取决于本地追加；未确认的消息在进程重启后继续发送。
+ * <p>
+ * 发送失败（异常或 nack）时，等在途消息全部有结果后从最早未确认的位置重新发送，
+ * 因此投递语义为至少一次，失败或重启后 Broker 上可能出现重复消息。
+ */
+@Component
+public class PublishSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(PublishSpool.class);
+
+    /**
+     * 后台线程提交位置的间隔（毫秒）
+     */
+    private static final long COMMIT_INTERVAL_MS = 100;
+
+    /**
+     * 没有待发送记录时的等待时间，追加时会提前唤醒
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    /**
+     * 是否开启发布日志
+     */
+    @Value("${rabbitmq.spool.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 日志目录
+     */
+    @Value("${rabbitmq.spool.directory:spool}")
+    private String directory;
+
+    /**
+     * 单个段文件的大小（字节），也是单条消息编码后的上限
+     */
+    @Value("${rabbitmq.spool.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    /**
+     * 未确认数据的上限（字节），超过后拒绝追加
+     */
+    @Value("${rabbitmq.spool.max-bytes:1073741824}")
+    private long maxBytes;
+
+    /**
+     * 后台线程已发送未确认的消息数上限
+     */
+    @Value("${rabbitmq.spool.max-in-flight:1000}")
+    private int maxInFlight;
+
+    /**
+     * 把日志刷到磁盘的间隔（毫秒），0 表示只依赖操作系统回写（进程崩溃不丢数据，掉电可能丢失）
+     */
+    @Value("${rabbitmq.spool.force-interval-ms:1000}")
+    private long forceIntervalMs;
+
+    /**
+     * 发送失败后重试前的等待时间（毫秒）
+     */
+    @Value("${rabbitmq.spool.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    private SpoolJournal journal;
+
+    private Thread drainer;
+
+    private volatile boolean running;
+
+    private Semaphore window;
+
+    /**
+     * 已发送未确认的记录位置，nack 或发送失败的位置保留到重新发送
+     */
+    private final ConcurrentSkipListSet<Long> outstanding = new ConcurrentSkipListSet<>();
+
+    /**
+     * 有消息发送失败，后台线程需要从最早未确认的位置重新发送
+     */
+    private volatile boolean failed;
+
+    /**
+     * 下一条待发送记录的位置，只由后台线程访问
+     */
+    private long readPosition;
+
+    private final LongAdder appended = new LongAdder();
+
+    private final LongAdder confirmed = new LongAdder();
+
+    private final LongAdder nacked = new LongAdder();
+
+    private final LongAdder sendFailures = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 追加到本地日志的耗时，与交换器指标中的发布耗时（后台线程实际发往 Broker 的耗时）分开统计
+     */
+    private final LatencyHistogram appendLatency = new LatencyHistogram();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = new SpoolJournal(Paths.get(directory), segmentBytes, forceIntervalMs > 0);
+        readPosition = journal.getCommitPosition();
+        window = new Semaphore(maxInFlight);
+        if (journal.getPendingBytes() > 0) {
+            log.info("发布日志 {} 中有 {} 字节未确认的消息，将继续发送", directory, journal.getPendingBytes());
+        }
+        running = true;
+        drainer = new Thread(this::drain, "publish-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * @return 是否开启发布日志
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 把消息追加到日志，由后台线程发送。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 路由键
+     * @param message    已转换的消息
+     * @throws AmqpResourceNotAvailableException 未确认的数据超过 max-bytes
+     * @throws UncheckedIOException              写入日志失败
+     */
+    public void append(String exchange, String routingKey, Message message) {
+        if (journal.getPendingBytes() >= maxBytes) {
+            rejected.increment();
+            throw new AmqpResourceNotAvailableException("发布日志中未确认的数据已达上限 " + maxBytes + " 字节");
+        }
+        long start = System.nanoTime();
+        try {
+            journal.append(new SpoolRecord(exchange, routingKey, message).encode());
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入发布日志失败", e);
+        }
+        appendLatency.record(System.nanoTime() - start);
+        appended.increment();
+        LockSupport.unpark(drainer);
+    }
+
+    /**
+     * @return 日志统计：未确认字节数、段文件数、在途数和各类计数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (journal == null) {
+            return stats;
+        }
+        stats.put("pendingBytes", journal.getPendingBytes());
+        stats.put("segments", journal.getSegmentCount());
+        stats.put("writePosition", journal.getWritePosition());
+        stats.put("commitPosition", journal.getCommitPosition());
+        stats.put("outstanding", maxInFlight - window.availablePermits());
+        stats.put("appended", appended.sum());
+        stats.put("appendP50Micros", appendLatency.getValueAtQuantile(0.5) / 1000);
+        stats.put("appendP99Micros", appendLatency.getValueAtQuantile(0.99) / 1000);
+        stats.put("appendMaxMicros", appendLatency.getMax() / 1000);
+        stats.put("confirmed", confirmed.sum());
+        stats.put("nacked", nacked.sum());
+        stats.put("sendFailures", sendFailures.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private void drain() {
+        long lastCommit = System.currentTimeMillis();
+        long lastForce = lastCommit;
+        while (running) {
+            try {
+                if (failed) {
+                    rewind();
+                    continue;
+                }
+                SpoolJournal.Record record = journal.read(readPosition);
+                if (record == null) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                } else if (window.tryAcquire(COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    send(record);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastCommit >= COMMIT_INTERVAL_MS) {
+                    commit();
+                    lastCommit = now;
+                }
+                if (forceIntervalMs > 0 && now - lastForce >= forceIntervalMs) {
+                    journal.force();
+                    lastForce = now;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("发布日志后台发送出错", e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryBackoffMs));
+            }
+        }
+    }
+
+    private void send(SpoolJournal.Record record) {
+        long position = record.getPosition();
+        SpoolRecord spooled = SpoolRecord.decode(record.getPayload());
+        TrackedCorrelationData correlationData = new TrackedCorrelationData("spool-" + position, spooled.getExchange());
+        outstanding.add(position);
+        correlationData.getFuture().addCallback(confirm -> {
+            if (confirm.isAck()) {
+                if (correlationData.getReturnedMessage() != null) {
+                    log.warn("发布日志位置 {} 的消息被退回，不再重发", position);
+                }
+                outstanding.remove(position);
+                confirmed.increment();
+            } else {
+                nacked.increment();
+                failed = true;
+            }
+            window.release();
+        }, ex -> {
+            failed = true;
+            window.release();
+        });
+        try {
+            long start = System.nanoTime();
+            rabbitTemplate.send(spooled.getExchange(), spooled.getRoutingKey(), spooled.getMessage(), correlationData);
+            metrics.exchange(spooled.getExchange()).recordPublish(System.nanoTime() - start);
+        } catch (AmqpException e) {
+            sendFailures.increment();
+            log.warn("发布日志位置 {} 的消息发送失败: {}", position, e.getMessage());
+            correlationData.getFuture().setException(e);
+        }
+        readPosition = record.getNextPosition();
+    }
+
+    /**
+     * 等在途消息全部有结果，再从最早未确认的位置重新发送。
+     */
+    private void rewind() throws InterruptedException {
+        if (!window.tryAcquire(maxInFlight, retryBackoffMs, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        window.release(maxInFlight);
+        if (!outstanding.isEmpty()) {
+            readPosition = outstanding.first();
+            outstanding.clear();
+        }
+        failed = false;
+        log.info("发布日志从位置 {} 重新发送", readPosition);
+        Thread.sleep(retryBackoffMs);
+    }
+
+    private void commit() throws IOException {
+        // 确认回调可能并发移除元素，ceiling 在集合为空时返回 null 而不是抛异常
+        Long first = outstanding.ceiling(Long.MIN_VALUE);
+        journal.commit(first == null ? readPosition : Math.min(first, readPosition));
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (journal == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        drainer.join(TimeUnit.SECONDS.toMillis(5));
+        // 等在途消息确认，未确认的部分在下次启动时重新发送
+        if (window.tryAcquire(maxInFlight, 5, TimeUnit.SECONDS)) {
+            window.release(maxInFlight);
+        }
+        if (!failed) {
+            commit();
+        }
+        journal.force();
+        journal.close();
+        log.info("发布日志已关闭，未确认 {} 字节", journal.getPendingBytes());
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * 本地磁盘上的追加式日志，按固定大小的段文件滚动，段文件以内存映射方式读写。
+ * <p>
+ * 记录的位置是全局递增的逻辑偏移量，段文件名为起始偏移量；每条记录为 4 字节长度、4 字节 CRC32 和内容，
+ * 段尾放不下下一条记录时剩余空间保持为 0，读取时跳到下一个段。已提交位置写入 checkpoint 文件，
+ * 完全位于提交位置之前的段文件会被删除。重新打开时从提交位置扫描并校验 CRC，
+ * 遇到残缺的记录（进程在写入中途退出）即视为日志末尾，其后的空间清零后继续追加。
+ * <p>
+ * 追加由调用方线程在锁内完成；读取只访问 {@link #getWritePosition()} 之前的数据，可以与追加并发，
+ * 但只能由单个线程读取和提交。
+ */
+public class SpoolJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SpoolJournal.class);
+
+    /**
+     * 记录头：长度和 CRC32
+     */
+    static final int HEADER_BYTES = 8;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+
+    private final int segmentBytes;
+
+    private final boolean forceCheckpoint;
+
+    /**
+     * 起始偏移量 -> 段
+     */
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final FileChannel checkpoint;
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 正在追加的段，由锁保护
+     */
+    private Segment active;
+
+    private volatile long writePosition;
+
+    private volatile long commitPosition;
+
+    /**
+     * 打开或创建日志。
+     *
+     * @param directory       日志目录，不存在时创建
+     * @param segmentBytes    新建段文件的大小（字节），单条记录加 8 字节头不能超过该值
+     * @param forceCheckpoint 每次提交后是否把 checkpoint 刷到磁盘
+     * @throws IOException 读写日志文件失败
+     */
+    public SpoolJournal(Path directory, int segmentBytes, boolean forceCheckpoint) throws IOException {
+        if (segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("段文件大小过小: " + segmentBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.forceCheckpoint = forceCheckpoint;
+        this.checkpoint = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer committed = ByteBuffer.allocate(Long.BYTES);
+        commitPosition = checkpoint.read(committed, 0) == Long.BYTES ? committed.getLong(0) : 0;
+        openSegments();
+        recover();
+    }
+
+    /**
+     * 追加一条记录。
+     *
+     * @param payload 记录内容，不能为空
+     * @return 记录的位置
+     * @throws IllegalArgumentException 记录超过段文件大小
+     * @throws IOException              创建新的段文件失败
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        int length = payload.length;
+        if (length == 0 || length > segmentBytes - HEADER_BYTES) {
+            throw new IllegalArgumentException("记录大小 " + length + " 超出范围 1~" + (segmentBytes - HEADER_BYTES));
+        }
+        int offset = (int) (writePosition - active.start);
+        if (offset + HEADER_BYTES + length > active.size) {
+            // 段尾剩余空间保持为 0，读取方据此跳到下一个段
+            active = createSegment(active.start + active.size);
+            offset = 0;
+        }
+        crc.reset();
+        crc.update(payload, 0, length);
+        ByteBuffer buffer = at(active.buffer, offset);
+        buffer.putInt(length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        long position = active.start + offset;
+        writePosition = position + HEADER_BYTES + length;
+        return position;
+    }
+
+    /**
+     * 读取指定位置的记录，位置位于段尾空白处时从下一个段的第一条记录开始读取。
+     *
+     * @param position 读取位置，必须是某条记录的位置、段尾空白处或 {@link #getWritePosition()}
+     * @return 记录，没有更多记录时返回 null
+     */
+    public Record read(long position) {
+        while (position < writePosition) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            if (entry == null) {
+                throw new IllegalStateException("位置 " + position + " 所在的段文件已被删除");
+            }
+            Segment segment = entry.getValue();
+            int offset = (int) (position - segment.start);
+            int length = offset + HEADER_BYTES > segment.size ? 0 : segment.buffer.getInt(offset);
+            if (length == 0) {
+                position = segment.start + segment.size;
+                continue;
+            }
+            ByteBuffer payload = at(segment.buffer, offset + HEADER_BYTES);
+            ((Buffer) payload).limit(offset + HEADER_BYTES + length);
+            return new Record(position, position + HEADER_BYTES + length, payload.slice().asReadOnlyBuffer());
+        }
+        return null;
+    }
+
+    /**
+     * 提交位置之前的记录已处理完，写入 checkpoint 并删除完全位于该位置之前的段文件。
+     *
+     * @param position 新的提交位置，不能小于当前提交位置
+     * @throws IOException 写入 checkpoint 失败
+     */
+    public void commit(long position) throws IOException {
+        if (position <= commitPosition) {
+            return;
+        }
+        ByteBuffer committed = ByteBuffer.allocate(Long.BYTES);
+        committed.putLong(0, position);
+        checkpoint.write(committed, 0);
+        if (forceCheckpoint) {
+            checkpoint.force(false);
+        }
+        commitPosition = position;
+        for (Segment segment : segments.headMap(position).values()) {
+            if (segment.start + segment.size <= position) {
+                segments.remove(segment.start);
+                segment.close();
+                Files.deleteIfExists(segment.path);
+            }
+        }
+    }
+
+    /**
+     * 把尚未删除的段文件内容刷到磁盘。
+     */
+    public void force() {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * @return 下一条记录的写入位置
+     */
+    public long getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * @return 已提交位置
+     */
+    public long getCommitPosition() {
+        return commitPosition;
+    }
+
+    /**
+     * @return 未提交的字节数（含段尾空白）
+     */
+    public long getPendingBytes() {
+        return writePosition - commitPosition;
+    }
+
+    /**
+     * @return 段文件数量
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        checkpoint.close();
+    }
+
+    private void openSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                long start = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                long size = Files.size(path);
+                if (start + size <= commitPosition) {
+                    Files.delete(path);
+                } else {
+                    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    segments.put(start, new Segment(path, start, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 从提交位置开始校验记录，找到日志末尾。
+     */
+    private void recover() throws IOException {
+        if (segments.isEmpty()) {
+            active = createSegment(commitPosition);
+            writePosition = commitPosition;
+            return;
+        }
+        long position = Math.max(commitPosition, segments.firstKey());
+        while (true) {
+            Segment segment = segments.floorEntry(position).getValue();
+            int offset = (int) (position - segment.start);
+            int length = offset + HEADER_BYTES > segment.size ? 0 : segment.buffer.getInt(offset);
+            if (length == 0) {
+                Long next = segments.higherKey(segment.start);
+                if (next == null) {
+                    active = segment;
+                    break;
+                }
+                position = next;
+                continue;
+            }
+            if (length < 0 || offset + HEADER_BYTES + length > segment.size || !checksumMatches(segment, offset, length)) {
+                log.warn("发布日志在位置 {} 处的记录不完整，之后的内容将被丢弃", position);
+                truncate(segment, offset);
+                active = segment;
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        writePosition = position;
+    }
+
+    private boolean checksumMatches(Segment segment, int offset, int length) {
+        byte[] payload = new byte[length];
+        at(segment.buffer, offset + HEADER_BYTES).get(payload);
+        crc.reset();
+        crc.update(payload, 0, length);
+        return (int) crc.getValue() == segment.buffer.getInt(offset + 4);
+    }
+
+    /**
+     * 清零段内 offset 之后的空间并删除其后的段，之后的追加从 offset 开始。
+     */
+    private void truncate(Segment segment, int offset) throws IOException {
+        ByteBuffer buffer = at(segment.buffer, offset);
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+        for (Segment later : segments.tailMap(segment.start, false).values()) {
+            segments.remove(later.start);
+            later.close();
+            Files.deleteIfExists(later.path);
+        }
+    }
+
+    private Segment createSegment(long start) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", start, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // 映射超过文件长度的区域会把文件扩展到 segmentBytes，新增部分全为 0
+        Segment segment = new Segment(path, start, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        segments.put(start, segment);
+        return segment;
+    }
+
+    /**
+     * 返回从 position 开始的独立视图（Java 8 的 ByteBuffer.position 返回 Buffer，这里统一转换）。
+     */
+    private static ByteBuffer at(ByteBuffer buffer, int position) {
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(position);
+        return view;
+    }
+
+    /**
+     * 一条记录：位置、下一条记录的位置和内容。内容是段文件的只读视图，段文件删除后不能再访问。
+     */
+    public static final class Record {
+
+        private final long position;
+
+        private final long nextPosition;
+
+        private final ByteBuffer payload;
+
+        Record(long position, long nextPosition, ByteBuffer payload) {
+            this.position = position;
+            this.nextPosition = nextPosition;
+            this.payload = payload;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public long getNextPosition() {
+            return nextPosition;
+        }
+
+        public ByteBuffer getPayload() {
+            return payload;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+
+        private final long start;
+
+        private final int size;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, long start, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.start = start;
+            this.size = buffer.capacity();
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private void close() throws IOException {
+            // 映射在缓冲区被回收时释放，关闭通道不影响已映射的内容
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.spool;
+
+import com.rabbitmq.client.LongString;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 发布日志中一条记录的内容：交换器、路由键、常用的消息属性和消息体。
+ * <p>
+ * 保存的属性为 content_type、content_encoding、message_id、correlation_id、type、app_id、expiration、
+ * priority、timestamp 和投递模式；消息头的值保存为字符串、长整数或布尔值，其他类型按 toString 保存。
+ */
+final class SpoolRecord {
+
+    private static final byte VERSION = 1;
+
+    private static final byte STRING = 'S';
+
+    private static final byte LONG = 'L';
+
+    private static final byte BOOLEAN = 'B';
+
+    private final String exchange;
+
+    private final String routingKey;
+
+    private final Message message;
+
+    SpoolRecord(String exchange, String routingKey, Message message) {
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.message = message;
+    }
+
+    String getExchange() {
+        return exchange;
+    }
+
+    String getRoutingKey() {
+        return routingKey;
+    }
+
+    Message getMessage() {
+        return message;
+    }
+
+    /**
+     * @return 编码后的记录内容
+     */
+    byte[] encode() {
+        MessageProperties properties = message.getMessageProperties();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.getBody().length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeString(out, exchange);
+            writeString(out, routingKey);
+            writeString(out, properties.getContentType());
+            writeString(out, properties.getContentEncoding());
+            writeString(out, properties.getMessageId());
+            writeString(out, properties.getCorrelationId());
+            writeString(out, properties.getType());
+            writeString(out, properties.getAppId());
+            writeString(out, properties.getExpiration());
+            out.writeInt(properties.getPriority() == null ? -1 : properties.getPriority());
+            out.writeLong(properties.getTimestamp() == null ? -1 : properties.getTimestamp().getTime());
+            out.writeByte(properties.getDeliveryMode() == null ? -1 : MessageDeliveryMode.toInt(properties.getDeliveryMode()));
+            Map<String, Object> headers = properties.getHeaders();
+            out.writeInt(headers.size());
+            for (Map.Entry<String, Object> header : headers.entrySet()) {
+                writeString(out, header.getKey());
+                Object value = header.getValue();
+                if (value instanceof Number && !(value instanceof Double) && !(value instanceof Float)) {
+                    out.writeByte(LONG);
+                    out.writeLong(((Number) value).longValue());
+                } else if (value instanceof Boolean) {
+                    out.writeByte(BOOLEAN);
+                    out.writeBoolean((Boolean) value);
+                } else {
+                    out.writeByte(STRING);
+                    writeString(out, value instanceof LongString
+                            ? new String(((LongString) value).getBytes(), StandardCharsets.UTF_8) : String.valueOf(value));
+                }
+            }
+            out.writeInt(message.getBody().length);
+            out.write(message.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param payload 由 {@link #encode()} 生成的记录内容
+     * @return 解码后的记录，消息体是新复制的数组
+     */
+    static SpoolRecord decode(ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate();
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("不支持的发布日志记录版本: " + version);
+        }
+        String exchange = readString(in);
+        String routingKey = readString(in);
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(readString(in));
+        properties.setContentEncoding(readString(in));
+        properties.setMessageId(readString(in));
+        properties.setCorrelationId(readString(in));
+        properties.setType(readString(in));
+        properties.setAppId(readString(in));
+        properties.setExpiration(readString(in));
+        int priority = in.getInt();
+        properties.setPriority(priority < 0 ? null : priority);
+        long timestamp = in.getLong();
+        properties.setTimestamp(timestamp < 0 ? null : new Date(timestamp));
+        byte deliveryMode = in.get();
+        properties.setDeliveryMode(deliveryMode < 0 ? null : MessageDeliveryMode.fromInt(deliveryMode));
+        int headerCount = in.getInt();
+        for (int i = 0; i < headerCount; i++) {
+            String name = readString(in);
+            byte type = in.get();
+            if (type == LONG) {
+                properties.setHeader(name, in.getLong());
+            } else if (type == BOOLEAN) {
+                properties.setHeader(name, in.get() != 0);
+            } else {
+                properties.setHeader(name, readString(in));
+            }
+        }
+        byte[] body = new byte[in.getInt()];
+        in.get(body);
+        return new SpoolRecord(exchange, routingKey, new Message(body, properties));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.util;
+
+import com.rabbitmq.client.ConfirmListener;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量发送时统计本批次消息的发布确认。只跟踪登记过的发布序号，
+ * 通道上其他发布的确认（通道来自缓存，可能还有之前的发布未确认）不计入。
+ * 确认回调在连接线程上执行，登记和放弃在发送线程上执行。
+ */
+final class BatchConfirmListener implements ConfirmListener {
+
+    private final NavigableSet<Long> outstanding = new ConcurrentSkipListSet<>();
+
+    private final AtomicLong acked = new AtomicLong();
+
+    private final AtomicLong nacked = new AtomicLong();
+
+    /**
+     * 在发布前登记发布序号。
+     *
+     * @param seqNo {@code channel.getNextPublishSeqNo()}
+     */
+    void register(long seqNo) {
+        outstanding.add(seqNo);
+    }
+
+    /**
+     * 发布调用失败，消息没有写出，不会再有确认。
+     *
+     * @param seqNo 登记过的发布序号
+     */
+    void unregister(long seqNo) {
+        outstanding.remove(seqNo);
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        acked.addAndGet(remove(deliveryTag, multiple));
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        nacked.addAndGet(remove(deliveryTag, multiple));
+    }
+
+    private int remove(long deliveryTag, boolean multiple) {
+        if (!multiple) {
+            return outstanding.remove(deliveryTag) ? 1 : 0;
+        }
+        int removed = 0;
+        for (Long seqNo : outstanding.headSet(deliveryTag, true)) {
+            if (outstanding.remove(seqNo)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 不再等待剩余的确认（超时或通道已关闭），这些消息结果未知。
+     *
+     * @return 放弃的消息数
+     */
+    long abandon() {
+        long abandoned = 0;
+        for (Long seqNo : outstanding) {
+            if (outstanding.remove(seqNo)) {
+                abandoned++;
+            }
+        }
+        return abandoned;
+    }
+
+    /**
+     * @return 已发布尚未确认的消息数
+     */
+    int getOutstanding() {
+        return outstanding.size();
+    }
+
+    long getAcked() {
+        return acked.get();
+    }
+
+    long getNacked() {
+        return nacked.get();
+    }
+}
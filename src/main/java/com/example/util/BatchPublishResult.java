@@ -0,0 +1,40 @@
+package com.example.util;
+
+/**
+ * 批量发送的汇总结果。
+ */
+public class BatchPublishResult {
+
+    private final long accepted;
+
+    private final long failed;
+
+    private final long elapsedMillis;
+
+    public BatchPublishResult(long accepted, long failed, long elapsedMillis) {
+        this.accepted = accepted;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return Broker 确认（ack）的消息数量
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * @return 发送失败的消息数量：发布失败、被 nack、等待确认超时或请求体末尾不完整
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return 整个批次的耗时（毫秒）
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
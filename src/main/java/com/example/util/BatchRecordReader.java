@@ -0,0 +1,141 @@
+package com.example.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 从请求体中逐条读取批量消息，直接返回字节，不做字符串解码。
+ * 支持两种格式：
+ * <ul>
+ *     <li>NDJSON：每行一条消息，空行忽略</li>
+ *     <li>长度前缀：4 字节大端长度 + 消息体</li>
+ * </ul>
+ * 单条消息超过上限时抛出 {@link BatchRecordTooLargeException}，在分配缓冲区之前检查；
+ * 长度前缀格式的最后一条消息不完整时抛出 {@link EOFException}。
+ */
+abstract class BatchRecordReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    final int maxRecordBytes;
+
+    BatchRecordReader(int maxRecordBytes) {
+        this.maxRecordBytes = maxRecordBytes;
+    }
+
+    /**
+     * 读取下一条消息。
+     *
+     * @return 消息体，流结束时返回 null
+     * @throws IOException 读取失败
+     */
+    abstract byte[] next() throws IOException;
+
+    static BatchRecordReader of(InputStream in, boolean lengthPrefixed, int maxRecordBytes) {
+        return lengthPrefixed ? new LengthPrefixed(in, maxRecordBytes) : new Ndjson(in, maxRecordBytes);
+    }
+
+    private static final class Ndjson extends BatchRecordReader {
+
+        private final InputStream in;
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private int position;
+
+        private int limit;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+        Ndjson(InputStream in, int maxRecordBytes) {
+            super(maxRecordBytes);
+            this.in = in;
+        }
+
+        @Override
+        byte[] next() throws IOException {
+            while (true) {
+                line.reset();
+                boolean endOfLine = false;
+                while (!endOfLine) {
+                    if (position == limit) {
+                        limit = in.read(buffer, 0, buffer.length);
+                        position = 0;
+                        if (limit == -1) {
+                            limit = 0;
+                            break;
+                        }
+                    }
+                    int end = position;
+                    while (end < limit && buffer[end] != '\n') {
+                        end++;
+                    }
+                    endOfLine = end < limit;
+                    // 行尾的 \r 在下面去掉，这里多留一个字节
+                    if (line.size() + end - position > maxRecordBytes + 1) {
+                        throw new BatchRecordTooLargeException(line.size() + end - position, maxRecordBytes, null);
+                    }
+                    line.write(buffer, position, end - position);
+                    position = endOfLine ? end + 1 : end;
+                }
+                byte[] record = line.toByteArray();
+                int size = record.length;
+                // 兼容 \r\n 换行
+                if (size > 0 && record[size - 1] == '\r') {
+                    size--;
+                }
+                if (size > maxRecordBytes) {
+                    throw new BatchRecordTooLargeException(size, maxRecordBytes, null);
+                }
+                if (size == 0) {
+                    if (!endOfLine) {
+                        return null;
+                    }
+                    continue;
+                }
+                return size == record.length ? record : Arrays.copyOf(record, size);
+            }
+        }
+    }
+
+    private static final class LengthPrefixed extends BatchRecordReader {
+
+        private final DataInputStream in;
+
+        LengthPrefixed(InputStream in, int maxRecordBytes) {
+            super(maxRecordBytes);
+            this.in = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        }
+
+        @Override
+        byte[] next() throws IOException {
+            int first = in.read();
+            if (first == -1) {
+                return null;
+            }
+            int length;
+            try {
+                length = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+            } catch (EOFException e) {
+                throw new EOFException("长度前缀不完整");
+            }
+            // 长度按无符号数解释，超过 2GB 的长度同样按超限处理
+            long recordBytes = length & 0xFFFFFFFFL;
+            if (recordBytes > maxRecordBytes) {
+                throw new BatchRecordTooLargeException(recordBytes, maxRecordBytes, null);
+            }
+            byte[] record = new byte[length];
+            try {
+                in.readFully(record);
+            } catch (EOFException e) {
+                throw new EOFException("消息体不完整，期望 " + length + " 字节");
+            }
+            return record;
+        }
+    }
+}
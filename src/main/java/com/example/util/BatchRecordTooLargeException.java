@@ -0,0 +1,40 @@
+package com.example.util;
+
+/**
+ * 批量发送时单条消息超过 rabbitmq.batch.max-record-bytes，此后的请求体不再读取。
+ */
+public class BatchRecordTooLargeException extends RuntimeException {
+
+    private final long recordBytes;
+
+    private final int maxRecordBytes;
+
+    private final BatchPublishResult result;
+
+    /**
+     * @param recordBytes    消息长度（NDJSON 为超限时已读取的字节数）
+     * @param maxRecordBytes 单条消息的上限
+     * @param result         超限之前已发送消息的汇总，读取阶段为 null
+     */
+    public BatchRecordTooLargeException(long recordBytes, int maxRecordBytes, BatchPublishResult result) {
+        super("消息长度 " + recordBytes + " 字节超过上限 " + maxRecordBytes + " 字节");
+        this.recordBytes = recordBytes;
+        this.maxRecordBytes = maxRecordBytes;
+        this.result = result;
+    }
+
+    public long getRecordBytes() {
+        return recordBytes;
+    }
+
+    public int getMaxRecordBytes() {
+        return maxRecordBytes;
+    }
+
+    /**
+     * @return 超限之前已发送消息的汇总
+     */
+    public BatchPublishResult getResult() {
+        return result;
+    }
+}
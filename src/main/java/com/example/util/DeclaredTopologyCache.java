@@ -0,0 +1,228 @@
+package com.example.util;
+
+import com.rabbitmq.client.ShutdownSignalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DeclaredTopologyCache 记录本进程已经声明成功的队列、交换器和绑定，重复声明直接返回，不再访问 Broker。
+ * <p>
+ * 删除操作会使对应条目（以及依赖它的绑定）失效；连接重建或断开时清空全部条目，
+ * 因为 Broker 可能已经重启，之后的第一次声明会重新发到 Broker。
+ * 自动删除和排他队列可能在 Broker 端自行消失，不做缓存。
+ */
+@Component
+public class DeclaredTopologyCache implements ConnectionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DeclaredTopologyCache.class);
+
+    private final Set<String> queues = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 交换器名称 -> 类型，类型不一致时仍交给 Broker 校验
+     */
+    private final Map<String, String> exchanges = new ConcurrentHashMap<>();
+
+    private final Set<BindingKey> bindings = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private RabbitAdmin rabbitAdmin;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @PostConstruct
+    public void init() {
+        connectionFactory.addConnectionListener(this);
+    }
+
+    /**
+     * 声明队列，已声明过则跳过。
+     *
+     * @param queue 队列
+     */
+    public void declareQueue(Queue queue) {
+        if (!isDeclared(queue)) {
+            rabbitAdmin.declareQueue(queue);
+            remember(queue);
+        }
+    }
+
+    /**
+     * 声明交换器，已声明过同类型的同名交换器则跳过。
+     *
+     * @param exchange 交换器
+     */
+    public void declareExchange(Exchange exchange) {
+        if (!isDeclared(exchange)) {
+            rabbitAdmin.declareExchange(exchange);
+            remember(exchange);
+        }
+    }
+
+    /**
+     * 声明绑定，已声明过则跳过。
+     *
+     * @param binding 绑定
+     */
+    public void declareBinding(Binding binding) {
+        if (!isDeclared(binding)) {
+            rabbitAdmin.declareBinding(binding);
+            remember(binding);
+        }
+    }
+
+    /**
+     * @param declarable 队列、交换器或绑定
+     * @return 是否已声明过
+     */
+    boolean isDeclared(Declarable declarable) {
+        if (declarable instanceof Queue) {
+            return queues.contains(((Queue) declarable).getName());
+        }
+        if (declarable instanceof Exchange) {
+            Exchange exchange = (Exchange) declarable;
+            return exchange.getType().equals(exchanges.get(exchange.getName()));
+        }
+        return declarable instanceof Binding && bindings.contains(new BindingKey((Binding) declarable));
+    }
+
+    /**
+     * 记录一个已经在 Broker 上声明成功的队列、交换器或绑定，供绕过 RabbitAdmin 直接在通道上声明的调用方使用。
+     *
+     * @param declarable 队列、交换器或绑定
+     */
+    void remember(Declarable declarable) {
+        if (declarable instanceof Queue) {
+            Queue queue = (Queue) declarable;
+            if (!queue.isAutoDelete() && !queue.isExclusive()) {
+                queues.add(queue.getName());
+            }
+        } else if (declarable instanceof Exchange) {
+            Exchange exchange = (Exchange) declarable;
+            if (!exchange.isAutoDelete()) {
+                exchanges.put(exchange.getName(), exchange.getType());
+            }
+        } else if (declarable instanceof Binding) {
+            bindings.add(new BindingKey((Binding) declarable));
+        }
+    }
+
+    /**
+     * 删除队列，同时使以它为目标的绑定失效。
+     *
+     * @param queueName 队列名称
+     */
+    public void deleteQueue(String queueName) {
+        queues.remove(queueName);
+        bindings.removeIf(key -> key.destinationQueue && key.destination.equals(queueName));
+        rabbitAdmin.deleteQueue(queueName);
+    }
+
+    /**
+     * 删除交换器，同时使以它为源或目标的绑定失效。
+     *
+     * @param exchangeName 交换器名称
+     */
+    public void deleteExchange(String exchangeName) {
+        exchanges.remove(exchangeName);
+        bindings.removeIf(key -> key.exchange.equals(exchangeName)
+                || (!key.destinationQueue && key.destination.equals(exchangeName)));
+        rabbitAdmin.deleteExchange(exchangeName);
+    }
+
+    /**
+     * 删除绑定。
+     *
+     * @param binding 绑定
+     */
+    public void removeBinding(Binding binding) {
+        bindings.remove(new BindingKey(binding));
+        rabbitAdmin.removeBinding(binding);
+    }
+
+    /**
+     * 清空全部条目，之后的声明都会重新发到 Broker。
+     */
+    public void clear() {
+        queues.clear();
+        exchanges.clear();
+        bindings.clear();
+    }
+
+    /**
+     * @return 当前缓存的条目数（队列、交换器、绑定之和）
+     */
+    public int size() {
+        return queues.size() + exchanges.size() + bindings.size();
+    }
+
+    @Override
+    public void onCreate(Connection connection) {
+        clear();
+    }
+
+    @Override
+    public void onShutDown(ShutdownSignalException signal) {
+        log.debug("连接断开，清空拓扑缓存: {}", signal.getMessage());
+        clear();
+    }
+
+    private static final class BindingKey {
+
+        private final String exchange;
+
+        private final String routingKey;
+
+        private final String destination;
+
+        private final boolean destinationQueue;
+
+        private final Map<String, Object> arguments;
+
+        BindingKey(Binding binding) {
+            this.exchange = binding.getExchange();
+            this.routingKey = binding.getRoutingKey();
+            this.destination = binding.getDestination();
+            this.destinationQueue = binding.isDestinationQueue();
+            this.arguments = binding.getArguments();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BindingKey)) {
+                return false;
+            }
+            BindingKey other = (BindingKey) o;
+            return destinationQueue == other.destinationQueue
+                    && exchange.equals(other.exchange)
+                    && Objects.equals(routingKey, other.routingKey)
+                    && destination.equals(other.destination)
+                    && Objects.equals(arguments, other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(exchange, routingKey, destination, destinationQueue);
+        }
+    }
+}
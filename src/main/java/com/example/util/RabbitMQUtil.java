@@ -1,30 +1,123 @@
 package com.example.util;
 
 
+import com.example.codec.CodecMessageConverter;
+import com.example.codec.PayloadCompressor;
+import com.example.consumer.QueueHandler;
+import com.example.consumer.QueueHandlerRegistry;
+import com.example.metrics.MessagingMetrics;
+import com.example.metrics.QueueDepthSampler;
+import com.example.producer.TrackedCorrelationData;
+import com.example.spool.PublishSpool;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.rabbit.core.RabbitTemplate.ConfirmCallback;
 import org.springframework.amqp.rabbit.core.RabbitTemplate.ReturnCallback;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Component
 public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
 
+    private static final Logger log = LoggerFactory.getLogger(RabbitMQUtil.class);
+
+    /**
+     * basic.qos 的预取数是 16 位无符号整数
+     */
+    private static final int MAX_RECEIVE_BATCH = 65535;
+
+    /**
+     * 取消临时消费者后等待 cancel-ok 回调的最长时间（毫秒）
+     */
+    private static final long CANCEL_TIMEOUT_MS = 5000;
+
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
+    /**
+     * 批量发送时单条消息的最大字节数，超过时拒绝请求，避免按请求体中的长度分配过大的缓冲区
+     */
+    @Value("${rabbitmq.batch.max-record-bytes:16777216}")
+    private int maxRecordBytes = 16 * 1024 * 1024;
+
+    /**
+     * 批量发送时已发布未确认的消息数上限
+     */
+    @Value("${rabbitmq.batch.max-in-flight:10000}")
+    private int batchMaxInFlight = 10000;
+
+    /**
+     * 批量发送时等待发布确认的最长时间（毫秒），超时的消息计为失败
+     */
+    @Value("${rabbitmq.batch.confirm-timeout-ms:30000}")
+    private long batchConfirmTimeoutMs = 30000;
+
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
+    /**
+     * 拉取式接收和声明通过 RabbitAdmin 的模板走共享连接，不受发布连接上的流控影响
+     */
     @Autowired
     private RabbitAdmin rabbitAdmin;
 
+    @Autowired
+    private CodecMessageConverter messageConverter;
+
+    @Autowired
+    private PayloadCompressor payloadCompressor;
+
+    @Autowired
+    private DeclaredTopologyCache topologyCache;
+
+    @Autowired
+    private QueueHandlerRegistry queueHandlerRegistry;
+
+    @Autowired
+    private MessagingMetrics metrics;
+
+    @Autowired
+    private QueueDepthSampler depthSampler;
+
+    @Autowired
+    private PublishSpool publishSpool;
+
     @PostConstruct
     public void init() {
         rabbitTemplate.setConfirmCallback(this);
         rabbitTemplate.setReturnCallback(this);
+        // 发布前按阈值压缩
+        rabbitTemplate.addBeforePublishPostProcessors(payloadCompressor::compress);
     }
 
     /**
@@ -35,7 +128,132 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      * @param message    消息内容
      */
     public void sendMessage(String exchange, String routingKey, Object message) {
-        rabbitTemplate.convertAndSend(exchange, routingKey, message);
+        sendMessage(exchange, routingKey, message, null);
+    }
+
+    /**
+     * 使用指定的编解码器发送消息到指定的交换器和路由键。
+     * 开启发布日志时消息只追加到本地日志即返回，由后台线程发送，发布耗时在后台线程实际发送时记录。
+     *
+     * @param exchange   交换器名称
+     * @param routingKey 路由键
+     * @param message    消息内容
+     * @param codec      编解码器名称（binary、json），为 null 时按交换器配置选择
+     */
+    public void sendMessage(String exchange, String routingKey, Object message, String codec) {
+        long start = System.nanoTime();
+        Message converted = messageConverter.toMessage(exchange, message, codec);
+        if (publishSpool.isEnabled()) {
+            publishSpool.append(exchange, routingKey, converted);
+            return;
+        }
+        rabbitTemplate.send(exchange, routingKey, converted);
+        metrics.exchange(exchange).recordPublish(System.nanoTime() - start);
+    }
+
+    /**
+     * 批量发送消息到指定的交换器和路由键。
+     * 整个批次只借用一次通道，逐条流式读取并发布，不会为每条消息重新获取通道。
+     * 通道处于发布确认模式，成功数为 Broker 确认（ack）的消息数；nack、等待确认超时以及请求体末尾不完整的消息计为失败。
+     * 已发布未确认的消息达到 {@code rabbitmq.batch.max-in-flight} 时先等待确认再继续读取。
+     * 批量发送不设置 mandatory，无法路由的消息与普通发布一样被 Broker 丢弃并确认。
+     *
+     * @param exchange       交换器名称
+     * @param routingKey     路由键
+     * @param in             消息流，NDJSON（每行一条）或长度前缀（4 字节大端长度 + 消息体）格式
+     * @param lengthPrefixed 是否为长度前缀格式
+     * @return 批次汇总结果（成功数、失败数、耗时）
+     * @throws BatchRecordTooLargeException 某条消息超过 rabbitmq.batch.max-record-bytes，之前的消息已发送并确认
+     */
+    public BatchPublishResult sendBatch(String exchange, String routingKey, InputStream in, boolean lengthPrefixed) {
+        long start = System.nanoTime();
+        // 成功数、失败数、写出的消息数、超限消息的长度（没有超限时为 -1）
+        long[] counts = rabbitTemplate.execute(channel -> {
+            AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                    .contentType(lengthPrefixed ? MessageProperties.CONTENT_TYPE_BYTES : MessageProperties.CONTENT_TYPE_JSON)
+                    .deliveryMode(MessageDeliveryMode.toInt(MessageDeliveryMode.PERSISTENT))
+                    .build();
+            AMQP.BasicProperties compressedProperties = properties.builder()
+                    .contentEncoding(payloadCompressor.compressedEncoding(null))
+                    .build();
+            BatchRecordReader reader = BatchRecordReader.of(in, lengthPrefixed, maxRecordBytes);
+            BatchConfirmListener confirms = new BatchConfirmListener();
+            long published = 0;
+            long failed = 0;
+            long oversized = -1;
+            // 开启了发布确认的连接工厂上通道已处于确认模式，重复调用没有影响
+            channel.confirmSelect();
+            channel.addConfirmListener(confirms);
+            try {
+                while (true) {
+                    byte[] body;
+                    try {
+                        body = reader.next();
+                    } catch (EOFException e) {
+                        // 请求体在消息中间结束，这条消息计为失败
+                        log.warn("批量发送到交换器 {} 的请求体不完整: {}", exchange, e.getMessage());
+                        failed++;
+                        break;
+                    } catch (BatchRecordTooLargeException e) {
+                        oversized = e.getRecordBytes();
+                        break;
+                    }
+                    if (body == null) {
+                        break;
+                    }
+                    byte[] compressed = payloadCompressor.compress(body, null);
+                    long seqNo = channel.getNextPublishSeqNo();
+                    confirms.register(seqNo);
+                    try {
+                        if (compressed == null) {
+                            channel.basicPublish(exchange, routingKey, false, properties, body);
+                        } else {
+                            channel.basicPublish(exchange, routingKey, false, compressedProperties, compressed);
+                        }
+                        published++;
+                    } catch (IOException | ShutdownSignalException e) {
+                        // 通道被关闭后剩余消息全部计为失败，但仍读完请求体以便准确统计
+                        confirms.unregister(seqNo);
+                        failed++;
+                        continue;
+                    }
+                    if (confirms.getOutstanding() >= batchMaxInFlight && !awaitConfirms(channel, exchange)) {
+                        failed += confirms.abandon();
+                    }
+                }
+                if (confirms.getOutstanding() > 0 && !awaitConfirms(channel, exchange)) {
+                    failed += confirms.abandon();
+                }
+            } finally {
+                channel.removeConfirmListener(confirms);
+            }
+            return new long[]{confirms.getAcked(), failed + confirms.getNacked(), published, oversized};
+        });
+        metrics.exchange(exchange).recordPublished(counts[2]);
+        BatchPublishResult result = new BatchPublishResult(counts[0], counts[1], (System.nanoTime() - start) / 1_000_000);
+        if (counts[3] >= 0) {
+            throw new BatchRecordTooLargeException(counts[3], maxRecordBytes, result);
+        }
+        return result;
+    }
+
+    /**
+     * 等待通道上已发布的消息全部确认，确认回调在返回前已经执行。
+     *
+     * @return 是否在 rabbitmq.batch.confirm-timeout-ms 内全部确认；超时、被中断或通道已关闭时返回 false
+     */
+    private boolean awaitConfirms(Channel channel, String exchange) {
+        try {
+            channel.waitForConfirms(batchConfirmTimeoutMs);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("批量发送到交换器 {} 等待发布确认超时", exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("批量发送到交换器 {} 等待发布确认失败: {}", exchange, e.getMessage());
+        }
+        return false;
     }
 
     /**
@@ -45,7 +263,138 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      * @return 接收到的消息
      */
     public Object receiveMessage(String queueName) {
-        return rabbitTemplate.receiveAndConvert(queueName);
+        Message message = rabbitAdmin.getRabbitTemplate().receive(queueName);
+        return message == null ? null : messageConverter.fromMessage(payloadCompressor.decompress(message));
+    }
+
+    /**
+     * 从指定队列批量接收消息。
+     * 在一个通道上以 basic.qos(max) 注册临时消费者，Broker 连续推送消息，收满 max 条或超时后取消消费者；
+     * 取消后仍在途的多余消息立即 nack 重新入队。收到的消息交给 writer 写出响应，
+     * 写出成功后用一次 basicAck(lastTag, multiple) 确认整批，写出失败则整批 nack 重新入队。
+     *
+     * @param queueName 队列名称
+     * @param max       最多接收的消息数，取值 1~65535
+     * @param timeoutMs 最长等待时间（毫秒）
+     * @param writer    写出收到的消息，返回后视为已送达
+     * @return 确认的消息数
+     */
+    public int receiveBatch(String queueName, int max, long timeoutMs, BatchWriter writer) {
+        int limit = Math.max(1, Math.min(max, MAX_RECEIVE_BATCH));
+        return rabbitAdmin.getRabbitTemplate().execute(channel -> {
+            BlockingQueue<Delivery> deliveries = new LinkedBlockingQueue<>();
+            CountDownLatch cancelled = new CountDownLatch(1);
+            List<Delivery> batch = new ArrayList<>(limit);
+            String consumerTag = null;
+            boolean consumerStopped = false;
+            try {
+                channel.basicQos(limit);
+                consumerTag = channel.basicConsume(queueName, false, new DefaultConsumer(channel) {
+                    @Override
+                    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                        deliveries.add(new Delivery(envelope, properties, body));
+                    }
+
+                    @Override
+                    public void handleCancelOk(String consumerTag) {
+                        cancelled.countDown();
+                    }
+                });
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+                while (batch.size() < limit) {
+                    Delivery delivery = deliveries.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (delivery == null) {
+                        break;
+                    }
+                    batch.add(delivery);
+                }
+                consumerStopped = cancelConsumer(channel, consumerTag, cancelled);
+                nackAll(channel, deliveries);
+
+                List<ReceivedMessage> messages = new ArrayList<>(batch.size());
+                for (Delivery delivery : batch) {
+                    MessageProperties properties = messagePropertiesConverter.toMessageProperties(
+                            delivery.getProperties(), delivery.getEnvelope(), StandardCharsets.UTF_8.name());
+                    Message message = payloadCompressor.decompress(new Message(delivery.getBody(), properties));
+                    messages.add(new ReceivedMessage(message.getMessageProperties(), message.getBody()));
+                }
+                writer.write(messages);
+                if (!batch.isEmpty()) {
+                    long start = System.nanoTime();
+                    channel.basicAck(batch.get(batch.size() - 1).getEnvelope().getDeliveryTag(), true);
+                    metrics.queue(queueName).recordAck(System.nanoTime() - start);
+                }
+                return batch.size();
+            } catch (Exception e) {
+                // 先停止消费者，避免出错后还有消息投递到这里
+                if (consumerTag != null && !consumerStopped) {
+                    consumerStopped = cancelConsumer(channel, consumerTag, cancelled);
+                }
+                if (channel.isOpen()) {
+                    if (!batch.isEmpty()) {
+                        channel.basicNack(batch.get(batch.size() - 1).getEnvelope().getDeliveryTag(), true, true);
+                        metrics.queue(queueName).recordNack();
+                    }
+                    nackAll(channel, deliveries);
+                }
+                throw e;
+            } finally {
+                if (consumerTag != null && !consumerStopped) {
+                    consumerStopped = cancelConsumer(channel, consumerTag, cancelled);
+                }
+                if (consumerTag != null && !consumerStopped) {
+                    // 消费者可能仍挂在通道上，不能归还到缓存，物理关闭后未确认的消息由 Broker 重新入队
+                    RabbitUtils.setPhysicalCloseRequired(channel, true);
+                } else if (channel.isOpen()) {
+                    // 通道会归还到缓存中复用，恢复为不限制预取
+                    channel.basicQos(0);
+                }
+            }
+        });
+    }
+
+    /**
+     * 取消消费者并等待 cancel-ok，cancel-ok 之前已分发的消息会先于 handleCancelOk 回调。
+     *
+     * @return 是否确认消费者已取消；返回 false 时消费者可能仍在通道上
+     */
+    private static boolean cancelConsumer(Channel channel, String consumerTag, CountDownLatch cancelled) {
+        try {
+            if (!channel.isOpen()) {
+                return true;
+            }
+            channel.basicCancel(consumerTag);
+            return cancelled.await(CANCEL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (IOException | RuntimeException e) {
+            log.warn("取消批量接收的消费者失败: {}", e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 把未交给调用方的消息逐条 nack 重新入队。
+     */
+    private static void nackAll(Channel channel, BlockingQueue<Delivery> deliveries) throws IOException {
+        Delivery extra;
+        while ((extra = deliveries.poll()) != null) {
+            channel.basicNack(extra.getEnvelope().getDeliveryTag(), false, true);
+        }
+    }
+
+    /**
+     * 批量接收时写出消息的回调。
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+
+        /**
+         * @param messages 收到的消息，按投递顺序排列
+         * @throws IOException 写出失败，整批消息会重新入队
+         */
+        void write(List<ReceivedMessage> messages) throws IOException;
     }
 
     /**
@@ -57,17 +406,33 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      * @param correlationData 用于跟踪消息的唯一ID
      */
     public void sendMessageWithConfirmation(String exchange, String routingKey, Object message, CorrelationData correlationData) {
-        rabbitTemplate.convertAndSend(exchange, routingKey, message, correlationData);
+        sendMessageWithConfirmation(exchange, routingKey, message, null, correlationData);
+    }
+
+    /**
+     * 使用指定的编解码器发送消息并获取确认结果
+     *
+     * @param exchange        交换器名称
+     * @param routingKey      路由键
+     * @param message         消息内容
+     * @param codec           编解码器名称（binary、json），为 null 时按交换器配置选择
+     * @param correlationData 用于跟踪消息的唯一ID
+     */
+    public void sendMessageWithConfirmation(String exchange, String routingKey, Object message, String codec,
+                                            CorrelationData correlationData) {
+        long start = System.nanoTime();
+        rabbitTemplate.send(exchange, routingKey, messageConverter.toMessage(exchange, message, codec), correlationData);
+        metrics.exchange(exchange).recordPublish(System.nanoTime() - start);
     }
 
     /**
-     * 获取队列中消息的数量
+     * 获取队列中消息的数量，读取后台采样的缓存值，缓存过期时才访问 Broker
      *
      * @param queueName 队列名称
      * @return 队列中的消息数量
      */
     public int getQueueMessageCount(String queueName) {
-        return rabbitTemplate.execute(channel -> (int) channel.messageCount(queueName));
+        return depthSampler.getMessageCount(queueName);
     }
 
     /**
@@ -87,7 +452,17 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      */
     public void createQueue(String queueName) {
         Queue queue = new Queue(queueName, true); // durable queue
-        rabbitAdmin.declareQueue(queue);
+        topologyCache.declareQueue(queue);
+    }
+
+    /**
+     * 创建队列并挂载处理器，监听容器随即开始消费该队列
+     *
+     * @param handler 队列处理器，队列名称取自 {@link QueueHandler#getQueueName()}
+     */
+    public void createQueue(QueueHandler handler) {
+        createQueue(handler.getQueueName());
+        queueHandlerRegistry.register(handler);
     }
 
     /**
@@ -97,11 +472,11 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      */
     public void createExchange(String exchangeName) {
         TopicExchange exchange = new TopicExchange(exchangeName);
-        rabbitAdmin.declareExchange(exchange);
+        topologyCache.declareExchange(exchange);
     }
 
     /**
-     * 创建绑定
+     * 创建绑定，队列、交换器和绑定已声明过时不再访问 Broker
      *
      * @param queueName    队列名称
      * @param exchangeName 交换器名称
@@ -111,18 +486,192 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
         Queue queue = new Queue(queueName, true);
         TopicExchange exchange = new TopicExchange(exchangeName);
         Binding binding = BindingBuilder.bind(queue).to(exchange).with(routingKey);
-        rabbitAdmin.declareQueue(queue);
-        rabbitAdmin.declareExchange(exchange);
-        rabbitAdmin.declareBinding(binding);
+        topologyCache.declareQueue(queue);
+        topologyCache.declareExchange(exchange);
+        topologyCache.declareBinding(binding);
     }
 
     /**
-     * 删除队列
+     * 创建绑定并为队列挂载处理器，监听容器随即开始消费该队列
+     *
+     * @param handler      队列处理器，队列名称取自 {@link QueueHandler#getQueueName()}
+     * @param exchangeName 交换器名称
+     * @param routingKey   路由键
+     */
+    public void createBinding(QueueHandler handler, String exchangeName, String routingKey) {
+        createBinding(handler.getQueueName(), exchangeName, routingKey);
+        queueHandlerRegistry.register(handler);
+    }
+
+    /**
+     * 按拓扑文档批量声明交换器、队列和绑定。
+     * 未声明过的项在同一个通道上以 nowait 方式连续发出，最后用一次同步调用等待 Broker 处理完毕，
+     * 整个文档只需一次往返。任何一项失败时 Broker 会关闭通道，此时改为逐项同步声明，以给出每一项的结果。
+     *
+     * @param document 拓扑文档
+     * @return 每一项的结果和总耗时
+     */
+    public TopologyResult declareTopology(TopologyDocument document) {
+        long start = System.nanoTime();
+        List<String> types = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Object> specs = new ArrayList<>();
+        document.getExchanges().forEach(spec -> add(types, names, specs, "exchange", spec.getName(), spec));
+        document.getQueues().forEach(spec -> add(types, names, specs, "queue", spec.getName(), spec));
+        document.getBindings().forEach(spec -> add(types, names, specs, "binding",
+                spec.getExchange() + " -> " + spec.getDestination() + " [" + spec.getRoutingKey() + "]", spec));
+
+        TopologyResult.Item[] items = new TopologyResult.Item[specs.size()];
+        Declarable[] declarables = new Declarable[specs.size()];
+        List<Declarable> pending = new ArrayList<>();
+        for (int i = 0; i < specs.size(); i++) {
+            try {
+                declarables[i] = toDeclarable(specs.get(i));
+            } catch (IllegalArgumentException e) {
+                items[i] = new TopologyResult.Item(types.get(i), names.get(i), TopologyResult.Item.FAILED, e.getMessage());
+                continue;
+            }
+            if (topologyCache.isDeclared(declarables[i])) {
+                items[i] = new TopologyResult.Item(types.get(i), names.get(i), TopologyResult.Item.CACHED, null);
+            } else {
+                pending.add(declarables[i]);
+            }
+        }
+
+        boolean pipelined = pending.isEmpty() || declarePipelined(pending);
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] != null) {
+                continue;
+            }
+            String error = null;
+            if (pipelined) {
+                topologyCache.remember(declarables[i]);
+            } else {
+                error = declareOne(declarables[i]);
+            }
+            items[i] = new TopologyResult.Item(types.get(i), names.get(i),
+                    error == null ? TopologyResult.Item.DECLARED : TopologyResult.Item.FAILED, error);
+        }
+        return new TopologyResult(Arrays.asList(items), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void add(List<String> types, List<String> names, List<Object> specs, String type, String name, Object spec) {
+        types.add(type);
+        names.add(name);
+        specs.add(spec);
+    }
+
+    private static Declarable toDeclarable(Object spec) {
+        if (spec instanceof TopologyDocument.ExchangeSpec) {
+            TopologyDocument.ExchangeSpec exchange = (TopologyDocument.ExchangeSpec) spec;
+            requireText(exchange.getName(), "交换器名称不能为空");
+            requireText(exchange.getType(), "交换器类型不能为空");
+            return new CustomExchange(exchange.getName(), exchange.getType(), exchange.isDurable(), exchange.isAutoDelete(),
+                    argumentsOf(exchange.getArguments()));
+        }
+        if (spec instanceof TopologyDocument.QueueSpec) {
+            TopologyDocument.QueueSpec queue = (TopologyDocument.QueueSpec) spec;
+            requireText(queue.getName(), "队列名称不能为空");
+            return new Queue(queue.getName(), queue.isDurable(), queue.isExclusive(), queue.isAutoDelete(),
+                    argumentsOf(queue.getArguments()));
+        }
+        TopologyDocument.BindingSpec binding = (TopologyDocument.BindingSpec) spec;
+        requireText(binding.getExchange(), "绑定的交换器不能为空");
+        requireText(binding.getDestination(), "绑定的目标不能为空");
+        Binding.DestinationType destinationType;
+        if ("queue".equalsIgnoreCase(binding.getDestinationType())) {
+            destinationType = Binding.DestinationType.QUEUE;
+        } else if ("exchange".equalsIgnoreCase(binding.getDestinationType())) {
+            destinationType = Binding.DestinationType.EXCHANGE;
+        } else {
+            throw new IllegalArgumentException("未知的绑定目标类型: " + binding.getDestinationType());
+        }
+        return new Binding(binding.getDestination(), destinationType, binding.getExchange(),
+                binding.getRoutingKey() == null ? "" : binding.getRoutingKey(), argumentsOf(binding.getArguments()));
+    }
+
+    private static void requireText(String value, String message) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static Map<String, Object> argumentsOf(Map<String, Object> arguments) {
+        return arguments == null ? new HashMap<>() : arguments;
+    }
+
+    /**
+     * 在一个通道上连续发出 nowait 声明，再用一次被动声明作为同步屏障：
+     * 通道上的命令按顺序处理，屏障返回说明之前的声明全部成功，任何一项失败都会使通道关闭、屏障抛出异常。
+     *
+     * @return 是否全部成功
+     */
+    private boolean declarePipelined(List<Declarable> declarables) {
+        try {
+            rabbitAdmin.getRabbitTemplate().execute(channel -> {
+                for (Declarable declarable : declarables) {
+                    if (declarable instanceof Exchange) {
+                        Exchange exchange = (Exchange) declarable;
+                        channel.exchangeDeclareNoWait(exchange.getName(), exchange.getType(), exchange.isDurable(),
+                                exchange.isAutoDelete(), exchange.isInternal(), exchange.getArguments());
+                    } else if (declarable instanceof Queue) {
+                        Queue queue = (Queue) declarable;
+                        channel.queueDeclareNoWait(queue.getName(), queue.isDurable(), queue.isExclusive(),
+                                queue.isAutoDelete(), queue.getArguments());
+                    } else {
+                        Binding binding = (Binding) declarable;
+                        if (binding.isDestinationQueue()) {
+                            channel.queueBindNoWait(binding.getDestination(), binding.getExchange(),
+                                    binding.getRoutingKey(), binding.getArguments());
+                        } else {
+                            channel.exchangeBindNoWait(binding.getDestination(), binding.getExchange(),
+                                    binding.getRoutingKey(), binding.getArguments());
+                        }
+                    }
+                }
+                channel.exchangeDeclarePassive("amq.direct");
+                return null;
+            });
+            return true;
+        } catch (AmqpException e) {
+            log.warn("批量声明失败，改为逐项声明: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 同步声明单项。
+     *
+     * @return 失败原因，成功时返回 null
+     */
+    private String declareOne(Declarable declarable) {
+        try {
+            if (declarable instanceof Exchange) {
+                topologyCache.declareExchange((Exchange) declarable);
+            } else if (declarable instanceof Queue) {
+                topologyCache.declareQueue((Queue) declarable);
+            } else {
+                topologyCache.declareBinding((Binding) declarable);
+            }
+            return null;
+        } catch (AmqpException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+        }
+    }
+
+    /**
+     * 删除队列，同时注销其处理器
      *
      * @param queueName 队列名称
      */
     public void deleteQueue(String queueName) {
-        rabbitAdmin.deleteQueue(queueName);
+        queueHandlerRegistry.unregister(queueName);
+        depthSampler.forget(queueName);
+        topologyCache.deleteQueue(queueName);
     }
 
     /**
@@ -131,7 +680,7 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      * @param exchangeName 交换器名称
      */
     public void deleteExchange(String exchangeName) {
-        rabbitAdmin.deleteExchange(exchangeName);
+        topologyCache.deleteExchange(exchangeName);
     }
 
     /**
@@ -145,7 +694,7 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
         Queue queue = new Queue(queueName, true);
         TopicExchange exchange = new TopicExchange(exchangeName);
         Binding binding = BindingBuilder.bind(queue).to(exchange).with(routingKey);
-        rabbitAdmin.removeBinding(binding);
+        topologyCache.removeBinding(binding);
     }
 
     /**
@@ -157,10 +706,16 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      */
     @Override
     public void confirm(CorrelationData correlationData, boolean ack, String cause) {
-        if (ack) {
-            System.out.println("消息已确认: " + correlationData);
+        if (correlationData instanceof TrackedCorrelationData) {
+            TrackedCorrelationData tracked = (TrackedCorrelationData) correlationData;
+            MessagingMetrics.ExchangeMetrics exchangeMetrics = metrics.exchange(tracked.getExchange());
+            exchangeMetrics.recordConfirm(ack);
+            exchangeMetrics.recordConfirmLatency(System.nanoTime() - tracked.getPublishNanos());
         } else {
-            System.out.println("消息未确认: " + correlationData + ", 原因: " + cause);
+            metrics.exchange(MessagingMetrics.UNKNOWN).recordConfirm(ack);
+        }
+        if (!ack) {
+            log.warn("消息未确认: {}, 原因: {}", correlationData, cause);
         }
     }
 
@@ -175,6 +730,7 @@ public class RabbitMQUtil implements ConfirmCallback, ReturnCallback {
      */
     @Override
     public void returnedMessage(Message message, int replyCode, String replyText, String exchange, String routingKey) {
-        System.out.println("返回的消息: " + message + ", 回复码: " + replyCode + ", 回复文本: " + replyText + ", 交换器: " + exchange + ", 路由键: " + routingKey);
+        metrics.exchange(exchange).recordReturn();
+        log.warn("消息被退回, 回复码: {}, 回复文本: {}, 交换器: {}, 路由键: {}", replyCode, replyText, exchange, routingKey);
     }
 }
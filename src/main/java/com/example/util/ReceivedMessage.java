@@ -0,0 +1,118 @@
+package com.example.util;
+
+import com.example.consumer.MessageView;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 批量接收返回的单条消息及其投递信息。
+ * 文本类消息（text/*、JSON、XML）按 contentEncoding 解码为字符串，其余消息体以 Base64 返回。
+ */
+public class ReceivedMessage {
+
+    private final long deliveryTag;
+
+    private final boolean redelivered;
+
+    private final String exchange;
+
+    private final String routingKey;
+
+    private final String messageId;
+
+    private final String correlationId;
+
+    private final String contentType;
+
+    private final String contentEncoding;
+
+    private final Date timestamp;
+
+    private final Map<String, Object> headers;
+
+    private final String body;
+
+    private final String bodyEncoding;
+
+    public ReceivedMessage(MessageProperties properties, byte[] body) {
+        this.deliveryTag = properties.getDeliveryTag();
+        this.redelivered = Boolean.TRUE.equals(properties.getRedelivered());
+        this.exchange = properties.getReceivedExchange();
+        this.routingKey = properties.getReceivedRoutingKey();
+        this.messageId = properties.getMessageId();
+        this.correlationId = properties.getCorrelationId();
+        this.contentType = properties.getContentType();
+        this.contentEncoding = properties.getContentEncoding();
+        this.timestamp = properties.getTimestamp();
+        this.headers = properties.getHeaders();
+        if (isText(contentType)) {
+            this.body = new String(body, MessageView.charsetOf(contentEncoding));
+            this.bodyEncoding = "text";
+        } else {
+            this.body = Base64.getEncoder().encodeToString(body);
+            this.bodyEncoding = "base64";
+        }
+    }
+
+    private static boolean isText(String contentType) {
+        return contentType != null
+                && (contentType.startsWith("text/") || contentType.contains("json") || contentType.contains("xml"));
+    }
+
+    public long getDeliveryTag() {
+        return deliveryTag;
+    }
+
+    public boolean isRedelivered() {
+        return redelivered;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public Map<String, Object> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return 消息体，文本消息为解码后的字符串，其余为 Base64
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return text 或 base64
+     */
+    public String getBodyEncoding() {
+        return bodyEncoding;
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量声明的拓扑文档，包含交换器、队列和绑定，按此顺序声明。
+ * <pre>
+ * {
+ *   "exchanges": [{"name": "tenant1.events", "type": "topic"}],
+ *   "queues":    [{"name": "tenant1.orders", "arguments": {"x-max-length": 100000}}],
+ *   "bindings":  [{"exchange": "tenant1.events", "destination": "tenant1.orders", "routingKey": "order.*"}]
+ * }
+ * </pre>
+ */
+public class TopologyDocument {
+
+    private List<ExchangeSpec> exchanges = new ArrayList<>();
+
+    private List<QueueSpec> queues = new ArrayList<>();
+
+    private List<BindingSpec> bindings = new ArrayList<>();
+
+    public List<ExchangeSpec> getExchanges() {
+        return exchanges;
+    }
+
+    public void setExchanges(List<ExchangeSpec> exchanges) {
+        this.exchanges = exchanges;
+    }
+
+    public List<QueueSpec> getQueues() {
+        return queues;
+    }
+
+    public void setQueues(List<QueueSpec> queues) {
+        this.queues = queues;
+    }
+
+    public List<BindingSpec> getBindings() {
+        return bindings;
+    }
+
+    public void setBindings(List<BindingSpec> bindings) {
+        this.bindings = bindings;
+    }
+
+    /**
+     * 交换器定义，类型默认为 topic，与 createExchange 一致。
+     */
+    public static class ExchangeSpec {
+
+        private String name;
+
+        private String type = "topic";
+
+        private boolean durable = true;
+
+        private boolean autoDelete;
+
+        private Map<String, Object> arguments = new HashMap<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public boolean isDurable() {
+            return durable;
+        }
+
+        public void setDurable(boolean durable) {
+            this.durable = durable;
+        }
+
+        public boolean isAutoDelete() {
+            return autoDelete;
+        }
+
+        public void setAutoDelete(boolean autoDelete) {
+            this.autoDelete = autoDelete;
+        }
+
+        public Map<String, Object> getArguments() {
+            return arguments;
+        }
+
+        public void setArguments(Map<String, Object> arguments) {
+            this.arguments = arguments;
+        }
+    }
+
+    /**
+     * 队列定义，默认持久化，与 createQueue 一致。
+     */
+    public static class QueueSpec {
+
+        private String name;
+
+        private boolean durable = true;
+
+        private boolean exclusive;
+
+        private boolean autoDelete;
+
+        private Map<String, Object> arguments = new HashMap<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean isDurable() {
+            return durable;
+        }
+
+        public void setDurable(boolean durable) {
+            this.durable = durable;
+        }
+
+        public boolean isExclusive() {
+            return exclusive;
+        }
+
+        public void setExclusive(boolean exclusive) {
+            this.exclusive = exclusive;
+        }
+
+        public boolean isAutoDelete() {
+            return autoDelete;
+        }
+
+        public void setAutoDelete(boolean autoDelete) {
+            this.autoDelete = autoDelete;
+        }
+
+        public Map<String, Object> getArguments() {
+            return arguments;
+        }
+
+        public void setArguments(Map<String, Object> arguments) {
+            this.arguments = arguments;
+        }
+    }
+
+    /**
+     * 绑定定义，目标默认为队列，destinationType 为 exchange 时绑定到交换器。
+     */
+    public static class BindingSpec {
+
+        private String exchange;
+
+        private String destination;
+
+        private String destinationType = "queue";
+
+        private String routingKey = "";
+
+        private Map<String, Object> arguments = new HashMap<>();
+
+        public String getExchange() {
+            return exchange;
+        }
+
+        public void setExchange(String exchange) {
+            this.exchange = exchange;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public void setDestination(String destination) {
+            this.destination = destination;
+        }
+
+        public String getDestinationType() {
+            return destinationType;
+        }
+
+        public void setDestinationType(String destinationType) {
+            this.destinationType = destinationType;
+        }
+
+        public String getRoutingKey() {
+            return routingKey;
+        }
+
+        public void setRoutingKey(String routingKey) {
+            this.routingKey = routingKey;
+        }
+
+        public Map<String, Object> getArguments() {
+            return arguments;
+        }
+
+        public void setArguments(Map<String, Object> arguments) {
+            this.arguments = arguments;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.util;
+
+import java.util.List;
+
+/**
+ * 批量声明的结果：汇总数量、总耗时和每一项的结果。
+ */
+public class TopologyResult {
+
+    private final long declared;
+
+    private final long cached;
+
+    private final long failed;
+
+    private final long elapsedMillis;
+
+    private final List<Item> items;
+
+    public TopologyResult(List<Item> items, long elapsedMillis) {
+        this.items = items;
+        this.elapsedMillis = elapsedMillis;
+        this.declared = items.stream().filter(item -> Item.DECLARED.equals(item.getStatus())).count();
+        this.cached = items.stream().filter(item -> Item.CACHED.equals(item.getStatus())).count();
+        this.failed = items.size() - declared - cached;
+    }
+
+    /**
+     * @return 本次在 Broker 上声明成功的数量
+     */
+    public long getDeclared() {
+        return declared;
+    }
+
+    /**
+     * @return 之前已声明过、本次跳过的数量
+     */
+    public long getCached() {
+        return cached;
+    }
+
+    /**
+     * @return 声明失败的数量
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return 整个文档的耗时（毫秒）
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return 每一项的结果，顺序为交换器、队列、绑定，各自保持文档中的顺序
+     */
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * 单项结果。
+     */
+    public static class Item {
+
+        public static final String DECLARED = "declared";
+
+        public static final String CACHED = "cached";
+
+        public static final String FAILED = "failed";
+
+        private final String type;
+
+        private final String name;
+
+        private final String status;
+
+        private final String error;
+
+        public Item(String type, String name, String status, String error) {
+            this.type = type;
+            this.name = name;
+            this.status = status;
+            this.error = error;
+        }
+
+        /**
+         * @return exchange、queue 或 binding
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return 名称，绑定为 "交换器 -> 目标 [路由键]"
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return declared、cached 或 failed
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * @return 失败原因，成功时为 null
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.codec;
+
+import com.example.consumer.MessageView;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.SerializationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 测试类，用于验证二进制编解码器的格式、往返转换，以及 CodecMessageConverter 按交换器和按次选择编解码器、拒绝 Java 序列化的消息体。
+ */
+public class MessageCodecTests {
+
+    /**
+     * 测试编码结果与 MessagePack 规范一致。
+     */
+    @Test
+    public void testBinaryWireFormat() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("a", 1);
+        value.put("b", Arrays.asList(-1, 300, null, true));
+        byte[] expected = {
+                (byte) 0x82,
+                (byte) 0xa1, 'a', 0x01,
+                (byte) 0xa1, 'b', (byte) 0x94, (byte) 0xff, (byte) 0xcd, 0x01, 0x2c, (byte) 0xc0, (byte) 0xc3
+        };
+        assertArrayEquals(expected, MessageCodecs.BINARY.encode(value));
+    }
+
+    /**
+     * 测试各种类型的往返转换，以及解码为指定类型。
+     */
+    @Test
+    public void testBinaryRoundTrip() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("small", -32);
+        value.put("int", Integer.MIN_VALUE);
+        value.put("long", Long.MAX_VALUE);
+        value.put("double", 1.5d);
+        value.put("text", "订单-" + String.join("", Collections.nCopies(40, "x")));
+        value.put("bytes", new byte[300]);
+        value.put("nested", Arrays.asList(Arrays.asList(1, 2), new LinkedHashMap<>()));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> decoded = MessageCodecs.BINARY.decode(MessageCodecs.BINARY.encode(value), Map.class);
+        assertEquals(-32, decoded.get("small"));
+        assertEquals(Integer.MIN_VALUE, decoded.get("int"));
+        assertEquals(Long.MAX_VALUE, decoded.get("long"));
+        assertEquals(1.5d, decoded.get("double"));
+        assertEquals(value.get("text"), decoded.get("text"));
+        assertArrayEquals(new byte[300], (byte[]) decoded.get("bytes"));
+        assertEquals(value.get("nested"), decoded.get("nested"));
+
+        Order order = new Order();
+        order.id = 42;
+        order.items = Arrays.asList("a", "b");
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("id", 42);
+        fields.put("items", order.items);
+        assertArrayEquals(MessageCodecs.BINARY.encode(fields), MessageCodecs.BINARY.encode(order));
+        Order copy = MessageCodecs.BINARY.decode(MessageCodecs.BINARY.encode(order), Order.class);
+        assertEquals(42, copy.id);
+        assertEquals(order.items, copy.items);
+    }
+
+    /**
+     * 测试截断或带多余字节的消息体被拒绝。
+     */
+    @Test
+    public void testBinaryRejectsMalformedBody() {
+        byte[] body = MessageCodecs.BINARY.encode(Arrays.asList("abc", 1));
+        assertThrows(MessageConversionException.class,
+                () -> MessageCodecs.BINARY.decode(Arrays.copyOf(body, body.length - 2), Object.class));
+        assertThrows(MessageConversionException.class,
+                () -> MessageCodecs.BINARY.decode(Arrays.copyOf(body, body.length + 1), Object.class));
+        assertThrows(MessageConversionException.class,
+                () -> MessageCodecs.BINARY.decode(new byte[]{(byte) 0xdd, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff}, Object.class));
+    }
+
+    /**
+     * 测试按交换器、按次选择编解码器，content_type 写入消息并在消费端据此解码。
+     */
+    @Test
+    public void testConverterSelectsCodec() {
+        CodecMessageConverter converter = new CodecMessageConverter();
+        ReflectionTestUtils.setField(converter, "environment",
+                new MockEnvironment().withProperty("rabbitmq.codec.exchanges.jsonExchange", "json"));
+        ReflectionTestUtils.setField(converter, "defaultCodecName", "binary");
+
+        Order order = new Order();
+        order.id = 7;
+        Message json = converter.toMessage("jsonExchange", order, null);
+        assertEquals(JsonMessageCodec.CONTENT_TYPE, json.getMessageProperties().getContentType());
+        Message binary = converter.toMessage("otherExchange", order, null);
+        assertEquals(BinaryMessageCodec.CONTENT_TYPE, binary.getMessageProperties().getContentType());
+        Message text = converter.toMessage("jsonExchange", "hello", null);
+        assertEquals(MessageProperties.CONTENT_TYPE_TEXT_PLAIN, text.getMessageProperties().getContentType());
+        Message forced = converter.toMessage("otherExchange", "hello", "json");
+        assertEquals("\"hello\"", new String(forced.getBody()));
+
+        assertEquals(7, new MessageView(json).payload(Order.class).id);
+        assertEquals(7, ((Map<?, ?>) new MessageView(binary).payload()).get("id"));
+        assertEquals("hello", converter.fromMessage(text));
+        assertSame(MessageCodecs.JSON, MessageCodecs.forContentType("Application/JSON; charset=utf-8"));
+        assertThrows(IllegalArgumentException.class, () -> converter.toMessage("otherExchange", order, "xml"));
+    }
+
+    /**
+     * 测试 Java 序列化的消息体被拒绝，不会反序列化。
+     */
+    @Test
+    public void testConverterRejectsSerializedObject() {
+        CodecMessageConverter converter = new CodecMessageConverter();
+        byte[] body = SerializationUtils.serialize(new ArrayList<>(Arrays.asList("a", "b")));
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_SERIALIZED_OBJECT);
+
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(new Message(body, properties)));
+    }
+
+    public static class Order {
+
+        public long id;
+
+        public List<String> items;
+    }
+}
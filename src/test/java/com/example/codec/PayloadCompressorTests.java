@@ -0,0 +1,123 @@
+package com.example.codec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测试类，用于验证 PayloadCompressor 的压缩阈值、content_encoding 约定，以及与 JDK gzip/zlib 实现的互通。
+ */
+public class PayloadCompressorTests {
+
+    private static final byte[] JSON = repeat("{\"id\":1,\"status\":\"PAID\",\"items\":[1,2,3]}", 100);
+
+    /**
+     * 测试 gzip 压缩结果可以被 GZIPInputStream 读取，解压后恢复原有的 content_encoding。
+     */
+    @Test
+    public void testGzipRoundTrip() throws IOException {
+        PayloadCompressor compressor = compressor(PayloadCompressor.GZIP, 1024);
+        MessageProperties properties = new MessageProperties();
+        properties.setContentEncoding("UTF-8");
+
+        Message compressed = compressor.compress(new Message(JSON.clone(), properties));
+        assertEquals("gzip:UTF-8", compressed.getMessageProperties().getContentEncoding());
+        assertTrue(compressed.getBody().length * 5 < JSON.length);
+        assertArrayEquals(JSON, StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.getBody()))));
+
+        Message restored = compressor.decompress(compressed);
+        assertArrayEquals(JSON, restored.getBody());
+        assertEquals("UTF-8", restored.getMessageProperties().getContentEncoding());
+    }
+
+    /**
+     * 测试 deflate 使用 zlib 格式，并能解压 JDK 产生的 gzip 数据（带文件名等可选头部字段时同样适用）。
+     */
+    @Test
+    public void testDeflateAndForeignGzip() throws IOException {
+        PayloadCompressor compressor = compressor(PayloadCompressor.DEFLATE, 1024);
+        Message compressed = compressor.compress(new Message(JSON.clone(), new MessageProperties()));
+        assertEquals("deflate", compressed.getMessageProperties().getContentEncoding());
+        assertArrayEquals(JSON, StreamUtils.copyToByteArray(new InflaterInputStream(new ByteArrayInputStream(compressed.getBody()))));
+        assertNull(compressor.decompress(compressed).getMessageProperties().getContentEncoding());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(JSON);
+        }
+        assertArrayEquals(JSON, compressor.decompress(out.toByteArray(), PayloadCompressor.GZIP));
+    }
+
+    /**
+     * 测试过小、未开启或压缩后不会变小的消息体原样发布。
+     */
+    @Test
+    public void testSkipsSmallOrIncompressibleBodies() {
+        PayloadCompressor compressor = compressor(PayloadCompressor.GZIP, 1024);
+        Message small = new Message(Arrays.copyOf(JSON, 1000), new MessageProperties());
+        assertSame(small, compressor.compress(small));
+
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+        assertNull(compressor.compress(random, null));
+
+        ReflectionTestUtils.setField(compressor, "enabled", false);
+        assertNull(compressor.compress(JSON, null));
+    }
+
+    /**
+     * 测试损坏的数据原样交给处理器，超过上限的数据被拒绝。
+     */
+    @Test
+    public void testCorruptAndOversizedBodies() {
+        PayloadCompressor compressor = compressor(PayloadCompressor.GZIP, 1024);
+        byte[] compressed = compressor.compress(JSON, null);
+        MessageProperties properties = new MessageProperties();
+        properties.setContentEncoding("gzip");
+        Message truncated = new Message(Arrays.copyOf(compressed, compressed.length - 20), properties);
+        assertSame(truncated, compressor.decompress(truncated));
+
+        ReflectionTestUtils.setField(compressor, "maxInflatedBytes", 1024);
+        assertThrows(MessageConversionException.class, () -> compressor.decompress(compressed, PayloadCompressor.GZIP));
+    }
+
+    private static PayloadCompressor compressor(String algorithm, int minSize) {
+        PayloadCompressor compressor = new PayloadCompressor();
+        ReflectionTestUtils.setField(compressor, "enabled", true);
+        ReflectionTestUtils.setField(compressor, "algorithm", algorithm);
+        ReflectionTestUtils.setField(compressor, "minSize", minSize);
+        ReflectionTestUtils.setField(compressor, "level", 6);
+        ReflectionTestUtils.setField(compressor, "poolSize", 2);
+        ReflectionTestUtils.setField(compressor, "maxInflatedBytes", 1 << 20);
+        compressor.init();
+        return compressor;
+    }
+
+    private static byte[] repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
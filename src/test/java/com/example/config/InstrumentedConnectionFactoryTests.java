@@ -0,0 +1,92 @@
+package com.example.config;
+
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试类，用于验证通道借出按缓存命中、未命中和超时分别计数，发布连接单独统计。
+ */
+public class InstrumentedConnectionFactoryTests {
+
+    private CachingConnectionFactory cachingConnectionFactory;
+
+    private MessagingMetrics metrics;
+
+    @BeforeEach
+    public void setup() {
+        com.rabbitmq.client.ConnectionFactory rabbitConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class,
+                invocation -> invocation.getMethod().getReturnType() == Connection.class ? openConnection() : null);
+        cachingConnectionFactory = new CachingConnectionFactory(rabbitConnectionFactory);
+        metrics = new MessagingMetrics();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cachingConnectionFactory.destroy();
+    }
+
+    /**
+     * 测试归还的通道再次借出时计为命中，缓存为空时计为未命中。
+     */
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        ConnectionFactory connectionFactory = new InstrumentedConnectionFactory(cachingConnectionFactory, "shared", metrics);
+
+        Channel first = connectionFactory.createConnection().createChannel(false);
+        Channel second = connectionFactory.createConnection().createChannel(false);
+        first.close();
+        second.close();
+        connectionFactory.createConnection().createChannel(false).close();
+
+        MessagingMetrics.ChannelCacheMetrics shared = metrics.channelCache("shared");
+        assertEquals(2, shared.getMisses());
+        assertEquals(1, shared.getHits());
+
+        connectionFactory.getPublisherConnectionFactory().createConnection().createChannel(false).close();
+        connectionFactory.getPublisherConnectionFactory().createConnection().createChannel(false).close();
+        MessagingMetrics.ChannelCacheMetrics publisher = metrics.channelCache("publisher");
+        assertEquals(1, publisher.getMisses());
+        assertEquals(1, publisher.getHits());
+        assertEquals(2, shared.getMisses());
+    }
+
+    /**
+     * 测试通道全部借出且等待超时时计为超时。
+     */
+    @Test
+    public void testCheckoutTimeout() {
+        cachingConnectionFactory.setChannelCacheSize(1);
+        cachingConnectionFactory.setChannelCheckoutTimeout(20);
+        ConnectionFactory connectionFactory = new InstrumentedConnectionFactory(cachingConnectionFactory, "shared", metrics);
+
+        connectionFactory.createConnection().createChannel(false);
+        assertThrows(AmqpTimeoutException.class, () -> connectionFactory.createConnection().createChannel(false));
+
+        MessagingMetrics.ChannelCacheMetrics shared = metrics.channelCache("shared");
+        assertEquals(1, shared.getMisses());
+        assertEquals(1, shared.getTimeouts());
+    }
+
+    private static Connection openConnection() throws Exception {
+        Connection connection = mock(Connection.class);
+        when(connection.isOpen()).thenReturn(true);
+        when(connection.createChannel()).thenAnswer(invocation -> {
+            Channel channel = mock(Channel.class);
+            when(channel.isOpen()).thenReturn(true);
+            return channel;
+        });
+        return connection;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.consumer;
+
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 测试类，用于验证批量消费时按处理器报告的进度确认，已处理的消息不会被重复处理，
+ * 没有处理器的消息不会无限重新入队，以及累计确认按队列计入指标。
+ */
+public class BatchListenerTests {
+
+    /**
+     * 测试默认的逐条批量处理在中间失败时，之前的消息不重复处理，只 nack 失败的消息，之后的消息继续处理并累计确认。
+     */
+    @Test
+    public void testResumesAfterReportedFailure() throws Exception {
+        List<String> handled = new ArrayList<>();
+        QueueHandler handler = new QueueHandler() {
+            @Override
+            public String getQueueName() {
+                return "queue1";
+            }
+
+            @Override
+            public void handle(MessageView message) {
+                handled.add(message.text());
+                if ("3".equals(message.text())) {
+                    throw new IllegalStateException("bad message");
+                }
+            }
+        };
+        Channel channel = mock(Channel.class);
+
+        ListenerFixture.of(handler).build().onMessageBatch(messages(5, false), channel);
+
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5"), handled);
+        verify(channel).basicNack(3, false, true);
+        verify(channel, times(1)).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        verify(channel).basicAck(5, true);
+    }
+
+    /**
+     * 测试处理器抛出普通异常时无法得知进度，逐条重试整批；重投的消息再次失败时不再入队。
+     */
+    @Test
+    public void testUnknownProgressFallsBackOneByOne() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        QueueHandler handler = new QueueHandler() {
+            @Override
+            public String getQueueName() {
+                return "queue1";
+            }
+
+            @Override
+            public void handle(MessageView message) {
+            }
+
+            @Override
+            public void handleBatch(List<MessageView> messages) {
+                batchSizes.add(messages.size());
+                for (MessageView message : messages) {
+                    if ("2".equals(message.text())) {
+                        throw new IllegalStateException("bad message");
+                    }
+                }
+            }
+        };
+        Channel channel = mock(Channel.class);
+
+        ListenerFixture.of(handler).build().onMessageBatch(messages(3, true), channel);
+
+        assertEquals(Arrays.asList(3, 1, 1, 1), batchSizes);
+        verify(channel).basicNack(eq(2L), eq(false), eq(false));
+        verify(channel).basicAck(3, true);
+    }
+
+    /**
+     * 测试队列没有处理器时，首次投递的消息重新入队，重投的消息不再入队，单条和批量消费一致。
+     */
+    @Test
+    public void testNoHandlerRequeuesOnlyFirstDelivery() throws Exception {
+        QueueHandler handler = new QueueHandler() {
+            @Override
+            public String getQueueName() {
+                return "queue2";
+            }
+
+            @Override
+            public void handle(MessageView message) {
+            }
+        };
+        QueueMessageListener listener = ListenerFixture.of(handler).build();
+        Channel channel = mock(Channel.class);
+
+        listener.onMessage(messages(1, false).get(0), channel);
+        listener.onMessage(messages(1, true).get(0), channel);
+        listener.onMessageBatch(messages(2, true), channel);
+
+        verify(channel).basicNack(1, false, true);
+        verify(channel, times(2)).basicNack(1, false, false);
+        verify(channel).basicNack(2, false, false);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    /**
+     * 测试一批中包含多个队列的消息时，一次累计确认的耗时计入每个有消息被确认的队列。
+     */
+    @Test
+    public void testAckCountedPerQueue() throws Exception {
+        MessagingMetrics metrics = new MessagingMetrics();
+        QueueMessageListener listener = ListenerFixture.of(handler("queue1"), handler("queue2")).metrics(metrics).build();
+        List<Message> batch = messages(4, false);
+        batch.get(1).getMessageProperties().setConsumerQueue("queue2");
+        batch.get(3).getMessageProperties().setConsumerQueue("queue2");
+        Channel channel = mock(Channel.class);
+
+        listener.onMessageBatch(batch, channel);
+
+        verify(channel, times(1)).basicAck(anyLong(), anyBoolean());
+        verify(channel).basicAck(4, true);
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> queues = (Map<String, Map<String, Object>>) metrics.snapshot().get("queues");
+        assertEquals(1L, queues.get("queue1").get("ackCalls"));
+        assertEquals(1L, queues.get("queue2").get("ackCalls"));
+    }
+
+    private static QueueHandler handler(String queueName) {
+        return new QueueHandler() {
+            @Override
+            public String getQueueName() {
+                return queueName;
+            }
+
+            @Override
+            public void handle(MessageView message) {
+            }
+        };
+    }
+
+    private static List<Message> messages(int count, boolean redelivered) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int tag = 1; tag <= count; tag++) {
+            MessageProperties properties = new MessageProperties();
+            properties.setConsumerQueue("queue1");
+            properties.setDeliveryTag(tag);
+            properties.setRedelivered(redelivered);
+            properties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+            messages.add(new Message(String.valueOf(tag).getBytes(StandardCharsets.UTF_8), properties));
+        }
+        return messages;
+    }
+}
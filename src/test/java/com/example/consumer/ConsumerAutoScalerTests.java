@@ -0,0 +1,62 @@
+package com.example.consumer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 测试类，用于验证 ConsumerAutoScaler 的扩缩容决策：扩容、缩容、连续采样的滞后以及上下限。
+ */
+public class ConsumerAutoScalerTests {
+
+    /**
+     * 每行依次为：场景、平均处理耗时（纳秒）、初始消费者数，之后每两个数为一次采样的积压数和期望的消费者数，
+     * 下一次采样以上一次的期望值作为当前消费者数。配置为 min=2、max=20、目标 5 秒、扩容 2 次、缩容 3 次。
+     */
+    private static final Object[][] CASES = {
+            {"积压超过目标连续两次后扩容到能按时清空的数量", 10_000_000d, 2,
+                    new long[]{5000, 2, 5000, 10, 5000, 10}},
+            {"扩容不超过上限", 10_000_000d, 2,
+                    new long[]{100_000, 2, 100_000, 20, 100_000, 20}},
+            {"没有处理耗时数据时逐个扩容", 0d, 2,
+                    new long[]{100, 2, 100, 3, 100, 3, 100, 4}},
+            {"两次超过目标之间有一次未超过时不扩容", 10_000_000d, 2,
+                    new long[]{5000, 2, 500, 2, 5000, 2, 5000, 10}},
+            {"连续空闲后每次缩容一个", 10_000_000d, 5,
+                    new long[]{0, 5, 0, 5, 0, 4, 0, 4, 0, 4, 0, 3}},
+            {"空闲被积压打断后重新计数", 10_000_000d, 5,
+                    new long[]{0, 5, 0, 5, 500, 5, 0, 5, 0, 5, 0, 4}},
+            {"不低于下限", 10_000_000d, 2,
+                    new long[]{0, 2, 0, 2, 0, 2, 0, 2}},
+            {"启动时超过上限立即收敛到上限", 10_000_000d, 30,
+                    new long[]{0, 20, 0, 20}},
+            {"启动时低于下限立即收敛到下限", 10_000_000d, 1,
+                    new long[]{0, 2}},
+    };
+
+    /**
+     * 逐行执行决策表。
+     */
+    @Test
+    public void testDecide() {
+        ConsumerAutoScaler scaler = new ConsumerAutoScaler();
+        ReflectionTestUtils.setField(scaler, "minConsumers", 2);
+        ReflectionTestUtils.setField(scaler, "maxConsumers", 20);
+        ReflectionTestUtils.setField(scaler, "targetDrainSeconds", 5d);
+        ReflectionTestUtils.setField(scaler, "scaleUpSamples", 2);
+        ReflectionTestUtils.setField(scaler, "scaleDownSamples", 3);
+        for (Object[] row : CASES) {
+            String name = (String) row[0];
+            ConsumerAutoScaler.ScaleState state = new ConsumerAutoScaler.ScaleState();
+            ReflectionTestUtils.setField(state, "avgHandlerNanos", row[1]);
+            int consumers = (Integer) row[2];
+            long[] samples = (long[]) row[3];
+            for (int i = 0; i < samples.length; i += 2) {
+                int desired = scaler.decide(state, consumers, samples[i]);
+                assertEquals((int) samples[i + 1], desired, name + "，第 " + (i / 2 + 1) + " 次采样");
+                consumers = desired;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.consumer;
+
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试类，用于验证去重缓存的键、时间窗口和容量上限，以及监听器对重复消息只确认不处理。
+ */
+public class DeduplicationCacheTests {
+
+    /**
+     * 测试处理成功后同一个队列的同一个 message_id 被识别为重复，其他队列和没有 message_id 的消息不受影响。
+     */
+    @Test
+    public void testDuplicateByMessageId() {
+        for (boolean bloomFilter : new boolean[]{false, true}) {
+            DeduplicationCache cache = cache("", 60000, 1000, bloomFilter);
+            long key = cache.keyOf("queue1", message("m-1", null));
+
+            assertFalse(cache.isDuplicate(key));
+            cache.markProcessed(key);
+            assertTrue(cache.isDuplicate(key));
+            assertTrue(cache.isDuplicate(cache.keyOf("queue1", message("m-1", null))));
+            assertFalse(cache.isDuplicate(cache.keyOf("queue2", message("m-1", null))));
+            assertFalse(cache.isDuplicate(cache.keyOf("queue1", message("m-2", null))));
+
+            long missing = cache.keyOf("queue1", message(null, null));
+            cache.markProcessed(missing);
+            assertFalse(cache.isDuplicate(missing));
+        }
+    }
+
+    /**
+     * 测试配置消息头后按消息头的值去重。
+     */
+    @Test
+    public void testDuplicateByHeader() {
+        DeduplicationCache cache = cache("orderId", 60000, 1000, false);
+        cache.markProcessed(cache.keyOf("queue1", message("m-1", 42)));
+
+        assertTrue(cache.isDuplicate(cache.keyOf("queue1", message("m-2", 42))));
+        assertFalse(cache.isDuplicate(cache.keyOf("queue1", message("m-1", 43))));
+    }
+
+    /**
+     * 测试键至少保留一个窗口，超过两个窗口没有写入后过期。
+     */
+    @Test
+    public void testWindowExpiry() throws InterruptedException {
+        DeduplicationCache cache = cache("", 200, 1000, true);
+        long key = cache.keyOf("queue1", message("m-1", null));
+        cache.markProcessed(key);
+
+        Thread.sleep(250);
+        assertTrue(cache.isDuplicate(key));
+        Thread.sleep(450);
+        assertFalse(cache.isDuplicate(key));
+    }
+
+    /**
+     * 测试写满后按代淘汰最早的键，保留的键数量不超过两代的容量，最近处理的键仍被识别。
+     */
+    @Test
+    public void testCapacityBound() {
+        DeduplicationCache cache = cache("", 60000, 256, false);
+        int total = 10000;
+        for (int i = 0; i < total; i++) {
+            cache.markProcessed(cache.keyOf("queue1", message("m-" + i, null)));
+        }
+        int retained = 0;
+        for (int i = 0; i < total; i++) {
+            if (cache.isDuplicate(cache.keyOf("queue1", message("m-" + i, null)))) {
+                retained++;
+            }
+        }
+        assertTrue(retained <= 2 * 256, "retained " + retained);
+        assertTrue(cache.isDuplicate(cache.keyOf("queue1", message("m-" + (total - 1), null))));
+    }
+
+    /**
+     * 测试监听器对已处理过的重投消息直接确认，不再调用处理器，并记录去重命中。
+     */
+    @Test
+    public void testListenerSkipsDuplicates() throws Exception {
+        QueueHandler handler = mock(QueueHandler.class);
+        when(handler.getQueueName()).thenReturn("queue1");
+        MessagingMetrics metrics = new MessagingMetrics();
+        QueueMessageListener listener = ListenerFixture.of(handler)
+                .metrics(metrics)
+                .deduplicationCache(cache("", 60000, 1000, false))
+                .build();
+        Channel channel = mock(Channel.class);
+
+        Message first = message("m-1", null);
+        first.getMessageProperties().setConsumerQueue("queue1");
+        first.getMessageProperties().setDeliveryTag(1);
+        listener.onMessage(first, channel);
+        Message redelivered = message("m-1", null);
+        redelivered.getMessageProperties().setConsumerQueue("queue1");
+        redelivered.getMessageProperties().setDeliveryTag(2);
+        redelivered.getMessageProperties().setRedelivered(true);
+        listener.onMessage(redelivered, channel);
+
+        verify(handler, times(1)).handle(any(MessageView.class));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        assertEquals(1, metrics.queue("queue1").getDuplicates());
+    }
+
+    private static DeduplicationCache cache(String header, long windowMs, int maxEntries, boolean bloomFilter) {
+        DeduplicationCache cache = new DeduplicationCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "header", header);
+        ReflectionTestUtils.setField(cache, "windowMs", windowMs);
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "bloomFilter", bloomFilter);
+        cache.init();
+        return cache;
+    }
+
+    private static Message message(String messageId, Object header) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(messageId);
+        if (header != null) {
+            properties.setHeader("orderId", header);
+        }
+        return new Message("{}".getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.consumer;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试类，用于验证确认水位的累计确认，以及按键有序处理时同一个键按投递顺序处理。
+ */
+public class KeyOrderedExecutorTests {
+
+    private KeyOrderedExecutor executor;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    /**
+     * 测试乱序完成时只在前面的投递都完成后累计确认，失败的投递单独 nack 且不被累计确认覆盖到末尾。
+     */
+    @Test
+    public void testWatermarkCumulativeAck() throws Exception {
+        Channel channel = mock(Channel.class);
+        AckWatermark watermark = new AckWatermark(channel);
+        for (long tag = 1; tag <= 5; tag++) {
+            watermark.register(tag);
+        }
+
+        assertEquals(-1, watermark.complete(3, true, false));
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        assertTrue(watermark.complete(1, true, false) >= 0);
+        watermark.complete(2, true, false);
+        watermark.complete(5, false, true);
+        watermark.complete(4, true, false);
+
+        InOrder order = inOrder(channel);
+        order.verify(channel).basicAck(1, true);
+        order.verify(channel).basicAck(3, true);
+        order.verify(channel).basicNack(5, false, true);
+        order.verify(channel).basicAck(4, true);
+        assertEquals(0, watermark.getPending());
+    }
+
+    /**
+     * 测试不同的键并行处理时，同一个键的消息仍按投递顺序处理，全部完成后确认到最后一条。
+     */
+    @Test
+    public void testPerKeyOrdering() throws Exception {
+        executor = new KeyOrderedExecutor();
+        ReflectionTestUtils.setField(executor, "enabled", true);
+        ReflectionTestUtils.setField(executor, "threads", 4);
+        ReflectionTestUtils.setField(executor, "keyHeader", "key");
+        ReflectionTestUtils.setField(executor, "keyField", "");
+        executor.init();
+
+        Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        QueueHandler handler = new QueueHandler() {
+            @Override
+            public String getQueueName() {
+                return "queue1";
+            }
+
+            @Override
+            public void handle(MessageView message) throws Exception {
+                TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(200));
+                processed.computeIfAbsent(message.headerAsString("key"), k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(Integer.parseInt(message.text()));
+            }
+        };
+        QueueMessageListener listener = ListenerFixture.of(handler).keyOrderedExecutor(executor).build();
+        Channel channel = mock(Channel.class);
+        when(channel.isOpen()).thenReturn(true);
+
+        int keys = 8;
+        int perKey = 50;
+        for (int i = 0; i < keys * perKey; i++) {
+            listener.onMessage(message(i + 1, "key-" + i % keys, String.valueOf(i / keys)), channel);
+        }
+        AckWatermark watermark = listener.watermark(channel);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (watermark.getPending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, watermark.getPending());
+        assertEquals(keys, processed.size());
+        for (List<Integer> sequence : processed.values()) {
+            assertEquals(perKey, sequence.size());
+            for (int i = 0; i < perKey; i++) {
+                assertEquals(i, sequence.get(i).intValue());
+            }
+        }
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        verify(channel).basicAck(keys * perKey, true);
+    }
+
+    private static Message message(long deliveryTag, String key, String body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue("queue1");
+        properties.setDeliveryTag(deliveryTag);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+        properties.setHeader("key", key);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.consumer;
+
+import com.example.metrics.MessagingMetrics;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+/**
+ * 测试用的 QueueMessageListener 装配。未指定的依赖使用关闭状态的默认实例，
+ * 监听器新增依赖时只需修改这里，不影响各测试类。
+ */
+final class ListenerFixture {
+
+    private final QueueHandler[] handlers;
+
+    private MessagingMetrics metrics = new MessagingMetrics();
+
+    private DeduplicationCache deduplicationCache;
+
+    private KeyOrderedExecutor keyOrderedExecutor = new KeyOrderedExecutor();
+
+    private VirtualThreadExecutor virtualThreadExecutor = new VirtualThreadExecutor();
+
+    private ListenerFixture(QueueHandler... handlers) {
+        this.handlers = handlers;
+        deduplicationCache = new DeduplicationCache();
+        ReflectionTestUtils.setField(deduplicationCache, "enabled", false);
+    }
+
+    /**
+     * @param handlers 注册到处理器注册表中的处理器
+     * @return 使用默认依赖的装配
+     */
+    static ListenerFixture of(QueueHandler... handlers) {
+        return new ListenerFixture(handlers);
+    }
+
+    ListenerFixture metrics(MessagingMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    ListenerFixture deduplicationCache(DeduplicationCache deduplicationCache) {
+        this.deduplicationCache = deduplicationCache;
+        return this;
+    }
+
+    ListenerFixture keyOrderedExecutor(KeyOrderedExecutor keyOrderedExecutor) {
+        this.keyOrderedExecutor = keyOrderedExecutor;
+        return this;
+    }
+
+    ListenerFixture virtualThreadExecutor(VirtualThreadExecutor virtualThreadExecutor) {
+        this.virtualThreadExecutor = virtualThreadExecutor;
+        return this;
+    }
+
+    QueueMessageListener build() {
+        QueueHandlerRegistry registry = new QueueHandlerRegistry();
+        ReflectionTestUtils.setField(registry, "handlerBeans", Arrays.asList(handlers));
+        registry.init();
+        QueueMessageListener listener = new QueueMessageListener();
+        ReflectionTestUtils.setField(listener, "queueHandlerRegistry", registry);
+        ReflectionTestUtils.setField(listener, "metrics", metrics);
+        ReflectionTestUtils.setField(listener, "prefetchController", new AdaptivePrefetchController());
+        ReflectionTestUtils.setField(listener, "deduplicationCache", deduplicationCache);
+        ReflectionTestUtils.setField(listener, "keyOrderedExecutor", keyOrderedExecutor);
+        ReflectionTestUtils.setField(listener, "virtualThreadExecutor", virtualThreadExecutor);
+        return listener;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.consumer;
+
+import com.example.codec.PayloadCompressor;
+import com.example.config.ConsumerConnections;
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.connection.ChannelProxy;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试类，用于验证客户端断开后消息流取消消费者再归还通道，取消没有得到确认时物理关闭通道。
+ */
+public class MessageStreamerTests {
+
+    private final AtomicReference<Consumer> consumer = new AtomicReference<>();
+
+    /**
+     * 关闭通道时当前线程上的物理关闭标记
+     */
+    private final CompletableFuture<Boolean> physicalClose = new CompletableFuture<>();
+
+    private Channel channel;
+
+    private MessageStreamer streamer;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // 缓存连接工厂返回的是通道代理，物理关闭标记只对代理生效
+        channel = mock(ChannelProxy.class);
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.basicConsume(eq("queue1"), eq(false), any(Consumer.class))).thenAnswer(invocation -> {
+            consumer.set(invocation.getArgument(2));
+            return "ctag";
+        });
+        doAnswer(invocation -> {
+            physicalClose.complete(RabbitUtils.isPhysicalCloseRequired());
+            return null;
+        }).when(channel).close();
+        Connection connection = mock(Connection.class);
+        when(connection.createChannel(false)).thenReturn(channel);
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+
+        streamer = new MessageStreamer();
+        ReflectionTestUtils.setField(streamer, "consumerConnections",
+                new ConsumerConnections(Collections.singletonList(connectionFactory), false));
+        ReflectionTestUtils.setField(streamer, "metrics", new MessagingMetrics());
+        ReflectionTestUtils.setField(streamer, "payloadCompressor", new PayloadCompressor());
+        ReflectionTestUtils.setField(streamer, "heartbeatMillis", 20L);
+        ReflectionTestUtils.setField(streamer, "maxStreams", 10);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        streamer.shutdown();
+    }
+
+    /**
+     * 测试收到 cancel-ok 后恢复预取并把通道归还到缓存。
+     */
+    @Test
+    public void testReturnsChannelAfterCancelOk() throws Exception {
+        doAnswer(invocation -> {
+            consumer.get().handleCancelOk(invocation.getArgument(0));
+            return null;
+        }).when(channel).basicCancel(anyString());
+
+        disconnect(streamer.open("queue1", 10));
+
+        assertFalse(physicalClose.get(5, TimeUnit.SECONDS));
+        verify(channel).basicCancel("ctag");
+        verify(channel).basicQos(0);
+    }
+
+    /**
+     * 测试取消消费者失败时不重置预取，物理关闭通道，避免带着消费者的通道回到缓存。
+     */
+    @Test
+    public void testPhysicalCloseWhenCancelFails() throws Exception {
+        doThrow(new IOException("cancel failed")).when(channel).basicCancel(anyString());
+
+        disconnect(streamer.open("queue1", 10));
+
+        assertTrue(physicalClose.get(5, TimeUnit.SECONDS));
+        verify(channel, never()).basicQos(0);
+    }
+
+    /**
+     * 模拟客户端断开：Spring MVC 在连接关闭时调用 emitter 的完成回调。
+     */
+    private static void disconnect(SseEmitter emitter) {
+        ((Runnable) ReflectionTestUtils.getField(emitter, "completionCallback")).run();
+    }
+}
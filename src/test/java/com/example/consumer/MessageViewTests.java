@@ -0,0 +1,125 @@
+package com.example.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.LongString;
+import com.rabbitmq.client.impl.LongStringHelper;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测试类，用于验证 MessageView 的消息体视图、按需解码和 RawHeaderPropertiesConverter 保留原始消息头。
+ */
+public class MessageViewTests {
+
+    /**
+     * 测试消息体视图只读、与消息共享数据，且每次调用的读取位置互不影响。
+     */
+    @Test
+    public void testBodyIsReadOnlyView() {
+        byte[] body = {0, 0, 0, 0, 0, 0, 0, 42};
+        MessageView view = new MessageView(new Message(body, new MessageProperties()));
+
+        ByteBuffer buffer = view.body();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(42, buffer.getLong());
+        assertEquals(0, view.body().position());
+        assertEquals(8, view.bodyLength());
+        assertThrows(ReadOnlyBufferException.class, () -> view.body().put((byte) 1));
+
+        body[7] = 7;
+        assertEquals(7, view.body().getLong());
+    }
+
+    /**
+     * 测试文本按 contentEncoding 解码，解码结果被缓存；非字符集编码按 UTF-8 处理。
+     */
+    @Test
+    public void testTextUsesContentEncoding() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentEncoding("GBK");
+        MessageView view = new MessageView(new Message("队列".getBytes(Charset.forName("GBK")), properties));
+        assertEquals("队列", view.text());
+        assertSame(view.text(), view.text());
+
+        MessageProperties gzip = new MessageProperties();
+        gzip.setContentEncoding("gzip");
+        assertEquals("队列", new MessageView(new Message("队列".getBytes(StandardCharsets.UTF_8), gzip)).text());
+    }
+
+    /**
+     * 测试容器转换后消息头保持 LongString，读取时才解码，嵌套的列表一并解码。
+     */
+    @Test
+    public void testHeadersDecodedOnDemand() {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("tenant", LongStringHelper.asLongString("租户1"));
+        headers.put("retries", 3);
+        headers.put("path", Collections.singletonList(LongStringHelper.asLongString("a")));
+        headers.put(MessageProperties.X_DELAY, 1000);
+        AMQP.BasicProperties source = new AMQP.BasicProperties.Builder()
+                .contentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN)
+                .messageId("m1")
+                .headers(headers)
+                .build();
+
+        MessageProperties properties = new RawHeaderPropertiesConverter().toMessageProperties(
+                source, new Envelope(5, true, "exchange", "key"), StandardCharsets.UTF_8.name());
+        assertTrue(properties.getHeaders().get("tenant") instanceof LongString);
+        assertEquals(Integer.valueOf(1000), properties.getReceivedDelay());
+        assertEquals(5, properties.getDeliveryTag());
+
+        MessageView view = new MessageView(new Message(new byte[0], properties));
+        assertEquals("m1", view.getMessageId());
+        assertEquals("租户1", view.header("tenant"));
+        assertEquals(3, view.header("retries"));
+        assertEquals("a", ((List<?>) view.header("path")).get(0));
+        assertEquals("3", view.headerAsString("retries"));
+        assertEquals(null, view.header("missing"));
+        assertEquals(3, view.headerNames().size());
+    }
+
+    /**
+     * 测试旧处理器通过 LegacyQueueHandler 收到原始消息，批量处理默认逐条转交。
+     */
+    @Test
+    public void testLegacyHandlerAdapter() throws Exception {
+        List<Message> received = new ArrayList<>();
+        LegacyQueueHandler handler = new LegacyQueueHandler() {
+            @Override
+            public String getQueueName() {
+                return "queue1";
+            }
+
+            @Override
+            public void handle(Message message) {
+                received.add(message);
+            }
+        };
+        Message first = new Message(new byte[]{1}, new MessageProperties());
+        Message second = new Message(new byte[]{2}, new MessageProperties());
+
+        handler.handleBatch(Arrays.asList(new MessageView(first), new MessageView(second)));
+
+        assertEquals(2, received.size());
+        assertSame(first, received.get(0));
+        assertSame(second, received.get(1));
+    }
+}
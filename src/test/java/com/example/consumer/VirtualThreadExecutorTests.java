@@ -0,0 +1,146 @@
+package com.example.consumer;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试类，用于验证虚拟线程执行器的每队列并发上限，以及监听器在执行器上并行处理后累计确认。
+ */
+public class VirtualThreadExecutorTests {
+
+    private VirtualThreadExecutor executor;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    /**
+     * 测试队列达到并发上限时提交被阻塞，有任务完成后才继续；单独设置的上限只影响对应的队列。
+     */
+    @Test
+    public void testPerQueueConcurrencyLimit() throws Exception {
+        executor = executor(new MockEnvironment().withProperty("rabbitmq.consumer.queues.queue1.max-concurrency", "2"), 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.execute(view("queue1", 1), blocking);
+        executor.execute(view("queue1", 2), blocking);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch third = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            try {
+                executor.execute(view("queue1", 3), third::countDown);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+        assertFalse(third.await(200, TimeUnit.MILLISECONDS));
+        CountDownLatch other = new CountDownLatch(1);
+        executor.execute(view("queue2", 1), other::countDown);
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> queue1 = (Map<String, Object>) executor.getStats().get("queue1");
+        assertEquals(2, queue1.get("maxConcurrency"));
+        assertEquals(2, queue1.get("inFlight"));
+
+        release.countDown();
+        assertTrue(third.await(5, TimeUnit.SECONDS));
+        submitter.join(5000);
+    }
+
+    /**
+     * 测试监听器把消息交给执行器并行处理，全部完成后确认到最后一条。
+     */
+    @Test
+    public void testListenerDispatch() throws Exception {
+        executor = executor(new MockEnvironment(), 16);
+        AtomicInteger handled = new AtomicInteger();
+        QueueHandler handler = new QueueHandler() {
+            @Override
+            public String getQueueName() {
+                return "queue1";
+            }
+
+            @Override
+            public void handle(MessageView message) throws Exception {
+                Thread.sleep(5);
+                handled.incrementAndGet();
+            }
+        };
+        QueueMessageListener listener = ListenerFixture.of(handler).virtualThreadExecutor(executor).build();
+        Channel channel = mock(Channel.class);
+        when(channel.isOpen()).thenReturn(true);
+
+        int total = 200;
+        for (int i = 1; i <= total; i++) {
+            listener.onMessage(message(i), channel);
+        }
+        AckWatermark watermark = listener.watermark(channel);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (watermark.getPending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, watermark.getPending());
+        assertEquals(total, handled.get());
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        verify(channel).basicAck(total, true);
+    }
+
+    private static VirtualThreadExecutor executor(MockEnvironment environment, int maxConcurrency) {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor();
+        ReflectionTestUtils.setField(executor, "environment", environment);
+        ReflectionTestUtils.setField(executor, "enabled", true);
+        ReflectionTestUtils.setField(executor, "maxConcurrency", maxConcurrency);
+        executor.init();
+        return executor;
+    }
+
+    private static MessageView view(String queue, long deliveryTag) {
+        Message message = message(deliveryTag);
+        message.getMessageProperties().setConsumerQueue(queue);
+        return new MessageView(message);
+    }
+
+    private static Message message(long deliveryTag) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue("queue1");
+        properties.setDeliveryTag(deliveryTag);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+        return new Message(String.valueOf(deliveryTag).getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
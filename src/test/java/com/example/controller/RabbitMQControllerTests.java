@@ -1,25 +1,56 @@
 package com.example.controller;
 
 
+import com.example.consumer.AdaptivePrefetchController;
+import com.example.consumer.MessageStreamer;
+import com.example.consumer.QueueHandler;
+import com.example.metrics.MessagingMetrics;
+import com.example.metrics.QueueDepthSampler;
+import com.example.producer.ConfirmResult;
+import com.example.producer.MessageProducer;
+import com.example.producer.PublisherConfirmTracker;
+import com.example.shard.ShardedQueues;
+import com.example.spool.PublishSpool;
+import com.example.util.BatchPublishResult;
+import com.example.util.BatchRecordTooLargeException;
 import com.example.util.RabbitMQUtil;
+import com.example.util.ReceivedMessage;
+import com.example.util.TopologyResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -33,6 +64,30 @@ public class RabbitMQControllerTests {
     @MockBean
     private RabbitMQUtil rabbitMQUtil; // 模拟 RabbitMQUtil
 
+    @MockBean
+    private PublisherConfirmTracker confirmTracker; // 模拟 PublisherConfirmTracker
+
+    @MockBean
+    private AdaptivePrefetchController prefetchController; // 模拟 AdaptivePrefetchController
+
+    @MockBean
+    private MessagingMetrics metrics; // 模拟 MessagingMetrics
+
+    @MockBean
+    private QueueDepthSampler depthSampler; // 模拟 QueueDepthSampler
+
+    @MockBean
+    private MessageStreamer messageStreamer; // 模拟 MessageStreamer
+
+    @MockBean
+    private ShardedQueues shardedQueues; // 模拟 ShardedQueues
+
+    @MockBean
+    private PublishSpool publishSpool; // 模拟 PublishSpool
+
+    @MockBean
+    private MessageProducer messageProducer; // 模拟 MessageProducer
+
     @InjectMocks
     private RabbitMQController rabbitMQController; // 需要测试的控制器
 
@@ -59,6 +114,21 @@ public class RabbitMQControllerTests {
         System.out.println("创建队列。成功");
     }
 
+    /**
+     * 测试创建队列并立即开始消费的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testCreateQueueAndConsume() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/rabbitmq/createQueue")
+                        .param("queueName", "testQueue")
+                        .param("consume", "true")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        verify(rabbitMQUtil).createQueue(argThat((QueueHandler handler) -> "testQueue".equals(handler.getQueueName())));
+    }
+
     /**
      * 测试创建交换器的端点。
      *
@@ -164,6 +234,77 @@ public class RabbitMQControllerTests {
         System.out.println("发送消息。成功");
     }
 
+    /**
+     * 测试批量发送消息的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testSendBatch() throws Exception {
+        when(rabbitMQUtil.sendBatch(anyString(), anyString(), any(), anyBoolean())).thenReturn(new BatchPublishResult(3, 0, 5));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/rabbitmq/sendBatch")
+                        .param("exchange", "testExchange")
+                        .param("routingKey", "testRoutingKey")
+                        .content("{\"id\":1}\n{\"id\":2}\n{\"id\":3}\n")
+                        .contentType("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.accepted").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.elapsedMillis").value(5));
+        verify(rabbitMQUtil).sendBatch(eq("testExchange"), eq("testRoutingKey"), any(), eq(false));
+    }
+
+    /**
+     * 测试批量发送中单条消息超过上限时返回 413 和之前已发送的数量。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testSendBatchRecordTooLarge() throws Exception {
+        when(rabbitMQUtil.sendBatch(anyString(), anyString(), any(), anyBoolean()))
+                .thenThrow(new BatchRecordTooLargeException(1L << 31, 1024, new BatchPublishResult(2, 0, 1)));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/rabbitmq/sendBatch")
+                        .param("exchange", "testExchange")
+                        .param("routingKey", "testRoutingKey")
+                        .content(new byte[]{(byte) 0x80, 0, 0, 0})
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(MockMvcResultMatchers.status().isPayloadTooLarge())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.maxRecordBytes").value(1024))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.accepted").value(2));
+    }
+
+    /**
+     * 测试批量声明拓扑的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testDeclareTopology() throws Exception {
+        TopologyResult result = new TopologyResult(Arrays.asList(
+                new TopologyResult.Item("exchange", "testExchange", TopologyResult.Item.DECLARED, null),
+                new TopologyResult.Item("queue", "testQueue", TopologyResult.Item.CACHED, null),
+                new TopologyResult.Item("binding", "testExchange -> testQueue [testRoutingKey]", TopologyResult.Item.FAILED, "NOT_FOUND")), 7);
+        when(rabbitMQUtil.declareTopology(any())).thenReturn(result);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/rabbitmq/declareTopology")
+                        .content("{\"exchanges\":[{\"name\":\"testExchange\",\"type\":\"direct\"}],"
+                                + "\"queues\":[{\"name\":\"testQueue\",\"arguments\":{\"x-max-length\":100}}],"
+                                + "\"bindings\":[{\"exchange\":\"testExchange\",\"destination\":\"testQueue\",\"routingKey\":\"testRoutingKey\"}]}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.declared").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.cached").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[2].error").value("NOT_FOUND"));
+        verify(rabbitMQUtil).declareTopology(argThat(document -> document.getExchanges().size() == 1
+                && "direct".equals(document.getExchanges().get(0).getType())
+                && document.getQueues().get(0).isDurable()
+                && Integer.valueOf(100).equals(document.getQueues().get(0).getArguments().get("x-max-length"))
+                && "queue".equals(document.getBindings().get(0).getDestinationType())));
+    }
+
     /**
      * 测试发送消息并获取确认结果的端点。
      *
@@ -262,4 +403,184 @@ public class RabbitMQControllerTests {
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.content().string("Received message: 1111111"));
     }
+
+    /**
+     * 测试批量接收消息的端点，消息写入响应后才返回。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testReceiveBatch() throws Exception {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(7);
+        properties.setReceivedRoutingKey("testRoutingKey");
+        properties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+        properties.setContentEncoding("UTF-8");
+        MessageProperties binary = new MessageProperties();
+        binary.setDeliveryTag(8);
+        binary.setContentType(MessageProperties.CONTENT_TYPE_BYTES);
+        doAnswer(invocation -> {
+            RabbitMQUtil.BatchWriter writer = invocation.getArgument(3);
+            writer.write(Arrays.asList(
+                    new ReceivedMessage(properties, "hello".getBytes(StandardCharsets.UTF_8)),
+                    new ReceivedMessage(binary, new byte[]{1, 2, 3})));
+            return 2;
+        }).when(rabbitMQUtil).receiveBatch(anyString(), anyInt(), anyLong(), any());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/rabbitmq/receiveBatch")
+                        .param("queueName", "testQueue")
+                        .param("max", "10")
+                        .param("timeoutMs", "200"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].deliveryTag").value(7))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].routingKey").value("testRoutingKey"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].body").value("hello"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].bodyEncoding").value("base64"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].body").value("AQID"));
+        verify(rabbitMQUtil).receiveBatch(eq("testQueue"), eq(10), eq(200L), any());
+    }
+
+    /**
+     * 测试以 Server-Sent Events 推送消息的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testStream() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        when(messageStreamer.open(anyString(), anyInt())).thenReturn(emitter);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/rabbitmq/stream")
+                        .param("queueName", "testQueue")
+                        .param("prefetch", "5"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        emitter.send(SseEmitter.event().id("1").name("message").data("{\"body\":\"hello\"}"));
+        emitter.complete();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("event:message")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("data:{\"body\":\"hello\"}")));
+        verify(messageStreamer).open("testQueue", 5);
+    }
+
+    /**
+     * 测试一次获取所有队列积压的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testGetQueueMessageCounts() throws Exception {
+        Map<String, Object> queue1 = new LinkedHashMap<>();
+        queue1.put("messageCount", 42);
+        queue1.put("consumerCount", 3);
+        queue1.put("ratePerSecond", -5.0);
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("queue1", queue1);
+        when(depthSampler.snapshot()).thenReturn(counts);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/rabbitmq/messageCounts"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.queue1.messageCount").value(42))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.queue1.consumerCount").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.queue1.ratePerSecond").value(-5.0));
+    }
+
+    /**
+     * 测试获取发布确认统计的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testGetConfirmStats() throws Exception {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("outstanding", 2);
+        stats.put("maxInFlight", 1000);
+        when(confirmTracker.getStats()).thenReturn(stats);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/rabbitmq/confirmStats"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.outstanding").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.maxInFlight").value(1000));
+    }
+
+    /**
+     * 测试获取发布日志统计的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testGetSpoolStats() throws Exception {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.put("pendingBytes", 128);
+        when(publishSpool.getStats()).thenReturn(stats);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/rabbitmq/spool"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.enabled").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.pendingBytes").value(128));
+    }
+
+    /**
+     * 测试非阻塞发送消息的端点，确认到达后异步返回确认结果。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testSendMessageAsync() throws Exception {
+        CompletableFuture<ConfirmResult> confirm = new CompletableFuture<>();
+        when(messageProducer.publishAsync("testExchange", "testRoutingKey", "hello")).thenReturn(confirm);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/rabbitmq/sendAsync")
+                        .param("exchange", "testExchange")
+                        .param("routingKey", "testRoutingKey")
+                        .param("message", "hello"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        confirm.complete(new ConfirmResult("c-1", true, null, null, 2000));
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.correlationId").value("c-1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.ack").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.returned").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.latencyMicros").value(2));
+    }
+
+    /**
+     * 测试获取自适应预取数的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testGetPrefetch() throws Exception {
+        Map<String, Object> queue1 = new LinkedHashMap<>();
+        queue1.put("prefetch", 12);
+        Map<String, Object> prefetch = new LinkedHashMap<>();
+        prefetch.put("queue1", queue1);
+        when(prefetchController.getPrefetch()).thenReturn(prefetch);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/rabbitmq/prefetch"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.queue1.prefetch").value(12));
+    }
+
+    /**
+     * 测试以 Prometheus 文本格式获取指标的端点。
+     *
+     * @throws Exception 如果请求处理失败
+     */
+    @Test
+    public void testGetPrometheusMetrics() throws Exception {
+        when(metrics.prometheus()).thenReturn("rabbitmq_published_total{exchange=\"testExchange\"} 1\n");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/rabbitmq/metrics/prometheus"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("text/plain"))
+                .andExpect(MockMvcResultMatchers.content().string("rabbitmq_published_total{exchange=\"testExchange\"} 1\n"));
+    }
 }
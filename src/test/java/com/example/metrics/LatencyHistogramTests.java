@@ -0,0 +1,42 @@
+package com.example.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测试类，用于验证 LatencyHistogram 的分桶和分位数计算。
+ */
+public class LatencyHistogramTests {
+
+    /**
+     * 测试每个值都落在上界不小于它、相对误差不超过 1/8 的桶中。
+     */
+    @Test
+    public void testBucketBounds() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(value));
+            assertTrue(upper >= value, "桶上界小于记录值: " + value);
+            assertTrue(upper - value <= Math.max(1, value / 8), "桶过宽: " + value);
+        }
+    }
+
+    /**
+     * 测试分位数、次数、总和与最大值。
+     */
+    @Test
+    public void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500_000L, histogram.getSum());
+        assertEquals(1_000_000, histogram.getMax());
+        long p50 = histogram.getValueAtQuantile(0.5);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 9 / 8, "p50=" + p50);
+        long p99 = histogram.getValueAtQuantile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99=" + p99);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测试类，用于验证 MessagingMetrics 单独记录的交换器数量有上限。
+ */
+public class MessagingMetricsTests {
+
+    /**
+     * 测试达到上限后新出现的交换器计入 other，已记录的交换器不受影响。
+     */
+    @Test
+    public void testExchangeLimit() {
+        MessagingMetrics metrics = new MessagingMetrics();
+        ReflectionTestUtils.setField(metrics, "maxExchanges", 3);
+        MessagingMetrics.ExchangeMetrics first = metrics.exchange("ex-0");
+        for (int i = 0; i < 100; i++) {
+            metrics.exchange("ex-" + i).recordPublish(1000);
+        }
+
+        assertSame(first, metrics.exchange("ex-0"));
+        assertSame(metrics.exchange(MessagingMetrics.OTHER), metrics.exchange("ex-99"));
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> exchanges = (Map<String, Map<String, Object>>) metrics.snapshot().get("exchanges");
+        assertEquals(4, exchanges.size());
+        assertEquals(97L, exchanges.get(MessagingMetrics.OTHER).get("published"));
+        assertTrue(metrics.prometheus().contains("rabbitmq_published_total{exchange=\"other\"} 97"));
+    }
+}
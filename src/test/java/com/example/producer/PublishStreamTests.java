@@ -0,0 +1,152 @@
+package com.example.producer;
+
+import com.example.util.BatchPublishResult;
+import com.example.util.RabbitMQUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 测试类，用于验证流式发布的在途上限、按需取数以及确认结果的输出。
+ */
+public class PublishStreamTests {
+
+    private final BlockingQueue<CorrelationData> published = new LinkedBlockingQueue<>();
+
+    private PublisherConfirmTracker confirmTracker;
+
+    private RabbitMQUtil rabbitMQUtil;
+
+    private MessageProducer producer;
+
+    @BeforeEach
+    public void setup() {
+        confirmTracker = new PublisherConfirmTracker();
+        ReflectionTestUtils.setField(confirmTracker, "maxInFlight", 100);
+        ReflectionTestUtils.setField(confirmTracker, "acquireTimeoutMs", 1000L);
+        confirmTracker.init();
+        rabbitMQUtil = mock(RabbitMQUtil.class);
+        doAnswer(invocation -> {
+            published.add(invocation.getArgument(3));
+            return null;
+        }).when(rabbitMQUtil).sendMessageWithConfirmation(anyString(), anyString(), any(), any(CorrelationData.class));
+        producer = new MessageProducer();
+        ReflectionTestUtils.setField(producer, "rabbitMQUtil", rabbitMQUtil);
+        ReflectionTestUtils.setField(producer, "confirmTracker", confirmTracker);
+        ReflectionTestUtils.setField(producer, "streamThreads", 2);
+        producer.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        producer.destroy();
+    }
+
+    /**
+     * 测试在途消息数不超过 maxConcurrency，数据源只在有空闲名额时被读取，确认逐条输出并汇总。
+     */
+    @Test
+    public void testBoundedConcurrency() throws Exception {
+        int total = 50;
+        int maxConcurrency = 4;
+        AtomicInteger pulled = new AtomicInteger();
+        Iterator<Integer> source = IntStream.range(0, total).peek(i -> pulled.incrementAndGet()).iterator();
+        List<ConfirmResult> results = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<BatchPublishResult> summary = producer.publishAll("ex", "rk", source, maxConcurrency, results::add);
+
+        int confirmed = 0;
+        while (confirmed < total) {
+            CorrelationData correlationData = published.poll(5, TimeUnit.SECONDS);
+            assertNotNull(correlationData, "confirmed " + confirmed);
+            assertTrue(confirmTracker.getOutstanding() <= maxConcurrency);
+            assertTrue(pulled.get() <= confirmed + maxConcurrency + 1, "pulled " + pulled.get());
+            // 每隔 10 条 nack 一条
+            correlationData.getFuture().set(new CorrelationData.Confirm(confirmed % 10 != 0, confirmed % 10 != 0 ? null : "rejected"));
+            confirmed++;
+        }
+
+        BatchPublishResult result = summary.get(5, TimeUnit.SECONDS);
+        assertEquals(45, result.getAccepted());
+        assertEquals(5, result.getFailed());
+        assertEquals(total, results.size());
+        assertEquals(0, confirmTracker.getOutstanding());
+    }
+
+    /**
+     * 测试发布失败的消息以 nack 输出且释放名额，后续消息继续发布。
+     */
+    @Test
+    public void testPublishFailure() throws Exception {
+        doThrow(new AmqpConnectException(new RuntimeException("connection refused")))
+                .when(rabbitMQUtil).sendMessageWithConfirmation(anyString(), anyString(), eq("bad"), any(CorrelationData.class));
+        List<Object> messages = new ArrayList<>();
+        messages.add("good-1");
+        messages.add("bad");
+        messages.add("good-2");
+        List<ConfirmResult> results = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<BatchPublishResult> summary = producer.publishAll("ex", "rk", messages.iterator(), 1, results::add);
+        for (int i = 0; i < 2; i++) {
+            CorrelationData correlationData = published.poll(5, TimeUnit.SECONDS);
+            assertNotNull(correlationData);
+            correlationData.getFuture().set(new CorrelationData.Confirm(true, null));
+        }
+
+        BatchPublishResult result = summary.get(5, TimeUnit.SECONDS);
+        assertEquals(2, result.getAccepted());
+        assertEquals(1, result.getFailed());
+        assertEquals(3, results.size());
+        assertFalse(results.get(1).isAck());
+    }
+
+    /**
+     * 测试全局在途窗口已满时不阻塞调用方，窗口释放后继续发布。
+     */
+    @Test
+    public void testWaitsForGlobalWindow() throws Exception {
+        List<CorrelationData> occupied = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            confirmTracker.publish("ex", null, occupied::add);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<ConfirmResult> confirm = producer.publishAsync("ex", "rk", "hello");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        Thread.sleep(50);
+        assertTrue(published.isEmpty());
+        assertFalse(confirm.isDone());
+
+        // 其他发布收到确认释放窗口后，重试的发布继续进行
+        occupied.get(0).getFuture().set(new CorrelationData.Confirm(true, null));
+        CorrelationData correlationData = published.poll(5, TimeUnit.SECONDS);
+        assertNotNull(correlationData);
+        correlationData.getFuture().set(new CorrelationData.Confirm(true, null));
+        assertTrue(confirm.get(5, TimeUnit.SECONDS).isAck());
+    }
+}
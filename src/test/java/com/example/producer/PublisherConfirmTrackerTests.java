@@ -0,0 +1,121 @@
+package com.example.producer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测试类，用于验证 PublisherConfirmTracker 的在途窗口在各种确认结果下都会释放，以及确认统计。
+ */
+public class PublisherConfirmTrackerTests {
+
+    private final List<CorrelationData> published = new ArrayList<>();
+
+    private PublisherConfirmTracker tracker;
+
+    @BeforeEach
+    public void setup() {
+        tracker = new PublisherConfirmTracker();
+        ReflectionTestUtils.setField(tracker, "maxInFlight", 2);
+        ReflectionTestUtils.setField(tracker, "acquireTimeoutMs", 50L);
+        tracker.init();
+    }
+
+    /**
+     * 测试收到 ack 后释放许可，结果为 ack 并计入统计。
+     */
+    @Test
+    public void testReleaseOnAck() {
+        CompletableFuture<ConfirmResult> result = tracker.publish("ex", "id-1", published::add);
+        assertEquals(1, tracker.getOutstanding());
+        assertFalse(result.isDone());
+
+        published.get(0).getFuture().set(new CorrelationData.Confirm(true, null));
+
+        assertEquals(0, tracker.getOutstanding());
+        assertTrue(result.join().isAck());
+        assertEquals("id-1", result.join().getCorrelationId());
+        assertEquals(1L, tracker.getStats().get("acked"));
+    }
+
+    /**
+     * 测试收到 nack 后释放许可，结果带有 nack 原因。
+     */
+    @Test
+    public void testReleaseOnNack() {
+        CompletableFuture<ConfirmResult> result = tracker.publish("ex", null, published::add);
+
+        published.get(0).getFuture().set(new CorrelationData.Confirm(false, "rejected"));
+
+        assertEquals(0, tracker.getOutstanding());
+        assertFalse(result.join().isAck());
+        assertEquals("rejected", result.join().getCause());
+        assertEquals(1L, tracker.getStats().get("nacked"));
+    }
+
+    /**
+     * 测试发布回调同步抛出异常时释放许可，Future 以该异常完成。
+     */
+    @Test
+    public void testReleaseOnPublishException() {
+        CompletableFuture<ConfirmResult> result = tracker.publish("ex", null, correlationData -> {
+            throw new AmqpConnectException(new RuntimeException("connection refused"));
+        });
+
+        assertEquals(0, tracker.getOutstanding());
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    /**
+     * 测试窗口已满时阻塞发布等待超时后抛出 AmqpTimeoutException，不等待的发布立即返回 null；确认后恢复发布。
+     */
+    @Test
+    public void testTimeoutWhenWindowFull() {
+        tracker.publish("ex", null, published::add);
+        tracker.publish("ex", null, published::add);
+
+        assertThrows(AmqpTimeoutException.class, () -> tracker.publish("ex", null, published::add));
+        assertNull(tracker.tryPublish("ex", null, published::add));
+        assertEquals(2, published.size());
+        assertEquals(2, tracker.getOutstanding());
+
+        published.get(0).getFuture().set(new CorrelationData.Confirm(true, null));
+        tracker.publish("ex", null, published::add);
+        assertEquals(3, published.size());
+    }
+
+    /**
+     * 测试被退回的消息仍以 ack 确认，结果标记为退回并计入退回数量。
+     */
+    @Test
+    public void testReturnedCount() {
+        CompletableFuture<ConfirmResult> returned = tracker.publish("ex", null, published::add);
+        CompletableFuture<ConfirmResult> routed = tracker.publish("ex", null, published::add);
+
+        // Broker 先发送 basic.return，再发送 ack
+        published.get(0).setReturnedMessage(new Message(new byte[0], new MessageProperties()));
+        published.get(0).getFuture().set(new CorrelationData.Confirm(true, null));
+        published.get(1).getFuture().set(new CorrelationData.Confirm(true, null));
+
+        assertTrue(returned.join().isAck());
+        assertTrue(returned.join().isReturned());
+        assertFalse(routed.join().isReturned());
+        assertEquals(1L, tracker.getStats().get("returned"));
+        assertEquals(2L, tracker.getStats().get("acked"));
+    }
+}
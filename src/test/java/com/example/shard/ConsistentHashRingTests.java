@@ -0,0 +1,50 @@
+package com.example.shard;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测试类，用于验证一致性哈希环的分布均匀性，以及分片数变化时只有少量键移动。
+ */
+public class ConsistentHashRingTests {
+
+    private static final int KEYS = 100_000;
+
+    /**
+     * 测试键在各分片间大致均匀分布，且同一个键总是落在同一个分片。
+     */
+    @Test
+    public void testBalancedAndStable() {
+        ConsistentHashRing ring = new ConsistentHashRing("queue1", 8, 512);
+        int[] counts = new int[8];
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.shardOf("order-" + i)]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - KEYS / 8) < KEYS / 8 * 0.15, "分片负载偏差过大: " + count);
+        }
+        assertEquals(ring.shardOf("order-42"), new ConsistentHashRing("queue1", 8, 512).shardOf("order-42"));
+    }
+
+    /**
+     * 测试分片数从 4 增加到 5 时约 1/5 的键移动，且都移到新增的分片；减回 4 时恢复原来的分布。
+     */
+    @Test
+    public void testResizeMovesOnlyNewShardKeys() {
+        ConsistentHashRing four = new ConsistentHashRing("queue1", 4, 512);
+        ConsistentHashRing five = new ConsistentHashRing("queue1", 5, 512);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "order-" + i;
+            int before = four.shardOf(key);
+            int after = five.shardOf(key);
+            if (before != after) {
+                assertEquals(4, after);
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - KEYS / 5) < KEYS / 5 * 0.2, "移动的键数量异常: " + moved);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 测试类，用于验证发布日志的追加、段文件滚动、提交删除段文件，以及重新打开后的恢复。
+ */
+public class SpoolJournalTests {
+
+    private static final int SEGMENT_BYTES = 64;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 测试记录按追加顺序读出，放不下的记录滚动到新段文件，提交后删除已读完的段文件。
+     */
+    @Test
+    public void testAppendReadAndCommit() throws Exception {
+        try (SpoolJournal journal = new SpoolJournal(directory, SEGMENT_BYTES, false)) {
+            for (int i = 0; i < 6; i++) {
+                journal.append(payload(i));
+            }
+            // 每条记录 8 字节头加 20 字节内容，每个段文件放 2 条
+            assertEquals(3, journal.getSegmentCount());
+            assertEquals(6, readAll(journal, 0).size());
+
+            SpoolJournal.Record third = journal.read(journal.read(journal.read(0).getNextPosition()).getNextPosition());
+            assertArrayEquals(payload(2), bytes(third.getPayload()));
+            journal.commit(third.getPosition());
+            assertEquals(2, journal.getSegmentCount());
+            assertEquals(4, readAll(journal, third.getPosition()).size());
+        }
+    }
+
+    /**
+     * 测试重新打开日志后从提交位置继续读取，并在原有记录之后继续追加。
+     */
+    @Test
+    public void testReopenFromCheckpoint() throws Exception {
+        long committed;
+        try (SpoolJournal journal = new SpoolJournal(directory, SEGMENT_BYTES, true)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(payload(i));
+            }
+            committed = journal.read(journal.read(0).getNextPosition()).getNextPosition();
+            journal.commit(committed);
+        }
+        try (SpoolJournal journal = new SpoolJournal(directory, SEGMENT_BYTES, true)) {
+            assertEquals(committed, journal.getCommitPosition());
+            journal.append(payload(5));
+            List<byte[]> records = readAll(journal, committed);
+            assertEquals(4, records.size());
+            assertArrayEquals(payload(2), records.get(0));
+            assertArrayEquals(payload(5), records.get(3));
+        }
+    }
+
+    /**
+     * 测试进程在写入中途退出留下的残缺记录在重新打开时被丢弃，之后的追加覆盖它。
+     */
+    @Test
+    public void testTornRecordIsDiscarded() throws Exception {
+        long torn;
+        try (SpoolJournal journal = new SpoolJournal(directory, SEGMENT_BYTES, false)) {
+            journal.append(payload(0));
+            torn = journal.append(payload(1));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(String.format("%020d.seg", 0)).toFile(), "rw")) {
+            file.seek(torn + SpoolJournal.HEADER_BYTES + 5);
+            file.write(0x7f);
+        }
+        try (SpoolJournal journal = new SpoolJournal(directory, SEGMENT_BYTES, false)) {
+            assertEquals(torn, journal.getWritePosition());
+            journal.append(payload(2));
+            List<byte[]> records = readAll(journal, 0);
+            assertEquals(2, records.size());
+            assertArrayEquals(payload(2), records.get(1));
+        }
+    }
+
+    /**
+     * 测试记录编码后还原出交换器、路由键、消息属性、消息头和消息体。
+     */
+    @Test
+    public void testRecordRoundTrip() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType("application/json");
+        properties.setMessageId("m-1");
+        properties.setPriority(3);
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        properties.setHeader("tenant", "acme");
+        properties.setHeader("attempt", 2);
+        properties.setHeader("replay", true);
+        Message message = new Message("{\"id\":1}".getBytes(StandardCharsets.UTF_8), properties);
+
+        SpoolRecord decoded = SpoolRecord.decode(ByteBuffer.wrap(new SpoolRecord("directExchange", "routingKey1", message).encode()));
+
+        assertEquals("directExchange", decoded.getExchange());
+        assertEquals("routingKey1", decoded.getRoutingKey());
+        MessageProperties restored = decoded.getMessage().getMessageProperties();
+        assertEquals("application/json", restored.getContentType());
+        assertEquals("m-1", restored.getMessageId());
+        assertEquals(3, restored.getPriority());
+        assertEquals(MessageDeliveryMode.PERSISTENT, restored.getDeliveryMode());
+        assertNull(restored.getCorrelationId());
+        assertEquals("acme", restored.getHeaders().get("tenant"));
+        assertEquals(2L, restored.getHeaders().get("attempt"));
+        assertEquals(true, restored.getHeaders().get("replay"));
+        assertArrayEquals(message.getBody(), decoded.getMessage().getBody());
+    }
+
+    private static byte[] payload(int index) {
+        return String.format("message-%012d", index).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> readAll(SpoolJournal journal, long position) {
+        List<byte[]> records = new ArrayList<>();
+        SpoolJournal.Record record;
+        while ((record = journal.read(position)) != null) {
+            records.add(bytes(record.getPayload()));
+            position = record.getNextPosition();
+        }
+        return records;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 测试类，用于验证批量消息的两种格式的读取、单条消息的长度上限和不完整的请求体。
+ */
+public class BatchRecordReaderTests {
+
+    /**
+     * 测试 NDJSON 按行读取，兼容 \r\n，忽略空行，最后一行可以没有换行，跨缓冲区的长行完整读出。
+     */
+    @Test
+    public void testNdjson() throws IOException {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            longLine.append('x');
+        }
+        String body = "{\"id\":1}\r\n\n" + longLine + "\n\r\n{\"id\":2}";
+        BatchRecordReader reader = BatchRecordReader.of(stream(body.getBytes(StandardCharsets.UTF_8)), false, 1 << 20);
+
+        List<String> records = new ArrayList<>();
+        byte[] record;
+        while ((record = reader.next()) != null) {
+            records.add(new String(record, StandardCharsets.UTF_8));
+        }
+        assertEquals(3, records.size());
+        assertEquals("{\"id\":1}", records.get(0));
+        assertEquals(longLine.toString(), records.get(1));
+        assertEquals("{\"id\":2}", records.get(2));
+    }
+
+    /**
+     * 测试超过上限的消息在分配缓冲区之前被拒绝，刚好等于上限的消息正常读取。
+     */
+    @Test
+    public void testMaxRecordBytes() throws IOException {
+        BatchRecordReader ndjson = BatchRecordReader.of(stream("12345\r\n123456\n".getBytes(StandardCharsets.UTF_8)), false, 5);
+        assertEquals("12345", new String(ndjson.next(), StandardCharsets.UTF_8));
+        assertThrows(BatchRecordTooLargeException.class, ndjson::next);
+
+        ByteBuffer huge = ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE);
+        BatchRecordTooLargeException e = assertThrows(BatchRecordTooLargeException.class,
+                () -> BatchRecordReader.of(stream(huge.array()), true, 1024).next());
+        assertEquals(Integer.MAX_VALUE, e.getRecordBytes());
+
+        ByteBuffer negative = ByteBuffer.allocate(4).putInt(-1);
+        assertThrows(BatchRecordTooLargeException.class, () -> BatchRecordReader.of(stream(negative.array()), true, 1024).next());
+    }
+
+    /**
+     * 测试长度前缀格式读取完整的消息，长度前缀或消息体不完整时抛出 EOFException。
+     */
+    @Test
+    public void testLengthPrefixedTruncated() throws IOException {
+        ByteBuffer body = ByteBuffer.allocate(4 + 3 + 4 + 2);
+        body.putInt(3).put(new byte[]{1, 2, 3}).putInt(5).put(new byte[]{4, 5});
+        BatchRecordReader reader = BatchRecordReader.of(stream(body.array()), true, 1024);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, reader.next());
+        assertThrows(EOFException.class, reader::next);
+
+        BatchRecordReader header = BatchRecordReader.of(stream(new byte[]{0, 0}), true, 1024);
+        assertThrows(EOFException.class, header::next);
+        assertNull(BatchRecordReader.of(stream(new byte[0]), true, 1024).next());
+    }
+
+    private static InputStream stream(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 测试类，用于验证 DeclaredTopologyCache 的去重与失效。
+ */
+@ExtendWith(MockitoExtension.class)
+public class DeclaredTopologyCacheTests {
+
+    @Mock
+    private RabbitAdmin rabbitAdmin;
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @InjectMocks
+    private DeclaredTopologyCache cache;
+
+    private Queue queue;
+
+    private TopicExchange exchange;
+
+    private Binding binding;
+
+    @BeforeEach
+    public void setup() {
+        queue = new Queue("testQueue", true);
+        exchange = new TopicExchange("testExchange");
+        binding = BindingBuilder.bind(queue).to(exchange).with("testRoutingKey");
+    }
+
+    /**
+     * 测试重复声明只访问一次 Broker。
+     */
+    @Test
+    public void testRepeatDeclarationsAreSkipped() {
+        for (int i = 0; i < 3; i++) {
+            cache.declareQueue(queue);
+            cache.declareExchange(exchange);
+            cache.declareBinding(binding);
+        }
+
+        verify(rabbitAdmin, times(1)).declareQueue(queue);
+        verify(rabbitAdmin, times(1)).declareExchange(exchange);
+        verify(rabbitAdmin, times(1)).declareBinding(binding);
+    }
+
+    /**
+     * 测试删除队列后队列及其绑定会重新声明。
+     */
+    @Test
+    public void testDeleteQueueInvalidatesBindings() {
+        cache.declareQueue(queue);
+        cache.declareExchange(exchange);
+        cache.declareBinding(binding);
+
+        cache.deleteQueue("testQueue");
+        cache.declareQueue(queue);
+        cache.declareExchange(exchange);
+        cache.declareBinding(binding);
+
+        verify(rabbitAdmin, times(2)).declareQueue(queue);
+        verify(rabbitAdmin, times(1)).declareExchange(exchange);
+        verify(rabbitAdmin, times(2)).declareBinding(binding);
+    }
+
+    /**
+     * 测试同名但类型不同的交换器交给 Broker 校验。
+     */
+    @Test
+    public void testExchangeTypeMismatchIsDeclared() {
+        cache.declareExchange(exchange);
+        cache.declareExchange(new DirectExchange("testExchange"));
+
+        verify(rabbitAdmin, times(2)).declareExchange(any());
+    }
+
+    /**
+     * 测试连接重建后清空缓存，自动删除队列不缓存。
+     */
+    @Test
+    public void testConnectionRecoveryAndAutoDelete() {
+        cache.declareQueue(queue);
+        cache.onCreate(null);
+        cache.declareQueue(queue);
+
+        Queue autoDelete = new Queue("autoDeleteQueue", false, false, true);
+        cache.declareQueue(autoDelete);
+        cache.declareQueue(autoDelete);
+
+        verify(rabbitAdmin, times(2)).declareQueue(queue);
+        verify(rabbitAdmin, times(2)).declareQueue(autoDelete);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.util;
+
+import com.example.codec.PayloadCompressor;
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.connection.ChannelProxy;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试类，用于验证批量接收在各种失败路径上都会取消临时消费者、nack 未送达的消息，
+ * 取消失败时通道不归还到缓存。
+ */
+public class ReceiveBatchTests {
+
+    private final AtomicReference<Consumer> consumer = new AtomicReference<>();
+
+    private Channel channel;
+
+    private RabbitMQUtil rabbitMQUtil;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // 缓存连接工厂返回的是通道代理，物理关闭标记只对代理生效
+        channel = mock(ChannelProxy.class);
+        when(channel.isOpen()).thenReturn(true);
+        // 注册消费者时立即投递两条消息
+        when(channel.basicConsume(eq("queue1"), eq(false), any(Consumer.class))).thenAnswer(invocation -> {
+            Consumer registered = invocation.getArgument(2);
+            consumer.set(registered);
+            for (long tag = 1; tag <= 2; tag++) {
+                registered.handleDelivery("ctag", new Envelope(tag, false, "", "queue1"),
+                        new AMQP.BasicProperties(), new byte[]{(byte) tag});
+            }
+            return "ctag";
+        });
+        RabbitTemplate template = mock(RabbitTemplate.class);
+        when(template.execute(any())).thenAnswer(invocation ->
+                ((ChannelCallback<?>) invocation.getArgument(0)).doInRabbit(channel));
+        RabbitAdmin rabbitAdmin = mock(RabbitAdmin.class);
+        when(rabbitAdmin.getRabbitTemplate()).thenReturn(template);
+        rabbitMQUtil = new RabbitMQUtil();
+        ReflectionTestUtils.setField(rabbitMQUtil, "rabbitAdmin", rabbitAdmin);
+        ReflectionTestUtils.setField(rabbitMQUtil, "payloadCompressor", new PayloadCompressor());
+        ReflectionTestUtils.setField(rabbitMQUtil, "metrics", new MessagingMetrics());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // 清理线程上的物理关闭标记
+        RabbitUtils.isPhysicalCloseRequired();
+        Thread.interrupted();
+    }
+
+    /**
+     * 测试正常接收后取消消费者、整批确认，通道恢复为不限制预取后归还。
+     */
+    @Test
+    public void testReceiveAndAck() throws Exception {
+        cancelOkOnCancel();
+
+        assertEquals(2, rabbitMQUtil.receiveBatch("queue1", 10, 100, messages -> assertEquals(2, messages.size())));
+
+        verify(channel).basicCancel("ctag");
+        verify(channel).basicAck(2, true);
+        verify(channel).basicQos(0);
+        assertFalse(RabbitUtils.isPhysicalCloseRequired());
+    }
+
+    /**
+     * 测试等待消息时线程被中断：仍取消消费者，未取出的消息逐条 nack，通道正常归还。
+     */
+    @Test
+    public void testInterruptedWhileWaiting() throws Exception {
+        cancelOkOnCancel();
+        Thread.currentThread().interrupt();
+
+        assertThrows(Exception.class, () -> rabbitMQUtil.receiveBatch("queue1", 10, 1000, messages -> { }));
+
+        verify(channel).basicCancel("ctag");
+        verify(channel).basicNack(1, false, true);
+        verify(channel).basicNack(2, false, true);
+        verify(channel, never()).basicAck(1, true);
+        verify(channel).basicQos(0);
+        assertFalse(RabbitUtils.isPhysicalCloseRequired());
+    }
+
+    /**
+     * 测试写出失败时整批 nack 重新入队。
+     */
+    @Test
+    public void testWriteFailureNacksBatch() throws Exception {
+        cancelOkOnCancel();
+
+        assertThrows(Exception.class, () -> rabbitMQUtil.receiveBatch("queue1", 10, 100, messages -> {
+            throw new IOException("client gone");
+        }));
+
+        verify(channel).basicCancel("ctag");
+        verify(channel).basicNack(2, true, true);
+        verify(channel).basicQos(0);
+    }
+
+    /**
+     * 测试取消消费者失败时不重置预取、要求物理关闭通道，避免带着消费者的通道回到缓存。
+     */
+    @Test
+    public void testPhysicalCloseWhenCancelFails() throws Exception {
+        doThrow(new IOException("cancel failed")).when(channel).basicCancel(anyString());
+
+        rabbitMQUtil.receiveBatch("queue1", 10, 100, messages -> { });
+
+        verify(channel, never()).basicQos(0);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        assertTrue(RabbitUtils.isPhysicalCloseRequired());
+    }
+
+    private void cancelOkOnCancel() throws IOException {
+        doAnswer(invocation -> {
+            consumer.get().handleCancelOk(invocation.getArgument(0));
+            return null;
+        }).when(channel).basicCancel(anyString());
+    }
+}
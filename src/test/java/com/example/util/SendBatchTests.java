@@ -0,0 +1,102 @@
+package com.example.util;
+
+import com.example.codec.PayloadCompressor;
+import com.example.metrics.MessagingMetrics;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试类，用于验证批量发送按 Broker 的发布确认统计成功数和失败数。
+ */
+public class SendBatchTests {
+
+    private final AtomicReference<ConfirmListener> confirmListener = new AtomicReference<>();
+
+    private final AtomicLong nextSeqNo = new AtomicLong(1);
+
+    private Channel channel;
+
+    private RabbitMQUtil rabbitMQUtil;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        channel = mock(Channel.class);
+        when(channel.getNextPublishSeqNo()).thenAnswer(invocation -> nextSeqNo.get());
+        doAnswer(invocation -> {
+            nextSeqNo.incrementAndGet();
+            return null;
+        }).when(channel).basicPublish(anyString(), anyString(), anyBoolean(), any(AMQP.BasicProperties.class), any(byte[].class));
+        doAnswer(invocation -> {
+            confirmListener.set(invocation.getArgument(0));
+            return null;
+        }).when(channel).addConfirmListener(any(ConfirmListener.class));
+        RabbitTemplate template = mock(RabbitTemplate.class);
+        when(template.execute(any())).thenAnswer(invocation ->
+                ((ChannelCallback<?>) invocation.getArgument(0)).doInRabbit(channel));
+        rabbitMQUtil = new RabbitMQUtil();
+        ReflectionTestUtils.setField(rabbitMQUtil, "rabbitTemplate", template);
+        ReflectionTestUtils.setField(rabbitMQUtil, "payloadCompressor", new PayloadCompressor());
+        ReflectionTestUtils.setField(rabbitMQUtil, "metrics", new MessagingMetrics());
+    }
+
+    /**
+     * 测试只有被 ack 的消息计为成功，被 nack 的消息计为失败，确认监听器用完后移除。
+     */
+    @Test
+    public void testCountsBrokerConfirms() throws Exception {
+        doAnswer(invocation -> {
+            confirmListener.get().handleNack(2, false);
+            confirmListener.get().handleAck(3, true);
+            return true;
+        }).when(channel).waitForConfirms(anyLong());
+
+        BatchPublishResult result = rabbitMQUtil.sendBatch("ex", "rk", ndjson("{\"a\":1}\n{\"a\":2}\n{\"a\":3}\n"), false);
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(1, result.getFailed());
+        verify(channel).confirmSelect();
+        verify(channel).removeConfirmListener(confirmListener.get());
+    }
+
+    /**
+     * 测试等待确认超时后未确认的消息计为失败。
+     */
+    @Test
+    public void testUnconfirmedCountedAsFailed() throws Exception {
+        doAnswer(invocation -> {
+            confirmListener.get().handleAck(1, false);
+            throw new TimeoutException();
+        }).when(channel).waitForConfirms(anyLong());
+
+        BatchPublishResult result = rabbitMQUtil.sendBatch("ex", "rk", ndjson("{\"a\":1}\n{\"a\":2}\n{\"a\":3}"), false);
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(2, result.getFailed());
+    }
+
+    private static ByteArrayInputStream ndjson(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}